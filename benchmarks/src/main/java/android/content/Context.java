@@ -0,0 +1,22 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * A stand-in for android.content.Context on a desktop JVM; the robot only asks it for a cache directory
+ */
+public class Context
+{
+	private final File cacheDir;
+
+	public Context(File cacheDir)
+	{
+		this.cacheDir = cacheDir;
+	}
+
+	public File getCacheDir()
+	{
+		cacheDir.mkdirs();
+		return cacheDir;
+	}
+}
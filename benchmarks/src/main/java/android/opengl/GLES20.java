@@ -0,0 +1,212 @@
+package android.opengl;
+
+import java.nio.Buffer;
+
+/**
+ * A stand-in for android.opengl.GLES20 on a desktop JVM: the constants the robot uses, and methods that fail if called.
+ * Benchmarks run the renderer against a RecordingGlBackend instead, so these should never be reached.
+ */
+public class GLES20
+{
+	public static final int GL_NO_ERROR = 0;
+	public static final int GL_DEPTH_BUFFER_BIT = 0x00000100;
+	public static final int GL_COLOR_BUFFER_BIT = 0x00004000;
+	public static final int GL_POINTS = 0x0000;
+	public static final int GL_TRIANGLES = 0x0004;
+	public static final int GL_LEQUAL = 0x0203;
+	public static final int GL_CULL_FACE = 0x0B44;
+	public static final int GL_DEPTH_TEST = 0x0B71;
+	public static final int GL_BYTE = 0x1400;
+	public static final int GL_UNSIGNED_BYTE = 0x1401;
+	public static final int GL_SHORT = 0x1402;
+	public static final int GL_UNSIGNED_SHORT = 0x1403;
+	public static final int GL_UNSIGNED_INT = 0x1405;
+	public static final int GL_FLOAT = 0x1406;
+	public static final int GL_ARRAY_BUFFER = 0x8892;
+	public static final int GL_ELEMENT_ARRAY_BUFFER = 0x8893;
+	public static final int GL_STATIC_DRAW = 0x88E4;
+	public static final int GL_FRAGMENT_SHADER = 0x8B30;
+	public static final int GL_VERTEX_SHADER = 0x8B31;
+	public static final int GL_COMPILE_STATUS = 0x8B81;
+	public static final int GL_LINK_STATUS = 0x8B82;
+
+	private static UnsupportedOperationException noGl()
+	{
+		return new UnsupportedOperationException("There is no OpenGL here; use a RecordingGlBackend");
+	}
+
+	public static void glEnable(int cap)
+	{
+		throw noGl();
+	}
+
+	public static void glDepthFunc(int func)
+	{
+		throw noGl();
+	}
+
+	public static void glClearColor(float red, float green, float blue, float alpha)
+	{
+		throw noGl();
+	}
+
+	public static void glClear(int mask)
+	{
+		throw noGl();
+	}
+
+	public static void glViewport(int x, int y, int width, int height)
+	{
+		throw noGl();
+	}
+
+	public static int glCreateShader(int type)
+	{
+		throw noGl();
+	}
+
+	public static void glShaderSource(int shader, String string)
+	{
+		throw noGl();
+	}
+
+	public static void glCompileShader(int shader)
+	{
+		throw noGl();
+	}
+
+	public static void glGetShaderiv(int shader, int pname, int[] params, int offset)
+	{
+		throw noGl();
+	}
+
+	public static String glGetShaderInfoLog(int shader)
+	{
+		throw noGl();
+	}
+
+	public static void glDeleteShader(int shader)
+	{
+		throw noGl();
+	}
+
+	public static int glCreateProgram()
+	{
+		throw noGl();
+	}
+
+	public static void glAttachShader(int program, int shader)
+	{
+		throw noGl();
+	}
+
+	public static void glLinkProgram(int program)
+	{
+		throw noGl();
+	}
+
+	public static void glGetProgramiv(int program, int pname, int[] params, int offset)
+	{
+		throw noGl();
+	}
+
+	public static String glGetProgramInfoLog(int program)
+	{
+		throw noGl();
+	}
+
+	public static void glDeleteProgram(int program)
+	{
+		throw noGl();
+	}
+
+	public static void glUseProgram(int program)
+	{
+		throw noGl();
+	}
+
+	public static int glGetUniformLocation(int program, String name)
+	{
+		throw noGl();
+	}
+
+	public static int glGetAttribLocation(int program, String name)
+	{
+		throw noGl();
+	}
+
+	public static void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset)
+	{
+		throw noGl();
+	}
+
+	public static void glUniform4fv(int location, int count, float[] v, int offset)
+	{
+		throw noGl();
+	}
+
+	public static void glVertexAttrib3fv(int indx, float[] values, int offset)
+	{
+		throw noGl();
+	}
+
+	public static void glVertexAttrib4fv(int indx, float[] values, int offset)
+	{
+		throw noGl();
+	}
+
+	public static void glGenBuffers(int n, int[] buffers, int offset)
+	{
+		throw noGl();
+	}
+
+	public static void glBindBuffer(int target, int buffer)
+	{
+		throw noGl();
+	}
+
+	public static void glBufferData(int target, int size, Buffer data, int usage)
+	{
+		throw noGl();
+	}
+
+	public static void glDeleteBuffers(int n, int[] buffers, int offset)
+	{
+		throw noGl();
+	}
+
+	public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset)
+	{
+		throw noGl();
+	}
+
+	public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr)
+	{
+		throw noGl();
+	}
+
+	public static void glEnableVertexAttribArray(int index)
+	{
+		throw noGl();
+	}
+
+	public static void glDisableVertexAttribArray(int index)
+	{
+		throw noGl();
+	}
+
+	public static void glDrawArrays(int mode, int first, int count)
+	{
+		throw noGl();
+	}
+
+	public static void glDrawElements(int mode, int count, int type, int offset)
+	{
+		throw noGl();
+	}
+
+	public static int glGetError()
+	{
+		throw noGl();
+	}
+}
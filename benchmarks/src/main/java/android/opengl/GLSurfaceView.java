@@ -0,0 +1,19 @@
+package android.opengl;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * A stand-in for android.opengl.GLSurfaceView on a desktop JVM; only the Renderer interface is needed
+ */
+public class GLSurfaceView
+{
+	public interface Renderer
+	{
+		void onSurfaceCreated(GL10 gl, EGLConfig config);
+
+		void onSurfaceChanged(GL10 gl, int width, int height);
+
+		void onDrawFrame(GL10 gl);
+	}
+}
@@ -0,0 +1,211 @@
+package android.opengl;
+
+/**
+ * A plain-Java stand-in for android.opengl.Matrix (column-major 4x4 matrices), with the same results as the
+ * platform version for the methods the robot uses, so the app's code can be benchmarked on a desktop JVM.
+ */
+public class Matrix
+{
+	private static final float[] sTemp = new float[32]; //like the platform version, rotateM() shares a temporary
+
+	public static void multiplyMM(float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset)
+	{
+		float l0 = lhs[lhsOffset], l1 = lhs[lhsOffset+1], l2 = lhs[lhsOffset+2], l3 = lhs[lhsOffset+3];
+		float l4 = lhs[lhsOffset+4], l5 = lhs[lhsOffset+5], l6 = lhs[lhsOffset+6], l7 = lhs[lhsOffset+7];
+		float l8 = lhs[lhsOffset+8], l9 = lhs[lhsOffset+9], l10 = lhs[lhsOffset+10], l11 = lhs[lhsOffset+11];
+		float l12 = lhs[lhsOffset+12], l13 = lhs[lhsOffset+13], l14 = lhs[lhsOffset+14], l15 = lhs[lhsOffset+15];
+		for(int i=0; i<4; i++)
+		{
+			int r = rhsOffset + i*4;
+			float r0 = rhs[r], r1 = rhs[r+1], r2 = rhs[r+2], r3 = rhs[r+3];
+			int o = resultOffset + i*4;
+			result[o]   = l0*r0 + l4*r1 + l8*r2 + l12*r3;
+			result[o+1] = l1*r0 + l5*r1 + l9*r2 + l13*r3;
+			result[o+2] = l2*r0 + l6*r1 + l10*r2 + l14*r3;
+			result[o+3] = l3*r0 + l7*r1 + l11*r2 + l15*r3;
+		}
+	}
+
+	public static void multiplyMV(float[] resultVec, int resultVecOffset, float[] lhsMat, int lhsMatOffset, float[] rhsVec, int rhsVecOffset)
+	{
+		float x = rhsVec[rhsVecOffset], y = rhsVec[rhsVecOffset+1], z = rhsVec[rhsVecOffset+2], w = rhsVec[rhsVecOffset+3];
+		for(int i=0; i<4; i++)
+			resultVec[resultVecOffset+i] = lhsMat[lhsMatOffset+i]*x + lhsMat[lhsMatOffset+4+i]*y + lhsMat[lhsMatOffset+8+i]*z + lhsMat[lhsMatOffset+12+i]*w;
+	}
+
+	public static void setIdentityM(float[] sm, int smOffset)
+	{
+		for(int i=0; i<16; i++)
+			sm[smOffset+i] = 0;
+		for(int i=0; i<16; i+=5)
+			sm[smOffset+i] = 1.0f;
+	}
+
+	public static void translateM(float[] m, int mOffset, float x, float y, float z)
+	{
+		for(int i=0; i<4; i++)
+			m[mOffset+12+i] += m[mOffset+i]*x + m[mOffset+4+i]*y + m[mOffset+8+i]*z;
+	}
+
+	public static void scaleM(float[] m, int mOffset, float x, float y, float z)
+	{
+		for(int i=0; i<4; i++)
+		{
+			m[mOffset+i] *= x;
+			m[mOffset+4+i] *= y;
+			m[mOffset+8+i] *= z;
+		}
+	}
+
+	public static void rotateM(float[] m, int mOffset, float a, float x, float y, float z)
+	{
+		synchronized(sTemp)
+		{
+			setRotateM(sTemp, 0, a, x, y, z);
+			multiplyMM(sTemp, 16, m, mOffset, sTemp, 0);
+			System.arraycopy(sTemp, 16, m, mOffset, 16);
+		}
+	}
+
+	public static void setRotateM(float[] rm, int rmOffset, float a, float x, float y, float z)
+	{
+		rm[rmOffset+3] = 0;
+		rm[rmOffset+7] = 0;
+		rm[rmOffset+11] = 0;
+		rm[rmOffset+12] = 0;
+		rm[rmOffset+13] = 0;
+		rm[rmOffset+14] = 0;
+		rm[rmOffset+15] = 1;
+		a *= (float)(Math.PI / 180.0f);
+		float s = (float)Math.sin(a);
+		float c = (float)Math.cos(a);
+		if(1.0f == x && 0.0f == y && 0.0f == z)
+		{
+			rm[rmOffset+5] = c;   rm[rmOffset+10] = c;
+			rm[rmOffset+6] = s;   rm[rmOffset+9] = -s;
+			rm[rmOffset+1] = 0;   rm[rmOffset+2] = 0;
+			rm[rmOffset+4] = 0;   rm[rmOffset+8] = 0;
+			rm[rmOffset] = 1;
+		}
+		else if(0.0f == x && 1.0f == y && 0.0f == z)
+		{
+			rm[rmOffset] = c;     rm[rmOffset+10] = c;
+			rm[rmOffset+8] = s;   rm[rmOffset+2] = -s;
+			rm[rmOffset+1] = 0;   rm[rmOffset+4] = 0;
+			rm[rmOffset+6] = 0;   rm[rmOffset+9] = 0;
+			rm[rmOffset+5] = 1;
+		}
+		else if(0.0f == x && 0.0f == y && 1.0f == z)
+		{
+			rm[rmOffset] = c;     rm[rmOffset+5] = c;
+			rm[rmOffset+1] = s;   rm[rmOffset+4] = -s;
+			rm[rmOffset+2] = 0;   rm[rmOffset+6] = 0;
+			rm[rmOffset+8] = 0;   rm[rmOffset+9] = 0;
+			rm[rmOffset+10] = 1;
+		}
+		else
+		{
+			float len = (float)Math.sqrt(x*x + y*y + z*z);
+			if(1.0f != len)
+			{
+				float recipLen = 1.0f / len;
+				x *= recipLen;
+				y *= recipLen;
+				z *= recipLen;
+			}
+			float nc = 1.0f - c;
+			float xy = x*y, yz = y*z, zx = z*x;
+			float xs = x*s, ys = y*s, zs = z*s;
+			rm[rmOffset] = x*x*nc + c;
+			rm[rmOffset+4] = xy*nc - zs;
+			rm[rmOffset+8] = zx*nc + ys;
+			rm[rmOffset+1] = xy*nc + zs;
+			rm[rmOffset+5] = y*y*nc + c;
+			rm[rmOffset+9] = yz*nc - xs;
+			rm[rmOffset+2] = zx*nc - ys;
+			rm[rmOffset+6] = yz*nc + xs;
+			rm[rmOffset+10] = z*z*nc + c;
+		}
+	}
+
+	public static void frustumM(float[] m, int offset, float left, float right, float bottom, float top, float near, float far)
+	{
+		float r_width = 1.0f / (right - left);
+		float r_height = 1.0f / (top - bottom);
+		float r_depth = 1.0f / (near - far);
+		m[offset] = 2.0f * (near * r_width);
+		m[offset+5] = 2.0f * (near * r_height);
+		m[offset+8] = (right + left) * r_width;
+		m[offset+9] = (top + bottom) * r_height;
+		m[offset+10] = (far + near) * r_depth;
+		m[offset+14] = 2.0f * (far * near * r_depth);
+		m[offset+11] = -1.0f;
+		m[offset+1] = 0;  m[offset+2] = 0;  m[offset+3] = 0;
+		m[offset+4] = 0;  m[offset+6] = 0;  m[offset+7] = 0;
+		m[offset+12] = 0; m[offset+13] = 0; m[offset+15] = 0;
+	}
+
+	public static void setLookAtM(float[] rm, int rmOffset, float eyeX, float eyeY, float eyeZ,
+			float centerX, float centerY, float centerZ, float upX, float upY, float upZ)
+	{
+		float fx = centerX - eyeX, fy = centerY - eyeY, fz = centerZ - eyeZ;
+		float rlf = 1.0f / (float)Math.sqrt(fx*fx + fy*fy + fz*fz);
+		fx *= rlf; fy *= rlf; fz *= rlf;
+
+		float sx = fy*upZ - fz*upY, sy = fz*upX - fx*upZ, sz = fx*upY - fy*upX; //s = f x up
+		float rls = 1.0f / (float)Math.sqrt(sx*sx + sy*sy + sz*sz);
+		sx *= rls; sy *= rls; sz *= rls;
+
+		float ux = sy*fz - sz*fy, uy = sz*fx - sx*fz, uz = sx*fy - sy*fx; //u = s x f
+
+		rm[rmOffset] = sx;    rm[rmOffset+1] = ux;  rm[rmOffset+2] = -fx;  rm[rmOffset+3] = 0.0f;
+		rm[rmOffset+4] = sy;  rm[rmOffset+5] = uy;  rm[rmOffset+6] = -fy;  rm[rmOffset+7] = 0.0f;
+		rm[rmOffset+8] = sz;  rm[rmOffset+9] = uz;  rm[rmOffset+10] = -fz; rm[rmOffset+11] = 0.0f;
+		rm[rmOffset+12] = 0;  rm[rmOffset+13] = 0;  rm[rmOffset+14] = 0;   rm[rmOffset+15] = 1.0f;
+		translateM(rm, rmOffset, -eyeX, -eyeY, -eyeZ);
+	}
+
+	public static boolean invertM(float[] mInv, int mInvOffset, float[] m, int mOffset)
+	{
+		float a0 = m[mOffset], a1 = m[mOffset+1], a2 = m[mOffset+2], a3 = m[mOffset+3];
+		float a4 = m[mOffset+4], a5 = m[mOffset+5], a6 = m[mOffset+6], a7 = m[mOffset+7];
+		float a8 = m[mOffset+8], a9 = m[mOffset+9], a10 = m[mOffset+10], a11 = m[mOffset+11];
+		float a12 = m[mOffset+12], a13 = m[mOffset+13], a14 = m[mOffset+14], a15 = m[mOffset+15];
+
+		//the 2x2 determinants of the top two and bottom two rows
+		float s0 = a0*a5 - a4*a1, s1 = a0*a9 - a8*a1, s2 = a0*a13 - a12*a1;
+		float s3 = a4*a9 - a8*a5, s4 = a4*a13 - a12*a5, s5 = a8*a13 - a12*a9;
+		float c5 = a10*a15 - a14*a11, c4 = a6*a15 - a14*a7, c3 = a6*a11 - a10*a7;
+		float c2 = a2*a15 - a14*a3, c1 = a2*a11 - a10*a3, c0 = a2*a7 - a6*a3;
+
+		float det = s0*c5 - s1*c4 + s2*c3 + s3*c2 - s4*c1 + s5*c0;
+		if(det == 0.0f)
+			return false;
+		float invDet = 1.0f / det;
+
+		mInv[mInvOffset]    = ( a5*c5 - a9*c4 + a13*c3) * invDet;
+		mInv[mInvOffset+1]  = (-a1*c5 + a9*c2 - a13*c1) * invDet;
+		mInv[mInvOffset+2]  = ( a1*c4 - a5*c2 + a13*c0) * invDet;
+		mInv[mInvOffset+3]  = (-a1*c3 + a5*c1 - a9*c0) * invDet;
+		mInv[mInvOffset+4]  = (-a4*c5 + a8*c4 - a12*c3) * invDet;
+		mInv[mInvOffset+5]  = ( a0*c5 - a8*c2 + a12*c1) * invDet;
+		mInv[mInvOffset+6]  = (-a0*c4 + a4*c2 - a12*c0) * invDet;
+		mInv[mInvOffset+7]  = ( a0*c3 - a4*c1 + a8*c0) * invDet;
+		mInv[mInvOffset+8]  = ( a7*s5 - a11*s4 + a15*s3) * invDet;
+		mInv[mInvOffset+9]  = (-a3*s5 + a11*s2 - a15*s1) * invDet;
+		mInv[mInvOffset+10] = ( a3*s4 - a7*s2 + a15*s0) * invDet;
+		mInv[mInvOffset+11] = (-a3*s3 + a7*s1 - a11*s0) * invDet;
+		mInv[mInvOffset+12] = (-a6*s5 + a10*s4 - a14*s3) * invDet;
+		mInv[mInvOffset+13] = ( a2*s5 - a10*s2 + a14*s1) * invDet;
+		mInv[mInvOffset+14] = (-a2*s4 + a6*s2 - a14*s0) * invDet;
+		mInv[mInvOffset+15] = ( a2*s3 - a6*s1 + a10*s0) * invDet;
+		return true;
+	}
+
+	public static void transposeM(float[] mTrans, int mTransOffset, float[] m, int mOffset)
+	{
+		for(int i=0; i<4; i++)
+			for(int j=0; j<4; j++)
+				mTrans[mTransOffset + i*4 + j] = m[mOffset + j*4 + i];
+	}
+}
@@ -0,0 +1,30 @@
+package android.os;
+
+/**
+ * A stand-in for android.os.SystemClock on a desktop JVM. Tests can stop the clock at a given time.
+ */
+public final class SystemClock
+{
+	private static final long START = System.nanoTime();
+	private static volatile long fixedMillis = -1; //what uptimeMillis() returns, or -1 to follow the real clock
+
+	public static long uptimeMillis()
+	{
+		long fixed = fixedMillis;
+		return (fixed >= 0) ? fixed : (System.nanoTime() - START) / 1000000L;
+	}
+
+	public static long elapsedRealtime()
+	{
+		return uptimeMillis();
+	}
+
+	/**
+	 * Makes uptimeMillis() return the given time from now on (not part of the real class; for tests), or follow the
+	 * real clock again if it is negative
+	 */
+	public static void setUptimeMillis(long millis)
+	{
+		fixedMillis = millis;
+	}
+}
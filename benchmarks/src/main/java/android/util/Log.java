@@ -0,0 +1,42 @@
+package android.util;
+
+/**
+ * A stand-in for android.util.Log on a desktop JVM: warnings and errors go to stderr, everything else is dropped
+ * (so logging doesn't show up in the measurements)
+ */
+public final class Log
+{
+	public static int d(String tag, String msg)
+	{
+		return 0;
+	}
+
+	public static int i(String tag, String msg)
+	{
+		return 0;
+	}
+
+	public static int w(String tag, String msg)
+	{
+		System.err.println("W/" + tag + ": " + msg);
+		return 0;
+	}
+
+	public static int w(String tag, String msg, Throwable tr)
+	{
+		System.err.println("W/" + tag + ": " + msg + " (" + tr + ")");
+		return 0;
+	}
+
+	public static int e(String tag, String msg)
+	{
+		System.err.println("E/" + tag + ": " + msg);
+		return 0;
+	}
+
+	public static int e(String tag, String msg, Throwable tr)
+	{
+		System.err.println("E/" + tag + ": " + msg + " (" + tr + ")");
+		return 0;
+	}
+}
@@ -0,0 +1,134 @@
+package cs315.yourname.hwk4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import android.opengl.Matrix;
+import cs315.yourname.hwk4.Affine3;
+
+/**
+ * Affine3 against android.opengl.Matrix for what the skeleton does most: multiplying transforms, rotating about one of
+ * the axes (either way along it), and a translate / rotate / scale sequence like placing one part. The threaded rotations show the cost of
+ * Matrix.rotateM's shared, synchronized temporary array when several threads pose at once.
+ */
+@State(Scope.Thread)
+public class AffineBenchmark
+{
+	private final float[] lhs = new float[16];
+	private final float[] rhs = new float[16];
+	private final float[] result = new float[16];
+	private final float[] compactLhs = new float[Affine3.SIZE];
+	private final float[] compactRhs = new float[Affine3.SIZE];
+	private final float[] compactResult = new float[Affine3.SIZE];
+	private float angle;
+
+	@Setup
+	public void setUp()
+	{
+		Matrix.setIdentityM(lhs, 0);
+		Matrix.translateM(lhs, 0, 0.9f, 0.5f, 0.0f);
+		Matrix.rotateM(lhs, 0, 30.0f, 0.0f, 0.0f, 1.0f);
+		Matrix.setIdentityM(rhs, 0);
+		Matrix.rotateM(rhs, 0, 45.0f, 1.0f, 0.0f, 0.0f);
+		Matrix.scaleM(rhs, 0, 0.5f, 1.0f, 0.5f);
+		Affine3.fromMatrix(compactLhs, 0, lhs, 0);
+		Affine3.fromMatrix(compactRhs, 0, rhs, 0);
+	}
+
+	@Benchmark
+	public float[] matrixMultiply()
+	{
+		Matrix.multiplyMM(result, 0, lhs, 0, rhs, 0);
+		return result;
+	}
+
+	@Benchmark
+	public float[] affineMultiply()
+	{
+		Affine3.multiplyMM(result, 0, lhs, 0, rhs, 0);
+		return result;
+	}
+
+	@Benchmark
+	public float[] compactMultiply()
+	{
+		Affine3.multiply(compactResult, 0, compactLhs, 0, compactRhs, 0);
+		return compactResult;
+	}
+
+	@Benchmark
+	public float[] matrixRotateX()
+	{
+		angle += 0.5f;
+		Matrix.rotateM(result, 0, angle, 1.0f, 0.0f, 0.0f);
+		return result;
+	}
+
+	@Benchmark
+	public float[] affineRotateX()
+	{
+		angle += 0.5f;
+		Affine3.rotateM(result, 0, angle, 1.0f, 0.0f, 0.0f);
+		return result;
+	}
+
+	@Benchmark
+	public float[] matrixRotateNegativeX()
+	{
+		angle += 0.5f;
+		Matrix.rotateM(result, 0, angle, -1.0f, 0.0f, 0.0f); //how the dance turns the shoulders, hips and knees
+		return result;
+	}
+
+	@Benchmark
+	public float[] affineRotateNegativeX()
+	{
+		angle += 0.5f;
+		Affine3.rotateM(result, 0, angle, -1.0f, 0.0f, 0.0f);
+		return result;
+	}
+
+	@Benchmark
+	@Threads(4)
+	public float[] matrixRotateXThreaded()
+	{
+		return matrixRotateX();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public float[] affineRotateXThreaded()
+	{
+		return affineRotateX();
+	}
+
+	@Benchmark
+	public float[] matrixPlacePart()
+	{
+		angle += 0.5f;
+		System.arraycopy(lhs, 0, result, 0, 16);
+		Matrix.translateM(result, 0, 0.9f, 0.5f, 0.0f);
+		Matrix.rotateM(result, 0, angle, 1.0f, 0.0f, 0.0f);
+		Matrix.scaleM(result, 0, 0.5f, 0.5f, 0.5f);
+		return result;
+	}
+
+	@Benchmark
+	public float[] compactPlacePart()
+	{
+		angle += 0.5f;
+		Affine3.multiplyTRS(compactResult, 0, compactLhs, 0, 0.9f, 0.5f, 0.0f, angle, 1.0f, 0.0f, 0.0f, 0.5f, 0.5f, 0.5f);
+		return compactResult;
+	}
+
+	@Benchmark
+	public float[] affinePlacePart()
+	{
+		angle += 0.5f;
+		Affine3.multiplyTRSM(result, 0, lhs, 0, 0.9f, 0.5f, 0.0f, angle, 1.0f, 0.0f, 0.0f, 0.5f, 0.5f, 0.5f);
+		return result;
+	}
+}
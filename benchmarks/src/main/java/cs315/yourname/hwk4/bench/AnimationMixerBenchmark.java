@@ -0,0 +1,62 @@
+package cs315.yourname.hwk4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cs315.yourname.hwk4.AnimationClip;
+import cs315.yourname.hwk4.AnimationMixer;
+import cs315.yourname.hwk4.AnimationPlayer;
+import cs315.yourname.hwk4.RobotModel;
+import cs315.yourname.hwk4.Skeleton;
+
+/**
+ * Mixing a pose from a number of partly weighted layers (the top one masked to the arms), against sampling one clip
+ * directly. The GC profiler BenchmarkMain adds shows that mixing allocates nothing.
+ */
+@State(Scope.Thread)
+public class AnimationMixerBenchmark
+{
+	@Param({"1", "2", "4"})
+	public int layers;
+
+	@Param({"0", "1"})
+	public int blending; //AnimationMixer.NLERP or SLERP
+
+	private AnimationPlayer player;
+	private AnimationMixer mixer;
+	private float[] pose;
+	private long time;
+
+	@Setup
+	public void setUp()
+	{
+		Skeleton skeleton = RobotModel.createSkeleton();
+		AnimationClip dance = RobotModel.createDanceClip();
+		player = new AnimationPlayer(dance, skeleton);
+		mixer = new AnimationMixer(skeleton, layers);
+		for(int l=0; l<layers; l++)
+			mixer.addLayer(dance, 0.5f);
+		mixer.setMask(layers-1, AnimationMixer.createMask(skeleton, new String[] {"rightShoulder", "leftShoulder"}));
+		mixer.setBlending(blending);
+		pose = new float[skeleton.getJointCount()*16];
+	}
+
+	@Benchmark
+	public float[] singleClip()
+	{
+		time += 16;
+		player.sample(time, pose, 0);
+		return pose;
+	}
+
+	@Benchmark
+	public float[] mixed()
+	{
+		time += 16;
+		mixer.sample(time, pose, 0);
+		return pose;
+	}
+}
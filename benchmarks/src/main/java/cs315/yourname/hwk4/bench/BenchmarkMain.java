@@ -0,0 +1,37 @@
+package cs315.yourname.hwk4.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks, reporting throughput (operations per second) and, through the GC profiler, how much each
+ * operation allocates ("gc.alloc.rate.norm", in bytes per operation).
+ *
+ * Build and run from this directory with:
+ * 	mvn -B package && java -jar target/benchmarks.jar [regex of benchmarks to run]
+ */
+public class BenchmarkMain
+{
+	public static void main(String[] args) throws RunnerException
+	{
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "cs315\\.yourname\\.hwk4\\.bench\\..*")
+				.mode(Mode.Throughput)
+				.timeUnit(TimeUnit.SECONDS)
+				.warmupIterations(3)
+				.warmupTime(TimeValue.seconds(1))
+				.measurementIterations(5)
+				.measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,74 @@
+package cs315.yourname.hwk4.bench;
+
+import java.io.File;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import android.content.Context;
+import android.opengl.Matrix;
+import cs315.yourname.hwk4.AnimationPlayer;
+import cs315.yourname.hwk4.RecordingGlBackend;
+import cs315.yourname.hwk4.RobotModel;
+import cs315.yourname.hwk4.RobotRenderer;
+import cs315.yourname.hwk4.Skeleton;
+
+/**
+ * The CPU cost of a frame: posing and walking the robot's skeleton, and the whole of onDrawFrame() (posing, traversal
+ * and draw submission) against a RecordingGlBackend instead of a GPU.
+ */
+@State(Scope.Thread)
+public class FrameBenchmark
+{
+	@Param({"false", "true"})
+	public boolean batching;
+
+	private RecordingGlBackend gl;
+	private RobotRenderer renderer;
+
+	private Skeleton skeleton;
+	private AnimationPlayer dance;
+	private final float[] root = new float[16];
+	private long time;
+
+	@Setup
+	public void setUp()
+	{
+		gl = new RecordingGlBackend();
+		renderer = new RobotRenderer(new Context(new File(System.getProperty("java.io.tmpdir"), "robot-benchmarks")), gl);
+		renderer.onSurfaceCreated(null, null);
+		renderer.onSurfaceChanged(null, 1280, 720);
+		renderer.setBatching(batching);
+		renderer.controlAnimation(); //start dancing
+
+		skeleton = RobotModel.createSkeleton();
+		dance = new AnimationPlayer(RobotModel.createDanceClip(), skeleton);
+		Matrix.setIdentityM(root, 0);
+	}
+
+	/**
+	 * One whole frame, as the GL thread would draw it
+	 */
+	@Benchmark
+	public int drawFrame()
+	{
+		gl.clear(); //so the command log doesn't grow
+		renderer.onDrawFrame(null);
+		return gl.getDrawCallCount();
+	}
+
+	/**
+	 * Sampling the dance and computing every joint's transforms (what drawFrame() does before submitting)
+	 */
+	@Benchmark
+	public float[] poseAndTraverse()
+	{
+		time += 16;
+		dance.sample(time, skeleton);
+		skeleton.update(root, 0);
+		return skeleton.getModelTransforms();
+	}
+}
@@ -0,0 +1,73 @@
+package cs315.yourname.hwk4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import android.opengl.Matrix;
+import cs315.yourname.hwk4.AnimationClip;
+import cs315.yourname.hwk4.AnimationPlayer;
+import cs315.yourname.hwk4.JointBuffer;
+import cs315.yourname.hwk4.RobotModel;
+import cs315.yourname.hwk4.Skeleton;
+
+/**
+ * Posing a whole crowd on one thread: robot by robot with Skeleton.computeModelTransforms() (a 4x4 matrix per joint),
+ * against all at once with a JointBuffer's bulk kernels. Sampling the dance is left out of both, since it is the same work.
+ */
+@State(Scope.Thread)
+public class JointBufferBenchmark
+{
+	private static final int MATRIX_SIZE = 16;
+
+	@Param({"100", "1000", "10000"})
+	public int robots;
+
+	private Skeleton skeleton;
+	private float[] poses; //every robot's pose, robot by robot
+	private float[] roots;
+	private float[] models;
+	private float[] scratch;
+	private JointBuffer joints;
+
+	@Setup
+	public void setUp()
+	{
+		skeleton = RobotModel.createSkeleton();
+		AnimationClip dance = RobotModel.createDanceClip();
+		int jointCount = skeleton.getJointCount();
+		poses = new float[robots*jointCount*MATRIX_SIZE];
+		roots = new float[robots*MATRIX_SIZE];
+		models = new float[robots*jointCount*MATRIX_SIZE];
+		scratch = new float[skeleton.getScratchSize()];
+		joints = new JointBuffer(skeleton, robots);
+
+		AnimationPlayer player = new AnimationPlayer(dance, skeleton);
+		for(int r=0; r<robots; r++)
+		{
+			Matrix.setIdentityM(roots, r*MATRIX_SIZE);
+			Matrix.translateM(roots, r*MATRIX_SIZE, r*3.0f, 0.0f, 0.0f);
+			joints.setRoot(r, roots, r*MATRIX_SIZE);
+			player.sample(r*7919L, poses, r*jointCount*MATRIX_SIZE);
+			player.sample(r*7919L, joints, r);
+		}
+	}
+
+	@Benchmark
+	public float[] robotByRobot()
+	{
+		int jointCount = skeleton.getJointCount();
+		for(int r=0; r<robots; r++)
+			skeleton.computeModelTransforms(roots, r*MATRIX_SIZE, poses, r*jointCount*MATRIX_SIZE, models, r*jointCount*MATRIX_SIZE, scratch);
+		return models;
+	}
+
+	@Benchmark
+	public float[][] jointBuffer()
+	{
+		joints.update();
+		return joints.getWorldTransforms();
+	}
+}
@@ -0,0 +1,53 @@
+package cs315.yourname.hwk4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import android.opengl.Matrix;
+import cs315.yourname.hwk4.MatrixStack;
+
+/**
+ * A push / translate / rotate / scale / pop sequence like drawing one part of the robot, on a MatrixStack and on
+ * plain arrays copied by hand (the way the renderer used to do it).
+ */
+@State(Scope.Thread)
+public class MatrixStackBenchmark
+{
+	private final MatrixStack stack = new MatrixStack(8);
+	private final float[] model = new float[16];
+	private final float[] saved = new float[16];
+	private float angle;
+
+	@Setup
+	public void setUp()
+	{
+		stack.reset();
+		Matrix.setIdentityM(model, 0);
+	}
+
+	@Benchmark
+	public float[] matrixStack()
+	{
+		angle += 0.5f;
+		stack.push();
+		stack.translate(0.9f, 0.5f, 0.0f);
+		stack.rotate(angle, 1.0f, 0.0f, 0.0f);
+		stack.scale(0.5f, 0.5f, 0.5f);
+		stack.pop();
+		return stack.array();
+	}
+
+	@Benchmark
+	public float[] copiedArrays()
+	{
+		angle += 0.5f;
+		System.arraycopy(model, 0, saved, 0, 16);
+		Matrix.translateM(model, 0, 0.9f, 0.5f, 0.0f);
+		Matrix.rotateM(model, 0, angle, 1.0f, 0.0f, 0.0f);
+		Matrix.scaleM(model, 0, 0.5f, 0.5f, 0.5f);
+		System.arraycopy(saved, 0, model, 0, 16);
+		return model;
+	}
+}
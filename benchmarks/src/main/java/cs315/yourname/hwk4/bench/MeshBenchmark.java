@@ -0,0 +1,63 @@
+package cs315.yourname.hwk4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cs315.yourname.hwk4.IndexedMesh;
+import cs315.yourname.hwk4.ModelFactory;
+
+/**
+ * How long it takes to build the model data: the factory itself (which packs the cube), generating a sphere at each
+ * detail level, and packing an already-generated sphere's data.
+ */
+@State(Scope.Thread)
+public class MeshBenchmark
+{
+	@Param({"0", "1", "2", "3", "4", "5"})
+	public int level;
+
+	private ModelFactory factory; //with the sphere already generated
+
+	@Setup
+	public void setUp()
+	{
+		factory = new ModelFactory();
+		factory.getIndexedSphere(level);
+	}
+
+	@Benchmark
+	public ModelFactory newModelFactory()
+	{
+		return new ModelFactory();
+	}
+
+	/**
+	 * Generating (and writing out the triangles of) a sphere from scratch
+	 */
+	@Benchmark
+	public float[] generateSphereVertices()
+	{
+		return new ModelFactory().getSphereVertices(level);
+	}
+
+	/**
+	 * Packing positions and normals into the un-indexed layout
+	 */
+	@Benchmark
+	public float[] getSphereData()
+	{
+		return factory.getSphereData(level);
+	}
+
+	/**
+	 * Packing positions and normals into the indexed layout we actually upload
+	 */
+	@Benchmark
+	public IndexedMesh getIndexedSphere()
+	{
+		return factory.getIndexedSphere(level);
+	}
+}
@@ -0,0 +1,8 @@
+package javax.microedition.khronos.egl;
+
+/**
+ * A stand-in for the EGL config type on a desktop JVM
+ */
+public abstract class EGLConfig
+{
+}
@@ -0,0 +1,8 @@
+package javax.microedition.khronos.opengles;
+
+/**
+ * A stand-in for the GL10 type on a desktop JVM (the robot never uses it)
+ */
+public interface GL10
+{
+}
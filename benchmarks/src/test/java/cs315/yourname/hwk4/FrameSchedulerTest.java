@@ -0,0 +1,139 @@
+package cs315.yourname.hwk4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs FrameScheduler's policy against a fake clock and 60 Hz display refreshes
+ */
+public class FrameSchedulerTest
+{
+	private static final long REFRESH = 16666667L; //60 Hz, in nanoseconds
+
+	private long now = 1000000000L;
+	private final FrameScheduler.Clock clock = new FrameScheduler.Clock()
+	{
+		@Override
+		public long nanoTime()
+		{
+			return now;
+		}
+	};
+	private FrameScheduler scheduler;
+	private long pace; //the scheduler's time between frames at 30 fps
+
+	@Before
+	public void setUp()
+	{
+		scheduler = new FrameScheduler(clock, 30);
+		pace = scheduler.getFrameInterval();
+		assertTrue(Math.abs(pace - 1000000000L/30) <= 1);
+		assertTrue("the first frame", vsync());
+		assertFalse(scheduler.needsFrames());
+	}
+
+	@Test
+	public void stillSceneDrawsOneFramePerInvalidate()
+	{
+		for(int i=0; i<10; i++)
+			assertFalse(vsync());
+
+		scheduler.invalidate();
+		assertTrue(scheduler.needsFrames());
+		assertTrue(vsync());
+		assertFalse(vsync());
+		assertFalse(scheduler.needsFrames());
+		assertEquals(2, scheduler.getDeliveredFrameCount());
+	}
+
+	@Test
+	public void pacesToEveryOtherRefresh()
+	{
+		scheduler.setAnimating(true);
+		for(int i=0; i<30; i++)
+			assertEquals("refresh "+i, i%2 == 0, vsync());
+	}
+
+	@Test
+	public void drawsAFrameThatComesALittleEarly()
+	{
+		scheduler.setAnimating(true);
+		long start = now;
+		assertTrue(vsync());
+
+		now = start + pace - pace/5; //within a quarter of a frame of when it's due
+		assertTrue(vsync());
+		now = start + 2*pace - pace/3; //too early for the next one
+		assertFalse(vsync());
+		now = start + 2*pace;
+		assertTrue(vsync());
+	}
+
+	@Test
+	public void keepsThePaceAfterALateFrame()
+	{
+		scheduler.setAnimating(true);
+		long start = now;
+		assertTrue(vsync());
+		assertFalse(vsync());
+
+		now = start + pace + REFRESH/2; //half a refresh late
+		assertTrue(vsync());
+		now = start + 2*pace; //but the next one is still due on the original pace
+		assertTrue(vsync());
+	}
+
+	@Test
+	public void resyncsAfterFallingAFrameBehind()
+	{
+		scheduler.setAnimating(true);
+		assertTrue(vsync());
+		now += 4*REFRESH; //more than a whole frame missed
+		assertTrue(vsync());
+		assertFalse("no catching up", vsync());
+		assertTrue(vsync());
+	}
+
+	@Test
+	public void countsLateFramesAndTheDeliveredRate()
+	{
+		scheduler.setAnimating(true);
+		for(int i=0; i<62; i++)
+			vsync(); //31 frames over about a second
+		assertEquals(0, scheduler.getLateFrameCount());
+		assertEquals(30, scheduler.getDeliveredFrameRate(), 0.5f);
+
+		now += pace; //a frame missed
+		assertTrue(vsync());
+		assertEquals(1, scheduler.getLateFrameCount());
+		assertEquals("with the first frame", 33, scheduler.getDeliveredFrameCount());
+	}
+
+	@Test
+	public void stopAnimatingDrawsOneFinalFrame()
+	{
+		scheduler.setAnimating(true);
+		vsync();
+		vsync();
+
+		scheduler.setAnimating(false);
+		assertTrue(scheduler.needsFrames());
+		assertTrue(vsync());
+		assertFalse(scheduler.needsFrames());
+		assertFalse(vsync());
+	}
+
+	//one display refresh: asks the scheduler whether to draw, "draws" if so, and moves the clock on a refresh
+	private boolean vsync()
+	{
+		boolean draw = scheduler.onVsync();
+		if(draw)
+			scheduler.frameDelivered();
+		now += REFRESH;
+		return draw;
+	}
+}
@@ -0,0 +1,68 @@
+package cs315.yourname.hwk4;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks FrameStats' interval counting when frames are drawn on demand and paced
+ */
+public class FrameStatsTest
+{
+	private static final long MS = FrameStats.NANOS_PER_MILLI;
+	private static final long PACE_30 = 33333333L;
+
+	private final FrameStats stats = new FrameStats();
+	private long now = 1000*MS;
+
+	@Test
+	public void idleGapIsNotAnInterval()
+	{
+		drawFrames(3, 16*MS);
+		stats.restartIntervals(); //the scene goes still
+		now += 5000*MS;
+		stats.restartIntervals(); //and is woken up again
+		drawFrames(3, 16*MS);
+
+		assertEquals(6, stats.getFrameCount());
+		assertEquals(0, stats.getIntervalsOverBudgetCount(0));
+		assertEquals(16*MS, stats.getIntervalPercentile(100, false), MS);
+	}
+
+	@Test
+	public void pacedFramesAreJudgedAgainstThePace()
+	{
+		stats.setFramePace(PACE_30);
+		drawFrames(10, PACE_30);
+		assertEquals("on pace", 0, stats.getIntervalsOverBudgetCount(0));
+
+		now += PACE_30 - MS; //a frame missed at 30 fps (the next one a little early)
+		drawFrames(1, PACE_30);
+		assertEquals(1, stats.getIntervalsOverBudgetCount(0));
+		assertEquals(0, stats.getIntervalsOverBudgetCount(1));
+
+		now += 2*PACE_30; //two missed
+		drawFrames(1, PACE_30);
+		assertEquals(2, stats.getIntervalsOverBudgetCount(0));
+		assertEquals(1, stats.getIntervalsOverBudgetCount(1));
+	}
+
+	@Test
+	public void unpacedFramesAreJudgedAgainstTheBudgets()
+	{
+		drawFrames(5, PACE_30);
+		assertEquals(4, stats.getIntervalsOverBudgetCount(0));
+		assertEquals(0, stats.getIntervalsOverBudgetCount(1));
+	}
+
+	//draws frames the given time apart, each taking 2 ms of CPU
+	private void drawFrames(int count, long interval)
+	{
+		for(int i=0; i<count; i++)
+		{
+			stats.frameStart(now);
+			stats.frameEnd(now + 2*MS);
+			now += interval;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package cs315.yourname.hwk4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import android.opengl.Matrix;
+
+/**
+ * MatrixStack does the same math as copying matrices around by hand, and allocates nothing once it has been created
+ */
+public class MatrixStackTest
+{
+	private static final int FRAMES = 10000;
+
+	@Test
+	public void matchesMatrixMath()
+	{
+		MatrixStack stack = new MatrixStack(4);
+		float[] expected = new float[16];
+		Matrix.setIdentityM(expected, 0);
+		Matrix.translateM(expected, 0, 0.9f, 0.5f, 0.0f);
+		Matrix.rotateM(expected, 0, 30.0f, 1.0f, 0.0f, 0.0f);
+		Matrix.scaleM(expected, 0, 0.5f, 0.25f, 0.5f);
+
+		stack.reset();
+		stack.push();
+		stack.translate(0.9f, 0.5f, 0.0f);
+		stack.rotate(30.0f, 1.0f, 0.0f, 0.0f);
+		stack.scale(0.5f, 0.25f, 0.5f);
+		float[] actual = new float[16];
+		stack.get(actual, 0);
+		for(int i=0; i<16; i++)
+			assertEquals("entry "+i, expected[i], actual[i], 1e-6f);
+
+		stack.pop();
+		stack.get(actual, 0);
+		assertEquals(1.0f, actual[0], 0.0f); //back to the identity
+		assertEquals(0.0f, actual[12], 0.0f);
+		assertEquals(1, stack.depth());
+	}
+
+	@Test
+	public void allocatesNothingPerFrame()
+	{
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		MatrixStack stack = new MatrixStack(8);
+		drawFrames(stack, FRAMES); //warm up, so class loading and the like aren't counted
+		long before = threads.getThreadAllocatedBytes(thread);
+		before = threads.getThreadAllocatedBytes(thread); //the first call may allocate
+		drawFrames(stack, FRAMES);
+		long after = threads.getThreadAllocatedBytes(thread);
+		assertEquals("bytes allocated over "+FRAMES+" frames", 0, after - before);
+	}
+
+	//a push / transform / pop sequence for each part of the robot, like a frame of the renderer
+	private static void drawFrames(MatrixStack stack, int frames)
+	{
+		for(int f=0; f<frames; f++)
+		{
+			stack.reset();
+			stack.push();
+			for(int part=0; part<20; part++)
+			{
+				stack.push();
+				stack.translate(0.9f, 0.5f, 0.0f);
+				stack.rotate(f*0.5f, 1.0f, 0.0f, 0.0f);
+				stack.rotate(f*0.25f, 0.3f, 0.5f, 0.8f);
+				stack.scale(0.5f, 0.5f, 0.5f);
+				stack.pop();
+			}
+			stack.pop();
+		}
+	}
+}
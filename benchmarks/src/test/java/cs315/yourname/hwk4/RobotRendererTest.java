@@ -0,0 +1,115 @@
+package cs315.yourname.hwk4;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+/**
+ * Draw-call regression tests: whole frames of RobotRenderer.onDrawFrame() against a RecordingGlBackend, counting the
+ * draw calls each drawing mode makes for the one robot (20 parts: 10 cubes and 10 spheres) and for a small crowd
+ */
+public class RobotRendererTest
+{
+	private static final int PARTS = 20;
+	private static final int MOVING_PARTS = 18; //all but the torso and head, while dancing
+	private static final int CROWD = 4;
+
+	@Rule
+	public final TemporaryFolder cacheDir = new TemporaryFolder();
+
+	private RecordingGlBackend gl;
+	private RobotRenderer renderer;
+	private long time = 1000;
+
+	@Before
+	public void setUp()
+	{
+		SystemClock.setUptimeMillis(time);
+		gl = new RecordingGlBackend();
+		renderer = new RobotRenderer(new Context(cacheDir.getRoot()), gl);
+		renderer.onSurfaceCreated(null, null);
+		renderer.onSurfaceChanged(null, 1280, 720);
+	}
+
+	@After
+	public void tearDown()
+	{
+		renderer.onPause(); //stops the crowd's threads
+		SystemClock.setUptimeMillis(-1);
+	}
+
+	@Test
+	public void drawsEachPartOnce()
+	{
+		renderer.setStaticBatching(false);
+		assertEquals(PARTS, drawFrame());
+		startDancing();
+		assertEquals(PARTS, drawFrame());
+	}
+
+	@Test
+	public void staticBatchDrawsTheStillPartsInOneCall()
+	{
+		assertEquals("standing still", 1, drawFrame());
+		startDancing();
+		assertEquals("dancing", 1 + MOVING_PARTS, drawFrame());
+	}
+
+	@Test
+	public void batchingDrawsEachMeshOnce()
+	{
+		renderer.setStaticBatching(false);
+		renderer.setLevelOfDetail(false); //so every sphere uses the same mesh
+		renderer.setBatching(true);
+		assertEquals("a cube group and a sphere group", 2, drawFrame());
+		startDancing();
+		assertEquals(2, drawFrame());
+
+		renderer.setCrowdSize(CROWD);
+		int perMesh = (CROWD*PARTS/2 + DrawBatcher.BATCH_SIZE-1) / DrawBatcher.BATCH_SIZE; //each group is drawn BATCH_SIZE parts at a time
+		assertEquals(2*perMesh, drawFrame());
+	}
+
+	@Test
+	public void skinningDrawsEachRobotInOneCall()
+	{
+		renderer.setSkinning(true);
+		assertEquals(1, drawFrame());
+		startDancing();
+		assertEquals(1, drawFrame());
+
+		renderer.setCrowdSize(CROWD);
+		assertEquals(CROWD, drawFrame());
+	}
+
+	@Test
+	public void crowdDrawsEveryPartOfEveryRobot()
+	{
+		renderer.setCrowdSize(CROWD);
+		startDancing();
+		assertEquals(CROWD*PARTS, drawFrame());
+	}
+
+	//toggles the dance on, and moves the clock past the time it takes to fade in
+	private void startDancing()
+	{
+		renderer.controlAnimation();
+		drawFrame(); //starts the fade
+		time += RobotRenderer.DANCE_FADE_MILLIS + 1;
+		SystemClock.setUptimeMillis(time);
+	}
+
+	private int drawFrame()
+	{
+		gl.clear();
+		renderer.onDrawFrame(null);
+		return gl.getDrawCallCount();
+	}
+}
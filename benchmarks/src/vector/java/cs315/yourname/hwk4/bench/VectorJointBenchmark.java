@@ -0,0 +1,51 @@
+package cs315.yourname.hwk4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cs315.yourname.hwk4.AnimationPlayer;
+import cs315.yourname.hwk4.JointBuffer;
+import cs315.yourname.hwk4.RobotModel;
+import cs315.yourname.hwk4.Skeleton;
+
+/**
+ * JointBuffer's scalar kernels against the Vector API ones, posing a whole crowd (only built with the "vector" profile).
+ * The vector code only stops allocating once C2 has compiled it, so give it the default warm-up.
+ */
+@State(Scope.Thread)
+@Fork(jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorJointBenchmark
+{
+	@Param({"100", "1000", "10000"})
+	public int robots;
+
+	private JointBuffer joints;
+
+	@Setup
+	public void setUp()
+	{
+		Skeleton skeleton = RobotModel.createSkeleton();
+		joints = new JointBuffer(skeleton, robots);
+		AnimationPlayer player = new AnimationPlayer(RobotModel.createDanceClip(), skeleton);
+		for(int r=0; r<robots; r++)
+			player.sample(r*7919L, joints, r);
+	}
+
+	@Benchmark
+	public float[][] scalarKernels()
+	{
+		joints.update();
+		return joints.getWorldTransforms();
+	}
+
+	@Benchmark
+	public float[][] vectorKernels()
+	{
+		VectorJointKernel.update(joints);
+		return joints.getWorldTransforms();
+	}
+}
@@ -0,0 +1,139 @@
+package cs315.yourname.hwk4.bench;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import cs315.yourname.hwk4.Affine3;
+import cs315.yourname.hwk4.JointBuffer;
+import cs315.yourname.hwk4.Skeleton;
+
+/**
+ * JointBuffer's two kernels written with the (incubating) Vector API, for desktop JVMs: the same math, but explicitly as
+ * many lanes at a time as the CPU's widest vectors hold, instead of hoping the JIT vectorizes the scalar loops.
+ * The last, partial vector of each loop is handled with a mask. Only built with the "vector" profile (Java 17+):
+ * 	mvn -B -Pvector package
+ */
+public class VectorJointKernel
+{
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	private static final int SIZE = Affine3.SIZE;
+
+	private VectorJointKernel()
+	{
+		//just static methods
+	}
+
+	/**
+	 * Poses every robot in the buffer, like JointBuffer.update()
+	 */
+	public static void update(JointBuffer joints)
+	{
+		computeLocalTransforms(joints);
+		computeWorldTransforms(joints);
+	}
+
+	/**
+	 * Like JointBuffer.computeLocalTransforms()
+	 */
+	public static void computeLocalTransforms(JointBuffer joints)
+	{
+		float[][] m = joints.getLocalTransforms();
+		float[][] t = joints.getTranslations();
+		float[][] q = joints.getRotations();
+		float[][] s = joints.getScales();
+		int n = t[0].length;
+		for(int i=0; i<n; i+=SPECIES.length())
+		{
+			VectorMask<Float> mask = SPECIES.indexInRange(i, n);
+			FloatVector x = FloatVector.fromArray(SPECIES, q[0], i, mask);
+			FloatVector y = FloatVector.fromArray(SPECIES, q[1], i, mask);
+			FloatVector z = FloatVector.fromArray(SPECIES, q[2], i, mask);
+			FloatVector w = FloatVector.fromArray(SPECIES, q[3], i, mask);
+			FloatVector xx = x.mul(x), yy = y.mul(y), zz = z.mul(z);
+			FloatVector xy = x.mul(y), xz = x.mul(z), yz = y.mul(z);
+			FloatVector wx = w.mul(x), wy = w.mul(y), wz = w.mul(z);
+			FloatVector scaleX = FloatVector.fromArray(SPECIES, s[0], i, mask);
+			FloatVector scaleY = FloatVector.fromArray(SPECIES, s[1], i, mask);
+			FloatVector scaleZ = FloatVector.fromArray(SPECIES, s[2], i, mask);
+
+			yy.add(zz).mul(-2.0f).add(1.0f).mul(scaleX).intoArray(m[0], i, mask);
+			xy.add(wz).mul(2.0f).mul(scaleX).intoArray(m[1], i, mask);
+			xz.sub(wy).mul(2.0f).mul(scaleX).intoArray(m[2], i, mask);
+			xy.sub(wz).mul(2.0f).mul(scaleY).intoArray(m[3], i, mask);
+			xx.add(zz).mul(-2.0f).add(1.0f).mul(scaleY).intoArray(m[4], i, mask);
+			yz.add(wx).mul(2.0f).mul(scaleY).intoArray(m[5], i, mask);
+			xz.add(wy).mul(2.0f).mul(scaleZ).intoArray(m[6], i, mask);
+			yz.sub(wx).mul(2.0f).mul(scaleZ).intoArray(m[7], i, mask);
+			xx.add(yy).mul(-2.0f).add(1.0f).mul(scaleZ).intoArray(m[8], i, mask);
+			FloatVector.fromArray(SPECIES, t[0], i, mask).intoArray(m[9], i, mask);
+			FloatVector.fromArray(SPECIES, t[1], i, mask).intoArray(m[10], i, mask);
+			FloatVector.fromArray(SPECIES, t[2], i, mask).intoArray(m[11], i, mask);
+		}
+	}
+
+	/**
+	 * Like JointBuffer.computeWorldTransforms(); call computeLocalTransforms() first
+	 */
+	public static void computeWorldTransforms(JointBuffer joints)
+	{
+		int robotCount = joints.getRobotCount();
+		int[] parents = joints.getParents();
+		float[] binds = joints.getBinds();
+		float[][] locals = joints.getLocalTransforms();
+		float[][] worlds = joints.getWorldTransforms();
+		float[][] roots = joints.getRoots();
+		for(int j=0; j<parents.length; j++)
+		{
+			float[][] parentWorlds = (parents[j] == Skeleton.NO_PARENT) ? roots : worlds;
+			int parentStart = (parents[j] == Skeleton.NO_PARENT) ? 0 : parents[j]*robotCount;
+			int start = j*robotCount;
+			int b = j*SIZE;
+			for(int r=0; r<robotCount; r+=SPECIES.length())
+			{
+				//kept in locals rather than arrays of vectors, so none of them end up on the heap
+				VectorMask<Float> mask = SPECIES.indexInRange(r, robotCount);
+				int i = start+r;
+				int p = parentStart+r;
+				FloatVector p0 = FloatVector.fromArray(SPECIES, parentWorlds[0], p, mask);
+				FloatVector p1 = FloatVector.fromArray(SPECIES, parentWorlds[1], p, mask);
+				FloatVector p2 = FloatVector.fromArray(SPECIES, parentWorlds[2], p, mask);
+				FloatVector p3 = FloatVector.fromArray(SPECIES, parentWorlds[3], p, mask);
+				FloatVector p4 = FloatVector.fromArray(SPECIES, parentWorlds[4], p, mask);
+				FloatVector p5 = FloatVector.fromArray(SPECIES, parentWorlds[5], p, mask);
+				FloatVector p6 = FloatVector.fromArray(SPECIES, parentWorlds[6], p, mask);
+				FloatVector p7 = FloatVector.fromArray(SPECIES, parentWorlds[7], p, mask);
+				FloatVector p8 = FloatVector.fromArray(SPECIES, parentWorlds[8], p, mask);
+				FloatVector p9 = FloatVector.fromArray(SPECIES, parentWorlds[9], p, mask);
+				FloatVector p10 = FloatVector.fromArray(SPECIES, parentWorlds[10], p, mask);
+				FloatVector p11 = FloatVector.fromArray(SPECIES, parentWorlds[11], p, mask);
+				for(int col=0; col<4; col++)
+				{
+					FloatVector l0 = FloatVector.fromArray(SPECIES, locals[col*3], i, mask);
+					FloatVector l1 = FloatVector.fromArray(SPECIES, locals[col*3+1], i, mask);
+					FloatVector l2 = FloatVector.fromArray(SPECIES, locals[col*3+2], i, mask);
+					//this column of bind * local
+					FloatVector c0 = l0.mul(binds[b]).add(l1.mul(binds[b+3])).add(l2.mul(binds[b+6]));
+					FloatVector c1 = l0.mul(binds[b+1]).add(l1.mul(binds[b+4])).add(l2.mul(binds[b+7]));
+					FloatVector c2 = l0.mul(binds[b+2]).add(l1.mul(binds[b+5])).add(l2.mul(binds[b+8]));
+					//and of parent * that
+					FloatVector w0 = p0.mul(c0).add(p3.mul(c1)).add(p6.mul(c2));
+					FloatVector w1 = p1.mul(c0).add(p4.mul(c1)).add(p7.mul(c2));
+					FloatVector w2 = p2.mul(c0).add(p5.mul(c1)).add(p8.mul(c2));
+					if(col == 3) //the translation column
+					{
+						c0 = c0.add(binds[b+9]);
+						c1 = c1.add(binds[b+10]);
+						c2 = c2.add(binds[b+11]);
+						w0 = p0.mul(c0).add(p3.mul(c1)).add(p6.mul(c2)).add(p9);
+						w1 = p1.mul(c0).add(p4.mul(c1)).add(p7.mul(c2)).add(p10);
+						w2 = p2.mul(c0).add(p5.mul(c1)).add(p8.mul(c2)).add(p11);
+					}
+					w0.intoArray(worlds[col*3], i, mask);
+					w1.intoArray(worlds[col*3+1], i, mask);
+					w2.intoArray(worlds[col*3+2], i, mask);
+				}
+			}
+		}
+	}
+}
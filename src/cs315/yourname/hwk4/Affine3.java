@@ -0,0 +1,315 @@
+package cs315.yourname.hwk4;
+
+/**
+ * Math for affine transforms (rotations, translations and scales, but no projection), which is all the skeleton ever uses.
+ * An affine matrix's bottom row is always (0, 0, 0, 1), so it can be stored as just its top three rows: a 3x4 matrix of
+ * 12 floats, column-major like android.opengl.Matrix ({ xAxis, yAxis, zAxis, translation }, 3 floats each). Skipping the
+ * bottom row makes a multiply 36 multiplications rather than 64.
+ *
+ * Each operation comes in two forms: for those 3x4 matrices, and (ending in M, like android.opengl.Matrix's methods) for
+ * the usual 16-float 4x4 matrices that GL and the rest of the app use, so the two can be mixed without converting.
+ * Rotations about the x, y and z axes, either way along them (all the dance uses), only touch the two columns they
+ * change, rather than building a rotation matrix and multiplying by it. Placing a part (translate, rotate, then scale) is
+ * one call either way: setTRS() builds the transform outright, and multiplyTRS() applies it to a matrix in place.
+ *
+ * Everything works in place on the caller's arrays, and nothing is shared between calls (unlike Matrix.rotateM's
+ * synchronized temporary array), so any number of threads can use it at once.
+ */
+public final class Affine3
+{
+	public static final String TAG = "Affine3";
+
+	public static final int SIZE = 12; //floats in a 3x4 matrix
+	public static final int MATRIX_SIZE = 16; //floats in a 4x4 matrix
+
+	private static final int COMPACT_ROWS = 3;
+	private static final int FULL_ROWS = 4;
+
+	private Affine3()
+	{
+		//just static methods
+	}
+
+	/**
+	 * Sets the 3x4 matrix to the identity
+	 */
+	public static void setIdentity(float[] a, int offset)
+	{
+		for(int i=0; i<SIZE; i++)
+			a[offset+i] = 0;
+		a[offset] = 1.0f;
+		a[offset+4] = 1.0f;
+		a[offset+8] = 1.0f;
+	}
+
+	/**
+	 * Copies the top three rows of a 4x4 affine matrix into a 3x4 one
+	 */
+	public static void fromMatrix(float[] a, int offset, float[] m, int mOffset)
+	{
+		for(int col=0; col<4; col++)
+			for(int row=0; row<3; row++)
+				a[offset + col*COMPACT_ROWS + row] = m[mOffset + col*FULL_ROWS + row];
+	}
+
+	/**
+	 * Expands a 3x4 matrix into a 4x4 one (with the bottom row 0, 0, 0, 1), such as to hand it to GL
+	 */
+	public static void toMatrix(float[] m, int mOffset, float[] a, int offset)
+	{
+		for(int col=0; col<4; col++)
+		{
+			for(int row=0; row<3; row++)
+				m[mOffset + col*FULL_ROWS + row] = a[offset + col*COMPACT_ROWS + row];
+			m[mOffset + col*FULL_ROWS + 3] = 0;
+		}
+		m[mOffset + 15] = 1.0f;
+	}
+
+	/**
+	 * result = lhs * rhs, all 3x4. The result may be the same matrix as either input.
+	 */
+	public static void multiply(float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset)
+	{
+		multiply(result, resultOffset, COMPACT_ROWS, lhs, lhsOffset, COMPACT_ROWS, rhs, rhsOffset, COMPACT_ROWS);
+	}
+
+	/**
+	 * result = lhs * rhs, all 4x4 and affine (the inputs' bottom rows are assumed to be 0, 0, 0, 1, and aren't read).
+	 * The result may be the same matrix as either input.
+	 */
+	public static void multiplyMM(float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset)
+	{
+		multiply(result, resultOffset, FULL_ROWS, lhs, lhsOffset, FULL_ROWS, rhs, rhsOffset, FULL_ROWS);
+	}
+
+	/**
+	 * result = lhs * rhs, where lhs and the result are 4x4 (affine) and rhs is 3x4
+	 */
+	public static void multiplyMA(float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset)
+	{
+		multiply(result, resultOffset, FULL_ROWS, lhs, lhsOffset, FULL_ROWS, rhs, rhsOffset, COMPACT_ROWS);
+	}
+
+	//the top three rows of lhs * rhs, for either layout (the number of floats per column); lhs is read up front
+	private static void multiply(float[] result, int resultOffset, int resultRows, float[] lhs, int lhsOffset, int lhsRows,
+			float[] rhs, int rhsOffset, int rhsRows)
+	{
+		float l00 = lhs[lhsOffset], l10 = lhs[lhsOffset+1], l20 = lhs[lhsOffset+2];
+		int c = lhsOffset + lhsRows;
+		float l01 = lhs[c], l11 = lhs[c+1], l21 = lhs[c+2];
+		c += lhsRows;
+		float l02 = lhs[c], l12 = lhs[c+1], l22 = lhs[c+2];
+		c += lhsRows;
+		float l03 = lhs[c], l13 = lhs[c+1], l23 = lhs[c+2];
+
+		for(int col=0; col<4; col++)
+		{
+			int r = rhsOffset + col*rhsRows;
+			float r0 = rhs[r], r1 = rhs[r+1], r2 = rhs[r+2];
+			float x = l00*r0 + l01*r1 + l02*r2;
+			float y = l10*r0 + l11*r1 + l12*r2;
+			float z = l20*r0 + l21*r1 + l22*r2;
+			if(col == 3) //the translation column (rhs's implicit 1 at the bottom picks up lhs's translation)
+			{
+				x += l03;
+				y += l13;
+				z += l23;
+			}
+			int o = resultOffset + col*resultRows;
+			result[o] = x;
+			result[o+1] = y;
+			result[o+2] = z;
+			if(resultRows == FULL_ROWS)
+				result[o+3] = (col == 3) ? 1.0f : 0.0f;
+		}
+	}
+
+	/**
+	 * Translates the 3x4 matrix (a = a * T), in place
+	 */
+	public static void translate(float[] a, int offset, float x, float y, float z)
+	{
+		translate(a, offset, COMPACT_ROWS, x, y, z);
+	}
+
+	/**
+	 * Translates the 4x4 matrix (m = m * T), in place; like Matrix.translateM()
+	 */
+	public static void translateM(float[] m, int offset, float x, float y, float z)
+	{
+		translate(m, offset, FULL_ROWS, x, y, z);
+	}
+
+	private static void translate(float[] a, int offset, int rows, float x, float y, float z)
+	{
+		int t = offset + 3*rows;
+		for(int i=0; i<rows; i++)
+			a[t+i] += a[offset+i]*x + a[offset+rows+i]*y + a[offset+2*rows+i]*z;
+	}
+
+	/**
+	 * Scales the 3x4 matrix (a = a * S), in place
+	 */
+	public static void scale(float[] a, int offset, float x, float y, float z)
+	{
+		scale(a, offset, COMPACT_ROWS, x, y, z);
+	}
+
+	/**
+	 * Scales the 4x4 matrix (m = m * S), in place; like Matrix.scaleM()
+	 */
+	public static void scaleM(float[] m, int offset, float x, float y, float z)
+	{
+		scale(m, offset, FULL_ROWS, x, y, z);
+	}
+
+	private static void scale(float[] a, int offset, int rows, float x, float y, float z)
+	{
+		for(int i=0; i<rows; i++)
+		{
+			a[offset+i] *= x;
+			a[offset+rows+i] *= y;
+			a[offset+2*rows+i] *= z;
+		}
+	}
+
+	/**
+	 * Rotates the 3x4 matrix (a = a * R) by the given angle (in degrees) around the given axis, in place
+	 */
+	public static void rotate(float[] a, int offset, float angle, float x, float y, float z)
+	{
+		rotate(a, offset, COMPACT_ROWS, angle, x, y, z);
+	}
+
+	/**
+	 * Rotates the 4x4 matrix (m = m * R) by the given angle (in degrees) around the given axis, in place; gives the same
+	 * results as Matrix.rotateM() (to within rounding for the negative axes, which Matrix has no fast path for), without
+	 * its shared temporary array
+	 */
+	public static void rotateM(float[] m, int offset, float angle, float x, float y, float z)
+	{
+		rotate(m, offset, FULL_ROWS, angle, x, y, z);
+	}
+
+	//picks the fast path for rotations about a unit axis (either way along it: turning about -x is turning the other way
+	//about x, so just the sine's sign flips), and otherwise multiplies by the full rotation (kept in locals)
+	private static void rotate(float[] a, int offset, int rows, float angle, float x, float y, float z)
+	{
+		float radians = angle * (float)(Math.PI / 180.0f); //the same rounding as android.opengl.Matrix
+		float s = (float)Math.sin(radians);
+		float c = (float)Math.cos(radians);
+
+		if((x == 1.0f || x == -1.0f) && y == 0.0f && z == 0.0f)
+			rotateColumns(a, offset + rows, offset + 2*rows, rows, x*s, c); //y and z axes
+		else if(x == 0.0f && (y == 1.0f || y == -1.0f) && z == 0.0f)
+			rotateColumns(a, offset + 2*rows, offset, rows, y*s, c); //z and x axes
+		else if(x == 0.0f && y == 0.0f && (z == 1.0f || z == -1.0f))
+			rotateColumns(a, offset, offset + rows, rows, z*s, c); //x and y axes
+		else
+		{
+			float length = (float)Math.sqrt(x*x + y*y + z*z);
+			if(length != 1.0f)
+			{
+				float recip = 1.0f / length;
+				x *= recip;
+				y *= recip;
+				z *= recip;
+			}
+			float nc = 1.0f - c;
+			float xy = x*y, yz = y*z, zx = z*x;
+			float xs = x*s, ys = y*s, zs = z*s;
+			float r00 = x*x*nc + c, r01 = xy*nc - zs, r02 = zx*nc + ys;
+			float r10 = xy*nc + zs, r11 = y*y*nc + c, r12 = yz*nc - xs;
+			float r20 = zx*nc - ys, r21 = yz*nc + xs, r22 = z*z*nc + c;
+			for(int i=0; i<rows; i++)
+			{
+				float a0 = a[offset+i], a1 = a[offset+rows+i], a2 = a[offset+2*rows+i];
+				a[offset+i] = a0*r00 + a1*r10 + a2*r20;
+				a[offset+rows+i] = a0*r01 + a1*r11 + a2*r21;
+				a[offset+2*rows+i] = a0*r02 + a1*r12 + a2*r22;
+			}
+		}
+	}
+
+	//a rotation about a unit axis only mixes the other two columns: u' = c*u + s*v, v' = c*v - s*u
+	private static void rotateColumns(float[] a, int u, int v, int rows, float s, float c)
+	{
+		for(int i=0; i<rows; i++)
+		{
+			float ui = a[u+i], vi = a[v+i];
+			a[u+i] = c*ui + s*vi;
+			a[v+i] = -s*ui + c*vi;
+		}
+	}
+
+	/**
+	 * Sets the 3x4 matrix to T * R * S: scaled, then rotated by the given angle (in degrees) around the given axis, then
+	 * translated
+	 */
+	public static void setTRS(float[] a, int offset, float tx, float ty, float tz, float angle, float x, float y, float z,
+			float sx, float sy, float sz)
+	{
+		setTRS(a, offset, COMPACT_ROWS, tx, ty, tz, angle, x, y, z, sx, sy, sz);
+	}
+
+	/**
+	 * Sets the 4x4 matrix to T * R * S; the same as setIdentityM(), translateM(), rotateM() and scaleM() in a row
+	 */
+	public static void setTRSM(float[] m, int offset, float tx, float ty, float tz, float angle, float x, float y, float z,
+			float sx, float sy, float sz)
+	{
+		m[offset+3] = 0; //the bottom row
+		m[offset+7] = 0;
+		m[offset+11] = 0;
+		m[offset+15] = 1.0f;
+		setTRS(m, offset, FULL_ROWS, tx, ty, tz, angle, x, y, z, sx, sy, sz);
+	}
+
+	//the translation goes straight into the last column and the rest starts as the identity, so only the rotation's
+	//columns and the scale are left to do
+	private static void setTRS(float[] a, int offset, int rows, float tx, float ty, float tz, float angle, float x, float y, float z,
+			float sx, float sy, float sz)
+	{
+		for(int col=0; col<3; col++)
+			for(int row=0; row<3; row++)
+				a[offset + col*rows + row] = (col == row) ? 1.0f : 0;
+		int t = offset + 3*rows;
+		a[t] = tx;
+		a[t+1] = ty;
+		a[t+2] = tz;
+		rotate(a, offset, rows, angle, x, y, z);
+		scale(a, offset, rows, sx, sy, sz);
+	}
+
+	/**
+	 * result = lhs * T * R * S, all 3x4: places a part relative to lhs (translated, rotated by the given angle in degrees
+	 * around the given axis, then scaled) in one call, with no temporary matrix. The result may be the same matrix as lhs.
+	 */
+	public static void multiplyTRS(float[] result, int resultOffset, float[] lhs, int lhsOffset, float tx, float ty, float tz,
+			float angle, float x, float y, float z, float sx, float sy, float sz)
+	{
+		if(result != lhs || resultOffset != lhsOffset)
+			System.arraycopy(lhs, lhsOffset, result, resultOffset, SIZE);
+		multiplyTRS(result, resultOffset, COMPACT_ROWS, tx, ty, tz, angle, x, y, z, sx, sy, sz);
+	}
+
+	/**
+	 * result = lhs * T * R * S, all 4x4 (affine); the same as translateM(), rotateM() and scaleM() in a row
+	 */
+	public static void multiplyTRSM(float[] result, int resultOffset, float[] lhs, int lhsOffset, float tx, float ty, float tz,
+			float angle, float x, float y, float z, float sx, float sy, float sz)
+	{
+		if(result != lhs || resultOffset != lhsOffset)
+			System.arraycopy(lhs, lhsOffset, result, resultOffset, MATRIX_SIZE);
+		multiplyTRS(result, resultOffset, FULL_ROWS, tx, ty, tz, angle, x, y, z, sx, sy, sz);
+	}
+
+	private static void multiplyTRS(float[] a, int offset, int rows, float tx, float ty, float tz, float angle, float x, float y, float z,
+			float sx, float sy, float sz)
+	{
+		translate(a, offset, rows, tx, ty, tz);
+		rotate(a, offset, rows, angle, x, y, z);
+		scale(a, offset, rows, sx, sy, sz);
+	}
+}
@@ -0,0 +1,304 @@
+package cs315.yourname.hwk4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A keyframed animation (like a dance), stored as data rather than code.
+ * A clip is a set of channels; each channel rotates one joint (by name) about a fixed axis, with the angle given by
+ * time-sorted keyframes. Between keyframes the angle is interpolated, either linearly or with a smooth cubic curve.
+ * Two keyframes at the same time make an instant jump: the later one wins from that time on.
+ *
+ * Clips are immutable, so one clip can be shared by any number of robots; use an AnimationPlayer to sample one.
+ */
+public class AnimationClip
+{
+	public static final String TAG = "AnimationClip";
+
+	public static final int LINEAR = 0;
+	public static final int CUBIC = 1;
+
+	private final String name;
+	private final float length; //milliseconds; the clip repeats after this
+	private final Channel[] channels;
+
+	public AnimationClip(String name, float length, Channel[] channels)
+	{
+		if(length <= 0)
+			throw new IllegalArgumentException("Clip "+name+" must have a positive length: "+length);
+		this.name = name;
+		this.length = length;
+		this.channels = channels;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Returns the length of the clip, in milliseconds
+	 */
+	public float getLength()
+	{
+		return length;
+	}
+
+	public int getChannelCount()
+	{
+		return channels.length;
+	}
+
+	public Channel getChannel(int channel)
+	{
+		return channels[channel];
+	}
+
+	/**
+	 * Reads a clip from a simple text format, so new dances can be written without touching any code:
+	 * <pre>
+	 * clip dance 10000              # name, length in milliseconds
+	 * channel rightShoulder -1 0 0 linear   # joint name, rotation axis, interpolation (linear or cubic)
+	 * 0 0                           # keyframes: time (ms) and angle (degrees), sorted by time
+	 * 10000 20
+	 * </pre>
+	 * Anything after a # is a comment.
+	 */
+	public static AnimationClip load(InputStream in) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		String clipName = null;
+		float clipLength = 0;
+		List<Channel> channels = new ArrayList<Channel>();
+
+		//the channel being read
+		String joint = null;
+		float[] axis = null;
+		int interpolation = LINEAR;
+		List<float[]> keys = new ArrayList<float[]>();
+
+		String line;
+		int lineNumber = 0;
+		while((line = reader.readLine()) != null)
+		{
+			lineNumber++;
+			int comment = line.indexOf('#');
+			if(comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if(line.length() == 0)
+				continue;
+
+			String[] words = line.split("\\s+");
+			try
+			{
+				if(words[0].equals("clip") && words.length == 3)
+				{
+					clipName = words[1];
+					clipLength = Float.parseFloat(words[2]);
+				}
+				else if(words[0].equals("channel") && words.length == 6)
+				{
+					if(joint != null)
+						channels.add(toChannel(joint, axis, interpolation, keys));
+					joint = words[1];
+					axis = new float[] {Float.parseFloat(words[2]), Float.parseFloat(words[3]), Float.parseFloat(words[4])};
+					if(words[5].equals("linear"))
+						interpolation = LINEAR;
+					else if(words[5].equals("cubic"))
+						interpolation = CUBIC;
+					else
+						throw new IOException("Unknown interpolation on line "+lineNumber+": "+words[5]);
+					keys.clear();
+				}
+				else if(words.length == 2 && joint != null)
+				{
+					keys.add(new float[] {Float.parseFloat(words[0]), Float.parseFloat(words[1])});
+				}
+				else
+					throw new IOException("Can't read line "+lineNumber+": "+line);
+			}
+			catch(NumberFormatException e)
+			{
+				throw new IOException("Bad number on line "+lineNumber+": "+line);
+			}
+			catch(IllegalArgumentException e)
+			{
+				throw new IOException("Bad channel before line "+lineNumber+": "+e.getMessage());
+			}
+		}
+		if(joint != null)
+		{
+			try
+			{
+				channels.add(toChannel(joint, axis, interpolation, keys));
+			}
+			catch(IllegalArgumentException e)
+			{
+				throw new IOException("Bad channel at the end: "+e.getMessage());
+			}
+		}
+
+		if(clipName == null)
+			throw new IOException("Missing clip line");
+		if(clipLength <= 0)
+			throw new IOException("Clip "+clipName+" must have a positive length: "+clipLength);
+		return new AnimationClip(clipName, clipLength, channels.toArray(new Channel[channels.size()]));
+	}
+
+	//builds a channel from the keyframes read by load()
+	private static Channel toChannel(String joint, float[] axis, int interpolation, List<float[]> keys)
+	{
+		float[] times = new float[keys.size()];
+		float[] angles = new float[keys.size()];
+		for(int i=0; i<times.length; i++)
+		{
+			times[i] = keys.get(i)[0];
+			angles[i] = keys.get(i)[1];
+		}
+		return new Channel(joint, axis[0], axis[1], axis[2], interpolation, times, angles);
+	}
+
+	/**
+	 * The keyframes that rotate one joint about one axis
+	 */
+	public static class Channel
+	{
+		private final String joint;
+		private final float axisX, axisY, axisZ;
+		private final int interpolation;
+		private final float[] times; //milliseconds, sorted
+		private final float[] angles; //degrees
+		private final float[] slopes; //degrees per millisecond at each keyframe; for cubic interpolation
+
+		/**
+		 * @param joint The name of the joint to rotate
+		 * @param axisX The axis to rotate about (normalized here, so every way of sampling the channel sees a unit axis)
+		 * @param interpolation LINEAR or CUBIC
+		 * @param times The time of each keyframe (in milliseconds, sorted; repeat a time for an instant jump)
+		 * @param angles The angle at each keyframe, in degrees
+		 */
+		public Channel(String joint, float axisX, float axisY, float axisZ, int interpolation, float[] times, float[] angles)
+		{
+			if(times.length == 0 || times.length != angles.length)
+				throw new IllegalArgumentException("Channel for "+joint+" needs the same (non-zero) number of times and angles");
+			for(int i=1; i<times.length; i++)
+				if(times[i] < times[i-1])
+					throw new IllegalArgumentException("Keyframes for "+joint+" are not sorted at "+times[i]);
+			if(interpolation != LINEAR && interpolation != CUBIC)
+				throw new IllegalArgumentException("Unknown interpolation for "+joint+": "+interpolation);
+			float length = (float)Math.sqrt(axisX*axisX + axisY*axisY + axisZ*axisZ);
+			if(!(length > 0)) //also catches NaN
+				throw new IllegalArgumentException("Channel for "+joint+" needs a non-zero rotation axis");
+
+			this.joint = joint;
+			if(length == 1.0f) //already unit length (like every axis of the built-in dance); keep it exactly
+			{
+				this.axisX = axisX;
+				this.axisY = axisY;
+				this.axisZ = axisZ;
+			}
+			else
+			{
+				this.axisX = axisX/length;
+				this.axisY = axisY/length;
+				this.axisZ = axisZ/length;
+			}
+			this.interpolation = interpolation;
+			this.times = times.clone();
+			this.angles = angles.clone();
+
+			//Catmull-Rom style slopes; flat at the ends and on either side of a jump
+			slopes = new float[times.length];
+			for(int i=1; i<times.length-1; i++)
+				if(times[i-1] < times[i] && times[i] < times[i+1])
+					slopes[i] = (angles[i+1] - angles[i-1]) / (times[i+1] - times[i-1]);
+		}
+
+		public String getJoint()
+		{
+			return joint;
+		}
+
+		public int getKeyCount()
+		{
+			return times.length;
+		}
+
+		public float getTime(int key)
+		{
+			return times[key];
+		}
+
+		/**
+		 * Returns the last keyframe at or before the given time (or 0 if the time is before the first), starting the search
+		 * from a guess (such as the keyframe found last time). Playing forwards, this is almost always the guess or the
+		 * one after it; otherwise it falls back to a binary search.
+		 */
+		public int findKey(float time, int guess)
+		{
+			int last = times.length-1;
+			if(guess >= 0 && guess <= last && times[guess] <= time)
+			{
+				if(guess == last || time < times[guess+1])
+					return guess;
+				if(guess+1 == last || time < times[guess+2])
+					return guess+1;
+			}
+
+			//binary search for the last key with times[key] <= time
+			int low = 0;
+			int high = last;
+			while(low < high)
+			{
+				int mid = (low + high + 1) >>> 1;
+				if(times[mid] <= time)
+					low = mid;
+				else
+					high = mid-1;
+			}
+			return low;
+		}
+
+		/**
+		 * Returns the angle (in degrees) at the given time, where key is findKey(time)
+		 */
+		public float angleAt(float time, int key)
+		{
+			if(key == times.length-1 || time <= times[key])
+				return angles[key];
+
+			float t0 = times[key];
+			float dt = times[key+1] - t0;
+			float s = (time - t0) / dt; //how far we are between the keyframes, from 0 to 1
+			float a0 = angles[key];
+			float a1 = angles[key+1];
+			if(interpolation == LINEAR)
+				return a0 + (a1 - a0)*s;
+
+			//cubic Hermite curve
+			float s2 = s*s;
+			float s3 = s2*s;
+			return (2*s3 - 3*s2 + 1)*a0 + (s3 - 2*s2 + s)*dt*slopes[key] + (-2*s3 + 3*s2)*a1 + (s3 - s2)*dt*slopes[key+1];
+		}
+
+		public float getAxisX()
+		{
+			return axisX;
+		}
+
+		public float getAxisY()
+		{
+			return axisY;
+		}
+
+		public float getAxisZ()
+		{
+			return axisZ;
+		}
+	}
+}
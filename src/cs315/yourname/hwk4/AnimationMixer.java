@@ -0,0 +1,277 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.Matrix;
+
+/**
+ * Plays several clips on one skeleton at once, as weighted layers.
+ * Layers are applied in order on top of the rest pose: each one blends the pose so far toward its own clip's pose by its
+ * weight (times its mask's weight for each joint, so a layer can move just the arms, say). A layer's weight can be faded
+ * to a new value over time, which crossfades it in or out.
+ *
+ * The joints' rotations are blended as quaternions (nlerp by default, or slerp), in buffers allocated up front, so mixing
+ * allocates nothing and costs one sample and one blend per layer. A layer that fully covers every joint hides the layers
+ * under it, so those aren't sampled at all; when nothing is being blended on top of it, its clip is sampled directly.
+ *
+ * A mixer is not thread-safe; it is meant to be used on the thread that poses its skeleton.
+ */
+public class AnimationMixer
+{
+	public static final String TAG = "AnimationMixer";
+
+	public static final int NLERP = 0;
+	public static final int SLERP = 1;
+
+	private static final int MATRIX_SIZE = 16;
+
+	private final Skeleton skeleton;
+	private final int jointCount;
+	private int blending = NLERP;
+
+	//the layers, bottom first
+	private int layerCount;
+	private final AnimationPlayer[] players;
+	private final float[][] masks; //each layer's weight for each joint, or null for all of them
+	private final float[] fromWeights; //the weight at the start of the current fade
+	private final float[] toWeights; //the weight at the end of it
+	private final long[] fadeStarts; //milliseconds
+	private final long[] fadeLengths; //milliseconds; 0 once the fade is over (or if there isn't one)
+
+	//preallocated pose buffers: quaternions, joint by joint
+	private final float[] mixed; //the pose so far
+	private final float[] sampled; //the pose of the layer being blended in
+
+	/**
+	 * @param maxLayers How many layers the mixer can hold (the buffers are sized for them up front)
+	 */
+	public AnimationMixer(Skeleton skeleton, int maxLayers)
+	{
+		this.skeleton = skeleton;
+		jointCount = skeleton.getJointCount();
+		players = new AnimationPlayer[maxLayers];
+		masks = new float[maxLayers][];
+		fromWeights = new float[maxLayers];
+		toWeights = new float[maxLayers];
+		fadeStarts = new long[maxLayers];
+		fadeLengths = new long[maxLayers];
+		mixed = new float[jointCount*Quaternion.SIZE];
+		sampled = new float[jointCount*Quaternion.SIZE];
+	}
+
+	/**
+	 * Adds a layer on top of the others, playing the given clip over every joint
+	 * @return The new layer's index
+	 */
+	public int addLayer(AnimationClip clip, float weight)
+	{
+		if(layerCount == players.length)
+			throw new IllegalStateException("Mixer already has its "+players.length+" layers");
+
+		int layer = layerCount++;
+		players[layer] = new AnimationPlayer(clip, skeleton);
+		masks[layer] = null;
+		setWeight(layer, weight);
+		return layer;
+	}
+
+	public int getLayerCount()
+	{
+		return layerCount;
+	}
+
+	public AnimationClip getClip(int layer)
+	{
+		return players[layer].getClip();
+	}
+
+	/**
+	 * Swaps the clip a layer plays, keeping its weight and mask
+	 */
+	public void setClip(int layer, AnimationClip clip)
+	{
+		players[layer] = new AnimationPlayer(clip, skeleton);
+	}
+
+	/**
+	 * Sets how much the layer counts for each joint (from 0 to 1, like createMask() makes), or null for every joint fully
+	 */
+	public void setMask(int layer, float[] jointWeights)
+	{
+		if(jointWeights != null && jointWeights.length != jointCount)
+			throw new IllegalArgumentException("Mask needs a weight for each of the "+jointCount+" joints: "+jointWeights.length);
+		masks[layer] = (jointWeights == null) ? null : jointWeights.clone();
+	}
+
+	/**
+	 * Returns a mask covering the given joints and everything attached below them (such as both shoulders for the arms)
+	 */
+	public static float[] createMask(Skeleton skeleton, String[] joints)
+	{
+		float[] result = new float[skeleton.getJointCount()];
+		for(int i=0; i<joints.length; i++)
+		{
+			int joint = skeleton.findJoint(joints[i]);
+			if(joint < 0)
+				throw new IllegalArgumentException("No joint named "+joints[i]);
+			for(int j=joint; j<skeleton.getSubtreeEnd(joint); j++)
+				result[j] = 1.0f;
+		}
+		return result;
+	}
+
+	/**
+	 * Sets whether to blend rotations with NLERP (cheaper) or SLERP (at a constant speed)
+	 */
+	public void setBlending(int blending)
+	{
+		if(blending != NLERP && blending != SLERP)
+			throw new IllegalArgumentException("Unknown blending: "+blending);
+		this.blending = blending;
+	}
+
+	/**
+	 * Sets a layer's weight (from 0 to 1) right away, ending any fade
+	 */
+	public void setWeight(int layer, float weight)
+	{
+		fromWeights[layer] = weight;
+		toWeights[layer] = weight;
+		fadeLengths[layer] = 0;
+	}
+
+	/**
+	 * Fades a layer's weight from wherever it is now to the given weight, over the given time
+	 * @param now The current time, in milliseconds (on the same clock as sample())
+	 */
+	public void fadeTo(int layer, float weight, long length, long now)
+	{
+		fromWeights[layer] = getWeight(layer, now);
+		toWeights[layer] = weight;
+		fadeStarts[layer] = now;
+		fadeLengths[layer] = Math.max(0, length);
+	}
+
+	/**
+	 * Returns a layer's weight at the given time (in milliseconds)
+	 */
+	public float getWeight(int layer, long now)
+	{
+		long elapsed = now - fadeStarts[layer];
+		if(fadeLengths[layer] == 0 || elapsed >= fadeLengths[layer])
+			return toWeights[layer];
+		float s = Math.max(0, elapsed) / (float)fadeLengths[layer];
+		return fromWeights[layer] + (toWeights[layer] - fromWeights[layer])*s;
+	}
+
+	/**
+	 * Returns whether a layer's weight is still changing at the given time
+	 */
+	public boolean isFading(int layer, long now)
+	{
+		return fadeLengths[layer] != 0 && now - fadeStarts[layer] < fadeLengths[layer] && fromWeights[layer] != toWeights[layer];
+	}
+
+	/**
+	 * Writes the mixed pose transform of every joint (16 floats each, starting at offset) for the given time
+	 * @param time Milliseconds, on the clock the layers' fades were started with; each layer's clip repeats
+	 */
+	public void sample(long time, float[] pose, int offset)
+	{
+		int base = findBase(time);
+		boolean blended = blend(base, time);
+		if(blended)
+		{
+			for(int j=0; j<jointCount; j++)
+				Quaternion.toMatrix(pose, offset + j*MATRIX_SIZE, mixed, j*Quaternion.SIZE);
+		}
+		else if(base >= 0)
+			players[base].sample(time, pose, offset); //a single clip: no need to go through quaternions
+		else
+		{
+			for(int j=0; j<jointCount; j++)
+				Matrix.setIdentityM(pose, offset + j*MATRIX_SIZE);
+		}
+	}
+
+	/**
+	 * Poses the mixer's skeleton for the given time, marking only the joints that may have moved as changed (joints left
+	 * in the rest pose stay clean, so a robot standing still costs its skeleton nothing to update)
+	 * @param time Milliseconds, on the clock the layers' fades were started with; each layer's clip repeats
+	 */
+	public void sample(long time)
+	{
+		int base = findBase(time);
+		if(blend(base, time))
+		{
+			float[] pose = skeleton.getPoseTransforms();
+			for(int j=0; j<jointCount; j++)
+			{
+				int q = j*Quaternion.SIZE;
+				if(mixed[q] == 0 && mixed[q+1] == 0 && mixed[q+2] == 0)
+					skeleton.setPoseIdentity(j); //e.g., a joint no layer moves
+				else
+				{
+					Quaternion.toMatrix(pose, j*MATRIX_SIZE, mixed, q);
+					skeleton.markPoseChanged(j);
+				}
+			}
+		}
+		else if(base >= 0)
+			players[base].sample(time, skeleton);
+		else
+			skeleton.resetPose();
+	}
+
+	//returns the top layer that fully covers every joint (nothing under it shows through), or -1 if there isn't one
+	private int findBase(long time)
+	{
+		for(int l=layerCount-1; l>=0; l--)
+		{
+			if(masks[l] == null && getWeight(l, time) >= 1.0f)
+				return l;
+		}
+		return -1;
+	}
+
+	//blends the layers above the base into the mixed pose, returning false if there was nothing to blend
+	private boolean blend(int base, long time)
+	{
+		boolean blended = false;
+		for(int l=base+1; l<layerCount; l++)
+		{
+			float weight = getWeight(l, time);
+			if(weight <= 0)
+				continue;
+
+			if(!blended)
+			{
+				if(base < 0)
+				{
+					for(int j=0; j<jointCount; j++)
+						Quaternion.setIdentity(mixed, j*Quaternion.SIZE);
+				}
+				else
+					players[base].sampleRotations(time, mixed, 0);
+				blended = true;
+			}
+			players[l].sampleRotations(time, sampled, 0);
+			blendLayer(weight, masks[l]);
+		}
+		return blended;
+	}
+
+	//blends the sampled pose into the mixed one, by the layer's weight times its mask's
+	private void blendLayer(float weight, float[] mask)
+	{
+		for(int j=0; j<jointCount; j++)
+		{
+			float t = (mask == null) ? weight : weight*mask[j];
+			if(t <= 0)
+				continue;
+			int q = j*Quaternion.SIZE;
+			if(blending == SLERP)
+				Quaternion.slerp(mixed, q, sampled, q, Math.min(t, 1.0f));
+			else
+				Quaternion.nlerp(mixed, q, sampled, q, Math.min(t, 1.0f));
+		}
+	}
+}
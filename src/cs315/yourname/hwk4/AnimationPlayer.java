@@ -0,0 +1,165 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.Matrix;
+
+/**
+ * Samples an AnimationClip into the pose transforms of a skeleton.
+ * The clip's channels are matched to the skeleton's joints by name once, up front. Each channel remembers the keyframe
+ * it found last time, so playing forwards takes constant time per channel, and sampling allocates nothing.
+ *
+ * A player is not thread-safe; give each thread its own (they can all share the same clip).
+ */
+public class AnimationPlayer
+{
+	public static final String TAG = "AnimationPlayer";
+
+	private static final int MATRIX_SIZE = 16;
+
+	private final AnimationClip clip;
+	private final int jointCount;
+	private final int[] channelJoints; //the joint each channel moves, or -1 if the skeleton doesn't have it
+	private final int[] cursors; //the keyframe each channel found last time
+	private final boolean[] animated; //whether each joint has a channel
+	private final boolean[] firstChannels; //whether each channel is the first for its joint (so it sets the pose, rather than adding to it)
+
+	public AnimationPlayer(AnimationClip clip, Skeleton skeleton)
+	{
+		this.clip = clip;
+		jointCount = skeleton.getJointCount();
+		channelJoints = new int[clip.getChannelCount()];
+		cursors = new int[clip.getChannelCount()];
+		animated = new boolean[jointCount];
+		firstChannels = new boolean[clip.getChannelCount()];
+		for(int c=0; c<channelJoints.length; c++)
+		{
+			int joint = skeleton.findJoint(clip.getChannel(c).getJoint());
+			channelJoints[c] = joint;
+			if(joint >= 0 && !animated[joint])
+			{
+				animated[joint] = true;
+				firstChannels[c] = true;
+			}
+		}
+	}
+
+	public AnimationClip getClip()
+	{
+		return clip;
+	}
+
+	/**
+	 * Writes the pose transform of every joint (16 floats each, starting at offset) for the given time.
+	 * Joints without channels get the identity; a joint with several channels gets their rotations in order.
+	 * @param time Milliseconds since the clip started; the clip repeats
+	 */
+	public void sample(long time, float[] pose, int offset)
+	{
+		sampleAt((float)(time % (double)clip.getLength()), pose, offset);
+	}
+
+	/**
+	 * Poses the skeleton (the one the player was made for, or one with the same joints) for the given time, marking just
+	 * the joints with channels as changed; the rest are reset to the rest pose, which is free if they're already there.
+	 * @param time Milliseconds since the clip started; the clip repeats
+	 */
+	public void sample(long time, Skeleton skeleton)
+	{
+		float t = (float)(time % (double)clip.getLength());
+		for(int j=0; j<jointCount; j++)
+		{
+			if(animated[j])
+				skeleton.markPoseChanged(j); //set below
+			else
+				skeleton.setPoseIdentity(j);
+		}
+		rotateJoints(t, skeleton.getPoseTransforms(), 0);
+	}
+
+	/**
+	 * Like sample(), but for a time within the clip (from 0 to its length), which doesn't have to be a whole millisecond
+	 */
+	public void sampleAt(float t, float[] pose, int offset)
+	{
+		for(int j=0; j<jointCount; j++)
+			if(!animated[j])
+				Matrix.setIdentityM(pose, offset + j*MATRIX_SIZE);
+		rotateJoints(t, pose, offset);
+	}
+
+	//sets the pose of each joint with channels: the first channel's rotation outright, and then the others' in order
+	private void rotateJoints(float t, float[] pose, int offset)
+	{
+		for(int c=0; c<channelJoints.length; c++)
+		{
+			int joint = channelJoints[c];
+			if(joint < 0)
+				continue;
+
+			AnimationClip.Channel channel = clip.getChannel(c);
+			float angle = angleAt(c, t);
+			int m = offset + joint*MATRIX_SIZE;
+			if(firstChannels[c])
+				Affine3.setTRSM(pose, m, 0, 0, 0, angle, channel.getAxisX(), channel.getAxisY(), channel.getAxisZ(), 1.0f, 1.0f, 1.0f);
+			else
+				Affine3.rotateM(pose, m, angle, channel.getAxisX(), channel.getAxisY(), channel.getAxisZ()); //in place
+		}
+	}
+
+	/**
+	 * Writes the pose of every joint of one robot in a JointBuffer for the given time, as rotations. Joints without channels
+	 * get the rest pose; a joint with several channels gets their rotations in order.
+	 * @param time Milliseconds since the clip started; the clip repeats
+	 */
+	public void sample(long time, JointBuffer joints, int robot)
+	{
+		float t = (float)(time % (double)clip.getLength());
+		for(int j=0; j<jointCount; j++)
+			if(!animated[j])
+				joints.resetPose(j, robot);
+		for(int c=0; c<channelJoints.length; c++)
+		{
+			int joint = channelJoints[c];
+			if(joint < 0)
+				continue;
+
+			AnimationClip.Channel channel = clip.getChannel(c);
+			float angle = angleAt(c, t);
+			if(firstChannels[c])
+				joints.setPose(joint, robot, 0, 0, 0, angle, channel.getAxisX(), channel.getAxisY(), channel.getAxisZ(), 1.0f, 1.0f, 1.0f);
+			else
+				joints.rotate(joint, robot, angle, channel.getAxisX(), channel.getAxisY(), channel.getAxisZ());
+		}
+	}
+
+	/**
+	 * Writes the pose rotation of every joint as a quaternion (4 floats each, starting at offset) for the given time, for
+	 * blending (see AnimationMixer). Joints without channels get the identity; a joint with several channels gets their
+	 * rotations in order.
+	 * @param time Milliseconds since the clip started; the clip repeats
+	 */
+	public void sampleRotations(long time, float[] rotations, int offset)
+	{
+		float t = (float)(time % (double)clip.getLength());
+		for(int j=0; j<jointCount; j++)
+			Quaternion.setIdentity(rotations, offset + j*Quaternion.SIZE);
+
+		for(int c=0; c<channelJoints.length; c++)
+		{
+			int joint = channelJoints[c];
+			if(joint < 0)
+				continue;
+
+			AnimationClip.Channel channel = clip.getChannel(c);
+			Quaternion.rotate(rotations, offset + joint*Quaternion.SIZE, angleAt(c, t), channel.getAxisX(), channel.getAxisY(), channel.getAxisZ());
+		}
+	}
+
+	//the angle of the given channel at the given time, starting the keyframe search where it left off last time
+	private float angleAt(int c, float t)
+	{
+		AnimationClip.Channel channel = clip.getChannel(c);
+		int key = channel.findKey(t, cursors[c]);
+		cursors[c] = key;
+		return channel.angleAt(t, key);
+	}
+}
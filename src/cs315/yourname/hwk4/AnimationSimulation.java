@@ -0,0 +1,217 @@
+package cs315.yourname.hwk4;
+
+import java.util.concurrent.locks.LockSupport;
+
+import android.opengl.Matrix;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Poses a skeleton on its own thread, so the animation math runs alongside the GL thread's drawing instead of before it.
+ * The thread steps the dance at a fixed rate, computes the model transform of every joint (with the skeleton's root at
+ * the origin), and publishes each finished pose through a TripleBuffer. The renderer takes the newest finished pose
+ * with getLatestFrame(), which never waits.
+ *
+ * While the robot isn't dancing, the thread publishes the rest pose once and then sleeps until it is told to dance again.
+ */
+public class AnimationSimulation implements Runnable
+{
+	public static final String TAG = "AnimationSimulation";
+
+	public static final float DEFAULT_STEP_RATE = 60.0f;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final long NANOS_PER_MILLI = 1000000L;
+	private static final int MAX_LAG_STEPS = 4; //if we fall this many steps behind, skip ahead rather than trying to catch up
+
+	/**
+	 * One finished pose: the model transform of every joint, and the time in the dance it was posed for
+	 */
+	public static class PoseFrame
+	{
+		private final float[] models;
+		private long time = -1;
+
+		private PoseFrame(int jointCount)
+		{
+			models = new float[jointCount*Skeleton.MATRIX_SIZE];
+		}
+
+		/**
+		 * Returns the model transform of every joint (16 floats each), for a skeleton with its root at the origin
+		 */
+		public float[] getModelTransforms()
+		{
+			return models;
+		}
+
+		/**
+		 * Returns the time (from SystemClock.uptimeMillis()) the pose is for, or -1 if nothing has been posed yet
+		 */
+		public long getTime()
+		{
+			return time;
+		}
+	}
+
+	private final Skeleton skeleton; //only read, so it can be shared with the GL thread
+	private final long stepNanos;
+	private final TripleBuffer<PoseFrame> frames;
+
+	private volatile AnimationClip dance;
+	private volatile boolean dancing;
+	private volatile boolean running;
+	private volatile Thread thread;
+
+	//the simulation thread's own space
+	private final float[] pose;
+	private final float[] scratch;
+	private final float[] root = new float[16];
+
+	/**
+	 * @param skeleton The skeleton to pose (shared; the simulation never changes it)
+	 * @param dance The dance to do
+	 * @param stepRate How many times per second to pose the skeleton
+	 */
+	public AnimationSimulation(Skeleton skeleton, AnimationClip dance, float stepRate)
+	{
+		if(stepRate <= 0)
+			throw new IllegalArgumentException("Step rate must be positive: "+stepRate);
+		this.skeleton = skeleton;
+		this.dance = dance;
+		stepNanos = (long)(NANOS_PER_SECOND / stepRate);
+
+		int jointCount = skeleton.getJointCount();
+		frames = new TripleBuffer<PoseFrame>(new PoseFrame(jointCount), new PoseFrame(jointCount), new PoseFrame(jointCount));
+		pose = new float[jointCount*Skeleton.MATRIX_SIZE];
+		scratch = new float[skeleton.getScratchSize()];
+		Matrix.setIdentityM(root, 0);
+	}
+
+	/**
+	 * Starts the simulation thread
+	 */
+	public void start()
+	{
+		if(thread != null)
+			throw new IllegalStateException("Simulation already started");
+		running = true;
+		thread = new Thread(this, TAG);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Tells the simulation thread to stop (without waiting for it to); it can't be started again
+	 */
+	public void stop()
+	{
+		running = false;
+		wake();
+	}
+
+	/**
+	 * Sets the dance to do; takes effect from the next step
+	 */
+	public void setDance(AnimationClip dance)
+	{
+		this.dance = dance;
+	}
+
+	public AnimationClip getDance()
+	{
+		return dance;
+	}
+
+	/**
+	 * Sets whether the skeleton is dancing, or standing in its rest pose
+	 */
+	public void setDancing(boolean dancing)
+	{
+		if(dancing == this.dancing)
+			return;
+		this.dancing = dancing;
+		wake();
+	}
+
+	//wakes the simulation thread if it is sleeping
+	private void wake()
+	{
+		Thread t = thread;
+		if(t != null)
+			LockSupport.unpark(t);
+	}
+
+	/**
+	 * Returns the newest finished pose, without waiting (reader thread only, i.e. the GL thread).
+	 * Its time is -1 until the first pose has been published. The frame stays valid until the next call.
+	 */
+	public PoseFrame getLatestFrame()
+	{
+		frames.update();
+		return frames.getReadBuffer();
+	}
+
+	@Override
+	public void run()
+	{
+		AnimationPlayer player = null;
+		boolean posedRest = false;
+		long startNanos = System.nanoTime(); //the step schedule: step n is posed at startNanos + n*stepNanos...
+		long startMillis = SystemClock.uptimeMillis(); //...for the dance time startMillis + n*stepNanos
+		long step = 0;
+
+		while(running)
+		{
+			if(!dancing)
+			{
+				if(!posedRest)
+				{
+					for(int j=0; j<skeleton.getJointCount(); j++)
+						Matrix.setIdentityM(pose, j*Skeleton.MATRIX_SIZE);
+					publish(SystemClock.uptimeMillis());
+					posedRest = true;
+				}
+				LockSupport.park(this); //until we're told to dance (or stop); may also wake up for no reason
+				startNanos = System.nanoTime();
+				startMillis = SystemClock.uptimeMillis();
+				step = 0;
+				continue;
+			}
+			posedRest = false;
+
+			AnimationClip clip = dance;
+			if(player == null || player.getClip() != clip)
+				player = new AnimationPlayer(clip, skeleton);
+			long time = startMillis + step*stepNanos/NANOS_PER_MILLI;
+			player.sample(time, pose, 0);
+			publish(time);
+			step++;
+
+			//sleep until the next step is due
+			long deadline = startNanos + step*stepNanos;
+			long wait = deadline - System.nanoTime();
+			if(wait < -MAX_LAG_STEPS*stepNanos)
+			{
+				Log.w(TAG, "Simulation fell "+(-wait/NANOS_PER_MILLI)+" ms behind; skipping ahead");
+				startNanos = System.nanoTime();
+				startMillis = SystemClock.uptimeMillis();
+				step = 0;
+			}
+			while(wait > 0 && running && dancing)
+			{
+				LockSupport.parkNanos(this, wait);
+				wait = deadline - System.nanoTime();
+			}
+		}
+	}
+
+	//computes the model transforms for the current pose, and hands them to the reader
+	private void publish(long time)
+	{
+		PoseFrame frame = frames.getWriteBuffer();
+		skeleton.computeModelTransforms(root, 0, pose, 0, frame.models, 0, scratch);
+		frame.time = time;
+		frames.publish();
+	}
+}
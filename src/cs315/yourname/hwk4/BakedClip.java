@@ -0,0 +1,119 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.Matrix;
+
+/**
+ * An AnimationClip that has been sampled ahead of time ("baked") at a fixed rate, for one skeleton.
+ * Every frame holds the model transform of every joint (relative to the robot's root), one frame after the other in a
+ * single array, as Affine3's 3x4 matrices (a quarter smaller than 4x4 ones). Playing it back just blends the two frames
+ * around the current time, instead of evaluating the keyframes and walking the skeleton.
+ *
+ * Blending matrices entry by entry is only a good approximation when the frames are close together, so bake at
+ * (at least) the display's frame rate.
+ */
+public class BakedClip
+{
+	public static final String TAG = "BakedClip";
+
+	private static final int MATRIX_SIZE = 16;
+
+	private final AnimationClip clip;
+	private final Skeleton skeleton;
+	private final float rate; //frames per second
+	private final int frameCount;
+	private final int jointCount;
+	private final int frameSize; //floats per frame
+	private final float[] frames; //the model transforms (3x4): frame by frame, joint by joint
+
+	/**
+	 * Bakes the given clip for the given skeleton
+	 * @param rate How many frames to sample per second
+	 */
+	public BakedClip(AnimationClip clip, Skeleton skeleton, float rate)
+	{
+		if(rate <= 0)
+			throw new IllegalArgumentException("Baking rate must be positive: "+rate);
+
+		this.clip = clip;
+		this.skeleton = skeleton;
+		this.rate = rate;
+		frameCount = Math.max(1, Math.round(clip.getLength()*rate/1000)); //so the last frame blends back into the first
+		jointCount = skeleton.getJointCount();
+		frameSize = jointCount*Affine3.SIZE;
+		frames = new float[frameCount*frameSize];
+
+		AnimationPlayer player = new AnimationPlayer(clip, skeleton);
+		float[] identity = new float[MATRIX_SIZE];
+		Matrix.setIdentityM(identity, 0);
+		float[] pose = new float[jointCount*MATRIX_SIZE];
+		float[] models = new float[jointCount*MATRIX_SIZE];
+		float[] scratch = new float[skeleton.getScratchSize()];
+		for(int f=0; f<frameCount; f++)
+		{
+			player.sampleAt(clip.getLength()*f/frameCount, pose, 0);
+			skeleton.computeModelTransforms(identity, 0, pose, 0, models, 0, scratch);
+			for(int j=0; j<jointCount; j++)
+				Affine3.fromMatrix(frames, f*frameSize + j*Affine3.SIZE, models, j*MATRIX_SIZE);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes the baked frames take up
+	 */
+	public static long getSizeInBytes(AnimationClip clip, Skeleton skeleton, float rate)
+	{
+		long frames = Math.max(1, Math.round(clip.getLength()*rate/1000));
+		return frames*skeleton.getJointCount()*Affine3.SIZE*4;
+	}
+
+	public long getSizeInBytes()
+	{
+		return frames.length*4L;
+	}
+
+	public AnimationClip getClip()
+	{
+		return clip;
+	}
+
+	public Skeleton getSkeleton()
+	{
+		return skeleton;
+	}
+
+	public float getRate()
+	{
+		return rate;
+	}
+
+	public int getFrameCount()
+	{
+		return frameCount;
+	}
+
+	/**
+	 * Writes the model transform of every joint at the given time (16 floats per joint, starting at modelOffset),
+	 * placed with the given root transform.
+	 * @param time Milliseconds since the clip started; the clip repeats
+	 * @param temp Temporary space for one matrix (so this can be called from several threads at once); 12 floats will do
+	 */
+	public void sample(long time, float[] root, int rootOffset, float[] models, int modelOffset, float[] temp)
+	{
+		float position = (float)(time % (double)clip.getLength()) * frameCount / clip.getLength(); //in frames
+		int frame = Math.min((int)position, frameCount-1);
+		float blend = position - frame;
+		int a = frame*frameSize;
+		int b = ((frame+1) % frameCount)*frameSize;
+
+		for(int j=0; j<jointCount; j++)
+		{
+			int m = j*Affine3.SIZE;
+			for(int i=0; i<Affine3.SIZE; i++)
+			{
+				float from = frames[a+m+i];
+				temp[i] = from + (frames[b+m+i] - from)*blend;
+			}
+			Affine3.multiplyMA(models, modelOffset + j*MATRIX_SIZE, root, rootOffset, temp, 0);
+		}
+	}
+}
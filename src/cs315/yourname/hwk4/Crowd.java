@@ -0,0 +1,337 @@
+package cs315.yourname.hwk4;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.opengl.Matrix;
+import android.util.Log;
+
+/**
+ * A crowd of dancing robots standing on a grid, each a little further along in the dance than the last.
+ * Every frame, update() poses all of the robots in parallel, writing every part's model transform into one flat
+ * array (robot by robot, joint by joint), so the GL thread only has to submit the draws.
+ *
+ * The work is split into small chunks of robots that a set of worker threads (and the calling thread) take turns grabbing,
+ * so faster threads just end up doing more chunks. The workers are started once and wait between frames; no memory is
+ * allocated per frame.
+ *
+ * Alternatively (see setStructureOfArrays()), the whole crowd can be posed at once on the calling thread with a JointBuffer,
+ * whose bulk kernels handle one joint of every robot per loop.
+ */
+public class Crowd
+{
+	public static final String TAG = "Crowd";
+
+	public static final int MAX_ROBOTS = 10000;
+	public static final float SPACING = 3.0f; //distance between neighboring robots
+	private static final int CHUNK_SIZE = 32; //robots per unit of work
+	private static final int MATRIX_SIZE = 16;
+
+	private final Skeleton skeleton; //shared (read-only) by every robot
+	private final AnimationClip dance; //shared by every robot
+	private final int robotCount;
+	private final int jointCount;
+	private final int columns;
+	private final float[] roots; //where each robot stands; 16 floats per robot
+	private final long[] phases; //how far ahead in the dance each robot is
+	private final float[] modelTransforms; //the result: 16 floats per joint per robot
+	private final boolean[] visible; //whether each joint of each robot is in view
+
+	//work distribution
+	private final int chunkCount;
+	private final AtomicInteger nextChunk = new AtomicInteger();
+	private final Worker[] workers;
+	private final Worker callerWorker; //scratch space for the thread that calls update()
+	private final Object lock = new Object();
+	private int generation; //incremented for every frame of work; guarded by lock
+	private int busyWorkers; //guarded by lock
+	private boolean running = true; //guarded by lock
+
+	//the frame being computed; published to the workers through the lock
+	private long frameTime;
+	private boolean frameDancing;
+	private BakedClip frameBaked;
+	private Frustum frameFrustum;
+
+	private long lastUpdateNanos;
+
+	//posing the whole crowd at once, on the calling thread
+	private volatile boolean structureOfArrays;
+	private JointBuffer joints; //created the first time it is needed
+	private AnimationPlayer jointsPlayer;
+	private final float[] jointsTemp = new float[MATRIX_SIZE];
+
+	/**
+	 * Creates a crowd of the given number of robots doing the given dance, posed with the given number of threads
+	 * (including the caller's)
+	 */
+	public Crowd(Skeleton skeleton, AnimationClip dance, int robotCount, int threadCount)
+	{
+		if(robotCount < 1 || robotCount > MAX_ROBOTS)
+			throw new IllegalArgumentException("Crowd must have between 1 and "+MAX_ROBOTS+" robots: "+robotCount);
+
+		this.skeleton = skeleton;
+		this.dance = dance;
+		this.robotCount = robotCount;
+		jointCount = skeleton.getJointCount();
+		modelTransforms = new float[robotCount*jointCount*MATRIX_SIZE];
+		visible = new boolean[robotCount*jointCount];
+
+		//stand the robots on a grid centered on the origin
+		columns = (int)Math.ceil(Math.sqrt(robotCount));
+		int rows = (robotCount + columns - 1)/columns;
+		roots = new float[robotCount*MATRIX_SIZE];
+		phases = new long[robotCount];
+		for(int r=0; r<robotCount; r++)
+		{
+			float x = (r % columns - (columns-1)/2.0f) * SPACING;
+			float z = (r / columns - (rows-1)/2.0f) * SPACING;
+			Affine3.setTRSM(roots, r*MATRIX_SIZE, x, 0.0f, z, 0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 1.0f, 1.0f); //no turn about y
+			phases[r] = (r * 7919L) % (long)dance.getLength(); //a prime step spreads the phases out
+		}
+
+		chunkCount = (robotCount + CHUNK_SIZE - 1)/CHUNK_SIZE;
+		callerWorker = new Worker();
+		workers = new Worker[Math.max(0, threadCount-1)];
+		for(int i=0; i<workers.length; i++)
+		{
+			workers[i] = new Worker();
+			Thread thread = new Thread(workers[i], "CrowdPoser-"+i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Returns the number of threads a crowd should use on this device (one per core)
+	 */
+	public static int defaultThreadCount()
+	{
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	public int getRobotCount()
+	{
+		return robotCount;
+	}
+
+	public AnimationClip getDance()
+	{
+		return dance;
+	}
+
+	public int getJointCount()
+	{
+		return jointCount;
+	}
+
+	public int getThreadCount()
+	{
+		return workers.length+1;
+	}
+
+	/**
+	 * Returns how wide (and deep) the grid of robots is
+	 */
+	public float getExtent()
+	{
+		return columns*SPACING;
+	}
+
+	/**
+	 * Returns every robot's model transforms (as of the last update): robot by robot, joint by joint, 16 floats each
+	 */
+	public float[] getModelTransforms()
+	{
+		return modelTransforms;
+	}
+
+	/**
+	 * Returns whether each part of each robot was in view (as of the last update): robot by robot, joint by joint.
+	 * Parts that aren't in view may not have up-to-date model transforms.
+	 */
+	public boolean[] getVisibility()
+	{
+		return visible;
+	}
+
+	/**
+	 * Returns how long the last update() took, in nanoseconds
+	 */
+	public long getLastUpdateNanos()
+	{
+		return lastUpdateNanos;
+	}
+
+	/**
+	 * Sets whether to pose the crowd with a JointBuffer (all of the robots at once, in bulk, on the thread calling update())
+	 * rather than robot by robot on the worker threads. Baked dances are still played back on the workers.
+	 */
+	public void setStructureOfArrays(boolean structureOfArrays)
+	{
+		this.structureOfArrays = structureOfArrays;
+	}
+
+	/**
+	 * Poses every robot for the given time, in parallel. Returns once all of the robots are done.
+	 * @param time The current time in milliseconds (each robot adds its own phase)
+	 * @param dancing Whether the robots are dancing (or standing still)
+	 * @param baked The dance baked for this crowd's skeleton (to play back by lookup), or null to sample the dance itself
+	 * @param frustum The camera's frustum, to skip posing (and drawing) robots and parts that are out of view; or null
+	 */
+	public void update(long time, boolean dancing, BakedClip baked, Frustum frustum)
+	{
+		if(baked != null && (baked.getClip() != dance || baked.getSkeleton() != skeleton))
+			throw new IllegalArgumentException("Baked clip "+baked.getClip().getName()+" is not this crowd's dance");
+
+		long start = System.nanoTime();
+
+		if(structureOfArrays && !(dancing && baked != null))
+		{
+			updateJoints(time, dancing, frustum);
+			lastUpdateNanos = System.nanoTime() - start;
+			return;
+		}
+
+		frameTime = time;
+		frameDancing = dancing;
+		frameBaked = baked;
+		frameFrustum = frustum;
+		nextChunk.set(0);
+		synchronized(lock)
+		{
+			generation++;
+			busyWorkers = workers.length;
+			lock.notifyAll(); //wake the workers
+		}
+
+		callerWorker.poseChunks(); //help out
+
+		boolean interrupted = false;
+		synchronized(lock)
+		{
+			while(busyWorkers > 0)
+			{
+				try { lock.wait(); }
+				catch(InterruptedException e) { interrupted = true; } //we still need the results; keep waiting
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+
+		lastUpdateNanos = System.nanoTime() - start;
+	}
+
+	//poses every robot at once with the joint buffer; robots out of view are posed too (the kernels don't branch), just not copied out
+	private void updateJoints(long time, boolean dancing, Frustum frustum)
+	{
+		if(joints == null)
+		{
+			joints = new JointBuffer(skeleton, robotCount);
+			for(int r=0; r<robotCount; r++)
+				joints.setRoot(r, roots, r*MATRIX_SIZE);
+			jointsPlayer = new AnimationPlayer(dance, skeleton);
+		}
+
+		if(dancing)
+			for(int r=0; r<robotCount; r++)
+				jointsPlayer.sample(time + phases[r], joints, r);
+		else
+			joints.resetPose();
+		joints.update();
+
+		for(int r=0; r<robotCount; r++)
+		{
+			int first = r*jointCount;
+			boolean seen = frustum == null || skeleton.intersects(frustum, roots, r*MATRIX_SIZE);
+			Arrays.fill(visible, first, first+jointCount, seen);
+			if(seen)
+				joints.getModelTransforms(r, modelTransforms, first*MATRIX_SIZE, jointsTemp);
+		}
+	}
+
+	/**
+	 * Stops the worker threads. The crowd can't be updated afterwards.
+	 */
+	public void shutdown()
+	{
+		synchronized(lock)
+		{
+			running = false;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * A thread's share of the posing, with its own scratch space
+	 */
+	private class Worker implements Runnable
+	{
+		private final float[] pose = new float[jointCount*MATRIX_SIZE];
+		private final AnimationPlayer player = new AnimationPlayer(dance, skeleton);
+		private final float[] temp = new float[MATRIX_SIZE];
+		private final float[] scratch = new float[skeleton.getScratchSize()];
+
+		@Override
+		public void run()
+		{
+			int seen = 0;
+			while(true)
+			{
+				synchronized(lock)
+				{
+					while(running && generation == seen)
+					{
+						try { lock.wait(); }
+						catch(InterruptedException e) { Log.w(TAG, "Crowd worker interrupted; ignoring"); }
+					}
+					if(!running)
+						return;
+					seen = generation;
+				}
+
+				poseChunks();
+
+				synchronized(lock)
+				{
+					if(--busyWorkers == 0)
+						lock.notifyAll(); //let update() return
+				}
+			}
+		}
+
+		//grabs and poses chunks of robots until there are none left
+		public void poseChunks()
+		{
+			int chunk;
+			while((chunk = nextChunk.getAndIncrement()) < chunkCount)
+			{
+				int end = Math.min(robotCount, (chunk+1)*CHUNK_SIZE);
+				for(int r=chunk*CHUNK_SIZE; r<end; r++)
+				{
+					int first = r*jointCount;
+					if(frameFrustum != null && !skeleton.intersects(frameFrustum, roots, r*MATRIX_SIZE))
+					{
+						Arrays.fill(visible, first, first+jointCount, false); //nothing of this robot is in view
+						continue;
+					}
+
+					if(frameDancing && frameBaked != null)
+					{
+						frameBaked.sample(frameTime + phases[r], roots, r*MATRIX_SIZE, modelTransforms, first*MATRIX_SIZE, temp);
+						Arrays.fill(visible, first, first+jointCount, true);
+						continue;
+					}
+
+					if(frameDancing)
+						player.sample(frameTime + phases[r], pose, 0);
+					else
+						for(int j=0; j<jointCount; j++)
+							Matrix.setIdentityM(pose, j*MATRIX_SIZE);
+
+					skeleton.computeModelTransforms(roots, r*MATRIX_SIZE, pose, 0, modelTransforms, first*MATRIX_SIZE, scratch, frameFrustum, visible, first);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.Matrix;
+
+/**
+ * Collects the parts to draw, grouped by mesh, and draws each group with a single call.
+ * GLES 2.0 has no instancing, so we fake it: each mesh is uploaded as BATCH_SIZE copies of itself, with every vertex
+ * knowing which copy it belongs to (its "instance id"). The parts' modelview matrices and colors are uploaded as uniform
+ * arrays, and the vertex shader picks its part's entries with the instance id.
+ *
+ * Usage (on the GL thread): onSurfaceCreated() once per context, then each frame begin(), add() every part, end().
+ */
+public class DrawBatcher
+{
+	public static final String TAG = "DrawBatcher";
+
+	//matrix (4 vec4s) + color (1 vec4) per part = 80 vec4s, plus the projection, of the 128 GLES 2.0 guarantees
+	public static final int BATCH_SIZE = 16;
+
+	private static final int MATRIX_SIZE = 16;
+	private static final int COLOR_SIZE = 4;
+
+	//the vertex shader; same lighting as the regular per-vertex shader, but reading each part's data from uniform arrays
+	private static final String batchedVertexShaderCode =
+			"uniform mat4 uProjectionMatrix;" +			// The projection matrix, shared by every part
+			"uniform mat4 uMVMatrix[" + BATCH_SIZE + "];" +	// The modelview matrix of each part in the batch
+			"uniform vec4 uColor[" + BATCH_SIZE + "];" +		// The color of each part in the batch
+			"attribute vec4 aPosition;" +				// Per-vertex position information we will pass in
+			"attribute vec3 aNormal;" +					// Per-vertex normal information we will pass in.
+			"attribute float aInstance;" +				// Which part (copy of the mesh) this vertex belongs to
+			"varying vec4 vColor;"  + 					//out : the ultimate color of the vertex
+			"vec3 lightPos = vec3(0.0,0.0,3.0);" + //the position of the light
+			"void main() {" +
+			"  int instance = int(aInstance);" +
+			"  mat4 mv = uMVMatrix[instance];" +
+			"  vec3 modelViewVertex = vec3(mv * aPosition);" + 					//position modified by modelview
+			"  vec3 modelViewNormal = normalize(vec3(mv * vec4(aNormal, 0.0)));" +	//normal modified by modelview
+			"  vec3 lightVector = normalize(lightPos - modelViewVertex);" +		//the normalized vector between the light and the vertex
+			"  float diffuse = max(dot(modelViewNormal, lightVector), 0.1);" +	//the amount of diffuse light to give (based on angle between light and normal)
+			"  vColor = uColor[instance] * diffuse;"+ 								//scale the color by the light factor and set to output
+			"  gl_Position = uProjectionMatrix * vec4(modelViewVertex, 1.0);" +
+			"}";
+
+	private static final String[] UNIFORMS = {"uProjectionMatrix", "uMVMatrix", "uColor"};
+	private static final String[] ATTRIBUTES = {"aPosition", "aNormal", "aInstance"};
+
+	private static final String fragmentShaderCode =
+			"precision mediump float;" + 	//don't need high precision
+			"varying vec4 vColor;" + 		//color for the fragment; this was output from the vertexShader
+			"void main() {" +
+			"  gl_FragColor = vColor;" + 	//gl_fragColor is built-in variable for color of fragment
+			"}";
+
+	private final GlBackend gl;
+	private final ProgramCache programs;
+	private final ProgramCache.Program program;
+	private final GpuMesh[] meshes; //BATCH_SIZE copies of each mesh, indexed by mesh id
+	private final int[] elementsPerCopy; //how many indices (or vertices) one copy of each mesh takes
+
+	//the pending parts of each mesh
+	private final float[][] mvMatrices;
+	private final float[][] colors;
+	private final int[] counts;
+
+	private float[] viewMatrix; //for the current frame
+	private int drawCalls; //for the current frame
+
+	//OpenGL handles
+	private int programHandle;
+	private int projectionMatrixHandle;
+	private int mvMatrixHandle;
+	private int colorHandle;
+	private int positionHandle;
+	private int normalHandle;
+	private int instanceHandle;
+
+	/**
+	 * Creates a batcher for the given meshes (indexed by mesh id; entries may be null).
+	 * The vertices must be packed as { posX, posY, posZ, normalX, normalY, normalZ }, and are stored as floats.
+	 * @param programs Where to get the batched shader program from
+	 */
+	public DrawBatcher(GlBackend gl, ProgramCache programs, IndexedMesh[] sourceMeshes)
+	{
+		this(gl, programs, sourceMeshes, null);
+	}
+
+	/**
+	 * Creates a batcher for the given meshes (indexed by mesh id; entries may be null), each stored in the given
+	 * vertex format (also indexed by mesh id; instance ids are added to it). With no formats, meshes are stored as floats.
+	 * @param programs Where to get the batched shader program from
+	 */
+	public DrawBatcher(GlBackend gl, ProgramCache programs, IndexedMesh[] sourceMeshes, VertexFormat[] formats)
+	{
+		this.gl = gl;
+		this.programs = programs;
+		program = addProgram(programs);
+		int meshCount = sourceMeshes.length;
+		meshes = new GpuMesh[meshCount];
+		elementsPerCopy = new int[meshCount];
+		mvMatrices = new float[meshCount][BATCH_SIZE*MATRIX_SIZE];
+		colors = new float[meshCount][BATCH_SIZE*COLOR_SIZE];
+		counts = new int[meshCount];
+
+		for(int i=0; i<meshCount; i++)
+		{
+			if(sourceMeshes[i] != null)
+			{
+				VertexFormat format = (formats != null && formats[i] != null) ? formats[i] : VertexFormat.FLOAT;
+				meshes[i] = new GpuMesh(sourceMeshes[i].replicate(BATCH_SIZE), format.withInstanceIds());
+				elementsPerCopy[i] = sourceMeshes[i].getIndexCount();
+			}
+		}
+	}
+
+	/**
+	 * Registers the batched shader program with the given cache (so it can be built while loading, before any batcher exists)
+	 */
+	public static ProgramCache.Program addProgram(ProgramCache programs)
+	{
+		return programs.add(batchedVertexShaderCode, fragmentShaderCode, UNIFORMS, ATTRIBUTES);
+	}
+
+	/**
+	 * Gets the batched shader (building it, if the cache hasn't yet) and uploads the meshes; call from onSurfaceCreated()
+	 * (i.e., again after a context loss), after the program cache has been invalidated
+	 */
+	public void onSurfaceCreated()
+	{
+		programs.build(program);
+		programHandle = program.getHandle();
+
+		projectionMatrixHandle = program.getUniformLocation("uProjectionMatrix");
+		mvMatrixHandle = program.getUniformLocation("uMVMatrix");
+		colorHandle = program.getUniformLocation("uColor");
+		positionHandle = program.getAttributeLocation("aPosition");
+		normalHandle = program.getAttributeLocation("aNormal");
+		instanceHandle = program.getAttributeLocation("aInstance");
+
+		for(int i=0; i<meshes.length; i++)
+			if(meshes[i] != null)
+				meshes[i].upload(gl);
+	}
+
+	/**
+	 * Starts a frame of batched drawing (switches to the batched shader program)
+	 */
+	public void begin(float[] viewMatrix, float[] projectionMatrix)
+	{
+		this.viewMatrix = viewMatrix;
+		drawCalls = 0;
+		gl.glUseProgram(programHandle);
+		gl.glUniformMatrix4fv(projectionMatrixHandle, 1, false, projectionMatrix, 0);
+	}
+
+	/**
+	 * Queues a part to be drawn with the given mesh, model matrix and color. The batch is drawn once it is full.
+	 */
+	public void add(int meshId, float[] modelMatrix, int modelOffset, float[] color, int colorOffset)
+	{
+		int n = counts[meshId];
+		Matrix.multiplyMM(mvMatrices[meshId], n*MATRIX_SIZE, viewMatrix, 0, modelMatrix, modelOffset); //"M * V"
+		System.arraycopy(color, colorOffset, colors[meshId], n*COLOR_SIZE, COLOR_SIZE);
+		counts[meshId] = n+1;
+
+		if(n+1 == BATCH_SIZE)
+			flush(meshId);
+	}
+
+	/**
+	 * Draws everything still queued
+	 */
+	public void end()
+	{
+		for(int i=0; i<meshes.length; i++)
+			flush(i);
+		gl.glDisableVertexAttribArray(instanceHandle); //so other programs don't read instance ids from a stale buffer
+	}
+
+	/**
+	 * Returns how many draw calls were made since begin()
+	 */
+	public int getDrawCallCount()
+	{
+		return drawCalls;
+	}
+
+	//draws every queued part of the given mesh with one call
+	private void flush(int meshId)
+	{
+		int n = counts[meshId];
+		if(n == 0)
+			return;
+
+		GpuMesh mesh = meshes[meshId];
+		mesh.bind(gl, positionHandle, normalHandle);
+		mesh.bindInstanceIds(gl, instanceHandle);
+
+		gl.glUniformMatrix4fv(mvMatrixHandle, n, false, mvMatrices[meshId], 0);
+		gl.glUniform4fv(colorHandle, n, colors[meshId], 0);
+
+		mesh.draw(gl, n*elementsPerCopy[meshId]); //only the first n copies
+		drawCalls++;
+		counts[meshId] = 0;
+	}
+}
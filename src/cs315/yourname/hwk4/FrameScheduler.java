@@ -0,0 +1,206 @@
+package cs315.yourname.hwk4;
+
+/**
+ * Decides when the robot needs to be drawn, so the screen isn't redrawn at full speed while nothing is moving.
+ * While the scene is still, a frame is only drawn when something changes (see invalidate()); while it is animating,
+ * frames are paced to a target frame rate. It also measures how many frames actually get drawn.
+ *
+ * This is only the policy: call onVsync() once per display refresh (e.g., from a Choreographer callback) and request
+ * a render whenever it says to, and call frameDelivered() whenever a frame has been drawn. The time comes from a Clock,
+ * so the policy can be run with a fake one.
+ */
+public class FrameScheduler
+{
+	public static final String TAG = "FrameScheduler";
+
+	/**
+	 * Where the scheduler gets the time from
+	 */
+	public interface Clock
+	{
+		/** Returns the current time in nanoseconds (from any fixed starting point) */
+		long nanoTime();
+	}
+
+	/** The real time, from System.nanoTime() */
+	public static final Clock SYSTEM_CLOCK = new Clock()
+	{
+		@Override
+		public long nanoTime()
+		{
+			return System.nanoTime();
+		}
+	};
+
+	public static final float DEFAULT_TARGET_FPS = 30.0f;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final float EARLY_TOLERANCE = 0.25f; //how early (as a fraction of a frame) a frame may be drawn, so vsync jitter doesn't make us skip one
+	private static final float LATE_TOLERANCE = 1.5f; //a frame that comes this many frames after the last one counts as late
+
+	private final Clock clock;
+	private long frameInterval; //nanoseconds between paced frames, or 0 to draw on every refresh
+	private boolean animating;
+	private boolean dirty = true; //whether something changed since the last frame (nothing has been drawn yet, to start)
+	private long nextFrame = -1; //when the next paced frame is due, or -1 to draw one on the next refresh
+
+	//delivery
+	private long deliveredFrames;
+	private long lateFrames;
+	private long lastDelivered = -1; //when the last frame while animating was drawn, or -1
+	private long rateStart = -1; //when we started counting frames for the delivered frame rate
+	private int rateFrames;
+	private float deliveredRate;
+
+	/**
+	 * @param clock Where to get the time from (e.g., SYSTEM_CLOCK)
+	 * @param targetFps How many frames per second to draw while animating, or 0 to draw on every display refresh
+	 */
+	public FrameScheduler(Clock clock, float targetFps)
+	{
+		this.clock = clock;
+		setTargetFrameRate(targetFps);
+	}
+
+	/**
+	 * Sets how many frames per second to draw while animating, or 0 to draw on every display refresh
+	 */
+	public synchronized void setTargetFrameRate(float fps)
+	{
+		if(fps < 0)
+			throw new IllegalArgumentException("Target frame rate must not be negative: "+fps);
+		frameInterval = (fps == 0) ? 0 : (long)(NANOS_PER_SECOND / fps);
+		nextFrame = -1;
+	}
+
+	/**
+	 * Returns the time between paced frames in nanoseconds, or 0 if frames are drawn on every display refresh
+	 */
+	public synchronized long getFrameInterval()
+	{
+		return frameInterval;
+	}
+
+	/**
+	 * Sets whether the scene is animating (needs a new frame every so often) or still (only needs one when it changes)
+	 */
+	public synchronized void setAnimating(boolean animating)
+	{
+		if(animating == this.animating)
+			return;
+		this.animating = animating;
+		nextFrame = -1; //start pacing from the next refresh
+		lastDelivered = -1; //the gap since the last frame doesn't count as late
+		rateStart = -1;
+		if(!animating)
+			dirty = true; //draw where the animation stopped
+	}
+
+	public synchronized boolean isAnimating()
+	{
+		return animating;
+	}
+
+	/**
+	 * Notes that something on screen changed, so a frame is needed even if we aren't animating
+	 */
+	public synchronized void invalidate()
+	{
+		dirty = true;
+	}
+
+	/**
+	 * Returns whether frames should just be drawn continuously (animating with no frame rate cap),
+	 * rather than requested one at a time
+	 */
+	public synchronized boolean isRenderingContinuously()
+	{
+		return animating && frameInterval == 0;
+	}
+
+	/**
+	 * Returns whether onVsync() needs to keep being called (false once the scene is still and drawn)
+	 */
+	public synchronized boolean needsFrames()
+	{
+		return animating || dirty;
+	}
+
+	/**
+	 * Called once per display refresh; returns whether a frame should be drawn now
+	 */
+	public synchronized boolean onVsync()
+	{
+		if(!animating)
+		{
+			boolean draw = dirty;
+			dirty = false;
+			return draw;
+		}
+
+		long now = clock.nanoTime();
+		if(nextFrame >= 0 && now < nextFrame - (long)(frameInterval*EARLY_TOLERANCE))
+			return false; //too early
+		if(nextFrame < 0 || now - nextFrame > frameInterval)
+			nextFrame = now + frameInterval; //(re)start the pace from now if we fell a whole frame behind
+		else
+			nextFrame += frameInterval; //otherwise keep to the pace, even if this frame was a bit early or late
+		dirty = false;
+		return true;
+	}
+
+	/**
+	 * Called (from any thread, e.g. the GL thread) whenever a frame has been drawn
+	 */
+	public synchronized void frameDelivered()
+	{
+		long now = clock.nanoTime();
+		deliveredFrames++;
+		if(!animating)
+			return;
+
+		if(lastDelivered >= 0 && frameInterval > 0 && now - lastDelivered > (long)(frameInterval*LATE_TOLERANCE))
+			lateFrames++;
+		lastDelivered = now;
+
+		if(rateStart < 0)
+		{
+			rateStart = now;
+			rateFrames = 0;
+		}
+		else
+		{
+			rateFrames++;
+			if(now - rateStart >= NANOS_PER_SECOND) //update the rate about once a second
+			{
+				deliveredRate = rateFrames * (float)NANOS_PER_SECOND / (now - rateStart);
+				rateStart = now;
+				rateFrames = 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns how many frames per second were actually drawn while animating (over about the last second)
+	 */
+	public synchronized float getDeliveredFrameRate()
+	{
+		return deliveredRate;
+	}
+
+	/**
+	 * Returns how many frames have been drawn in total
+	 */
+	public synchronized long getDeliveredFrameCount()
+	{
+		return deliveredFrames;
+	}
+
+	/**
+	 * Returns how many frames while animating came more than one and a half frames (at the target rate) after the last one
+	 */
+	public synchronized long getLateFrameCount()
+	{
+		return lateFrames;
+	}
+}
@@ -0,0 +1,299 @@
+package cs315.yourname.hwk4;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import android.util.Log;
+
+/**
+ * Measures how long each frame takes to draw (CPU time in onDrawFrame()) and how long it has been since the
+ * previous frame, and counts the frames that go over each of a set of time budgets (i.e., that show up as stutter).
+ *
+ * Everything is kept twice: since the last reset(), and over a rolling window of the last few seconds (kept as a ring of
+ * one-second slices). Recording never allocates. The frame methods are called on the GL thread; the rest can be called
+ * from anywhere.
+ *
+ * When frames are drawn on demand or paced (see FrameScheduler), tell the stats: call restartIntervals() whenever frames
+ * stop or start again, so an idle gap isn't counted as one long frame, and setFramePace() while they are paced, so the
+ * intervals are judged against the pace rather than against the budgets as they stand.
+ */
+public class FrameStats
+{
+	public static final String TAG = "FrameStats";
+
+	public static final long NANOS_PER_MILLI = 1000000L;
+	public static final long[] DEFAULT_BUDGETS = {16666667L, 33333333L}; //60 and 30 frames per second, in nanoseconds
+
+	private static final long SLICE_NANOS = 1000*NANOS_PER_MILLI; //how much time each slice of the window covers
+	private static final int DEFAULT_WINDOW_SLICES = 10;
+
+	private final long[] budgets;
+
+	//since the last reset()
+	private final LatencyHistogram cpuTimes = new LatencyHistogram();
+	private final LatencyHistogram intervals = new LatencyHistogram();
+	private final long[] cpuOverBudget;
+	private final long[] intervalsOverBudget;
+
+	//the rolling window
+	private final LatencyHistogram[] cpuSlices;
+	private final LatencyHistogram[] intervalSlices;
+	private int slice; //the slice being recorded into
+	private long sliceStart = -1; //-1 until the first frame
+	private final LatencyHistogram windowCpuTimes = new LatencyHistogram(); //the slices added up; rebuilt when asked for
+	private final LatencyHistogram windowIntervals = new LatencyHistogram();
+
+	private long frameStart = -1; //when the current frame started, or -1 between frames
+	private long lastFrameStart = -1; //when the frame before started, or -1 if the next one starts a new run of frames
+	private long framePace; //nanoseconds frames are meant to come apart, or 0 if they are drawn as fast as they can be
+
+	/**
+	 * Tracks the default budgets (16.6 and 33.3 ms) over a 10 second window
+	 */
+	public FrameStats()
+	{
+		this(DEFAULT_BUDGETS, DEFAULT_WINDOW_SLICES);
+	}
+
+	/**
+	 * @param budgets The frame time budgets to count overruns of, in nanoseconds
+	 * @param windowSeconds How many seconds the rolling window covers
+	 */
+	public FrameStats(long[] budgets, int windowSeconds)
+	{
+		if(windowSeconds < 1)
+			throw new IllegalArgumentException("Window must be at least one second: "+windowSeconds);
+		this.budgets = budgets.clone();
+		cpuOverBudget = new long[budgets.length];
+		intervalsOverBudget = new long[budgets.length];
+		cpuSlices = new LatencyHistogram[windowSeconds];
+		intervalSlices = new LatencyHistogram[windowSeconds];
+		for(int i=0; i<windowSeconds; i++)
+		{
+			cpuSlices[i] = new LatencyHistogram();
+			intervalSlices[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Marks the start of a frame
+	 * @param now The current time from System.nanoTime()
+	 */
+	public synchronized void frameStart(long now)
+	{
+		advanceWindow(now);
+		if(lastFrameStart >= 0)
+		{
+			long interval = now - lastFrameStart;
+			intervals.record(interval);
+			intervalSlices[slice].record(interval);
+			countOverBudget(interval, intervalsOverBudget, framePace);
+		}
+		lastFrameStart = now;
+		frameStart = now;
+	}
+
+	/**
+	 * Marks the end of a frame
+	 * @param now The current time from System.nanoTime()
+	 */
+	public synchronized void frameEnd(long now)
+	{
+		if(frameStart < 0)
+			return; //no frame to end
+		long cpuTime = now - frameStart;
+		cpuTimes.record(cpuTime);
+		cpuSlices[slice].record(cpuTime);
+		countOverBudget(cpuTime, cpuOverBudget, 0);
+		frameStart = -1;
+	}
+
+	//moves on to the slice for the given time, clearing any slices we skipped over
+	private void advanceWindow(long now)
+	{
+		if(sliceStart < 0)
+		{
+			sliceStart = now;
+			return;
+		}
+		long elapsed = (now - sliceStart)/SLICE_NANOS;
+		if(elapsed <= 0)
+			return;
+		int steps = (int)Math.min(elapsed, cpuSlices.length);
+		for(int i=0; i<steps; i++)
+		{
+			slice = (slice+1) % cpuSlices.length;
+			cpuSlices[slice].clear();
+			intervalSlices[slice].clear();
+		}
+		sliceStart += elapsed*SLICE_NANOS;
+	}
+
+	//counts the time against each budget; with a pace, the budgets are stretched so the first one is the pace
+	private void countOverBudget(long time, long[] counts, long pace)
+	{
+		for(int b=0; b<budgets.length; b++)
+		{
+			long budget = (pace > 0) ? budgets[b]*pace/budgets[0] : budgets[b];
+			if(time > budget)
+				counts[b]++;
+		}
+	}
+
+	/**
+	 * Starts a new run of frames: the time from the last frame to the next one isn't counted as an interval.
+	 * Call this when frames stop being drawn on purpose (e.g., the scene goes still) and when they start again.
+	 */
+	public synchronized void restartIntervals()
+	{
+		lastFrameStart = -1;
+	}
+
+	/**
+	 * Sets how far apart frames are meant to come, so the intervals are judged against that: each budget is stretched
+	 * in proportion so the first one is the pace (at a 30 fps pace, the default budgets count intervals of over 33.3
+	 * and 66.7 ms). The CPU times are still judged against the budgets as they stand.
+	 * @param nanos The time between paced frames, or 0 if frames are drawn as fast as they can be
+	 */
+	public synchronized void setFramePace(long nanos)
+	{
+		if(nanos < 0)
+			throw new IllegalArgumentException("Frame pace must not be negative: "+nanos);
+		framePace = nanos;
+	}
+
+	/**
+	 * Forgets everything recorded so far
+	 */
+	public synchronized void reset()
+	{
+		cpuTimes.clear();
+		intervals.clear();
+		for(int i=0; i<cpuSlices.length; i++)
+		{
+			cpuSlices[i].clear();
+			intervalSlices[i].clear();
+		}
+		for(int b=0; b<budgets.length; b++)
+		{
+			cpuOverBudget[b] = 0;
+			intervalsOverBudget[b] = 0;
+		}
+		frameStart = -1;
+		lastFrameStart = -1;
+		sliceStart = -1;
+	}
+
+	public synchronized long getFrameCount()
+	{
+		return cpuTimes.getCount();
+	}
+
+	/**
+	 * Returns the budgets we count overruns of, in nanoseconds
+	 */
+	public long[] getBudgets()
+	{
+		return budgets.clone();
+	}
+
+	/**
+	 * Returns how many frames took longer than the given budget (by index) to draw
+	 */
+	public synchronized long getCpuOverBudgetCount(int budget)
+	{
+		return cpuOverBudget[budget];
+	}
+
+	/**
+	 * Returns how many frames came longer than the given budget (by index, stretched to the frame pace if there is one)
+	 * after the one before
+	 */
+	public synchronized long getIntervalsOverBudgetCount(int budget)
+	{
+		return intervalsOverBudget[budget];
+	}
+
+	/**
+	 * Returns the given percentile (0-100) of frame CPU time in nanoseconds, either over the rolling window or since the last reset
+	 */
+	public synchronized long getCpuPercentile(double percentile, boolean window)
+	{
+		return (window ? sumWindow(cpuSlices, windowCpuTimes) : cpuTimes).getPercentile(percentile);
+	}
+
+	/**
+	 * Returns the given percentile (0-100) of the time between frames in nanoseconds, either over the rolling window or
+	 * since the last reset
+	 */
+	public synchronized long getIntervalPercentile(double percentile, boolean window)
+	{
+		return (window ? sumWindow(intervalSlices, windowIntervals) : intervals).getPercentile(percentile);
+	}
+
+	//adds up the window's slices into the given histogram
+	private static LatencyHistogram sumWindow(LatencyHistogram[] slices, LatencyHistogram sum)
+	{
+		sum.clear();
+		for(int i=0; i<slices.length; i++)
+			sum.add(slices[i]);
+		return sum;
+	}
+
+	/**
+	 * Returns a one-line summary of the rolling window and the overruns since the last reset, like
+	 * "cpu p50=2.1 p90=3.0 p99=4.2 max=9.8 ms; interval p50=16.7 ... ms; over 16.7ms: 3 cpu, 12 interval; ..."
+	 */
+	public synchronized String getSummary()
+	{
+		StringBuilder builder = new StringBuilder();
+		appendPercentiles(builder, "cpu", sumWindow(cpuSlices, windowCpuTimes));
+		builder.append("; ");
+		appendPercentiles(builder, "interval", sumWindow(intervalSlices, windowIntervals));
+		for(int b=0; b<budgets.length; b++)
+		{
+			builder.append("; over ").append(millis(budgets[b])).append("ms: ")
+				.append(cpuOverBudget[b]).append(" cpu, ").append(intervalsOverBudget[b]).append(" interval");
+		}
+		if(framePace > 0)
+			builder.append("; intervals against a ").append(millis(framePace)).append("ms pace");
+		builder.append(" (of ").append(cpuTimes.getCount()).append(" frames)");
+		return builder.toString();
+	}
+
+	private static void appendPercentiles(StringBuilder builder, String name, LatencyHistogram histogram)
+	{
+		builder.append(name)
+			.append(" p50=").append(millis(histogram.getPercentile(50)))
+			.append(" p90=").append(millis(histogram.getPercentile(90)))
+			.append(" p99=").append(millis(histogram.getPercentile(99)))
+			.append(" max=").append(millis(histogram.getMax())).append(" ms");
+	}
+
+	private static String millis(long nanos)
+	{
+		return String.format(Locale.US, "%.1f", nanos/(double)NANOS_PER_MILLI);
+	}
+
+	/**
+	 * Writes the summary to logcat
+	 */
+	public void log(String tag)
+	{
+		Log.i(tag, getSummary());
+	}
+
+	/**
+	 * Writes the summary (and the percentiles since the last reset) to the given writer, e.g. for a file
+	 */
+	public synchronized void dump(PrintWriter out)
+	{
+		out.println("window: "+getSummary());
+		StringBuilder builder = new StringBuilder("total: ");
+		appendPercentiles(builder, "cpu", cpuTimes);
+		builder.append("; ");
+		appendPercentiles(builder, "interval", intervals);
+		out.println(builder);
+		out.flush();
+	}
+}
@@ -0,0 +1,69 @@
+package cs315.yourname.hwk4;
+
+/**
+ * The six planes of a view frustum (the part of the world the camera can see), for culling things that are off screen.
+ * The planes are pulled straight out of a combined projection * view matrix, so they are in world space.
+ */
+public class Frustum
+{
+	private static final int PLANE_COUNT = 6;
+
+	private final float[] planes = new float[PLANE_COUNT*4]; //a, b, c, d per plane: ax + by + cz + d >= 0 is inside
+
+	/**
+	 * Sets the planes from the given (column-major) projection * view matrix
+	 */
+	public void set(float[] m, int offset)
+	{
+		//row i of the matrix is m[offset+i], m[offset+4+i], m[offset+8+i], m[offset+12+i]
+		setPlane(0, m, offset, 3, 0, 1.0f); //left: w + x
+		setPlane(1, m, offset, 3, 0, -1.0f); //right: w - x
+		setPlane(2, m, offset, 3, 1, 1.0f); //bottom: w + y
+		setPlane(3, m, offset, 3, 1, -1.0f); //top: w - y
+		setPlane(4, m, offset, 3, 2, 1.0f); //near: w + z
+		setPlane(5, m, offset, 3, 2, -1.0f); //far: w - z
+	}
+
+	//sets a plane to (row w) + sign * (row i), normalized so distances come out in world units
+	private void setPlane(int plane, float[] m, int offset, int w, int i, float sign)
+	{
+		float a = m[offset+w] + sign*m[offset+i];
+		float b = m[offset+4+w] + sign*m[offset+4+i];
+		float c = m[offset+8+w] + sign*m[offset+8+i];
+		float d = m[offset+12+w] + sign*m[offset+12+i];
+		float length = (float)Math.sqrt(a*a + b*b + c*c);
+		int p = plane*4;
+		planes[p] = a/length;
+		planes[p+1] = b/length;
+		planes[p+2] = c/length;
+		planes[p+3] = d/length;
+	}
+
+	/**
+	 * Copies the other frustum's planes into this one, returning whether they were any different
+	 */
+	public boolean copyIfChanged(Frustum other)
+	{
+		boolean changed = false;
+		for(int i=0; i<planes.length; i++)
+		{
+			if(planes[i] != other.planes[i])
+			{
+				planes[i] = other.planes[i];
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns whether any of the given sphere (in world space) might be inside the frustum
+	 */
+	public boolean intersectsSphere(float x, float y, float z, float radius)
+	{
+		for(int p=0; p<PLANE_COUNT*4; p+=4)
+			if(planes[p]*x + planes[p+1]*y + planes[p+2]*z + planes[p+3] < -radius)
+				return false; //entirely behind this plane
+		return true;
+	}
+}
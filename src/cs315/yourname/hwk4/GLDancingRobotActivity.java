@@ -1,11 +1,15 @@
 package cs315.yourname.hwk4;
 
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
 import android.app.Activity;
 import android.content.Context;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 
@@ -60,10 +64,17 @@ public class GLDancingRobotActivity extends Activity
 	/**
 	 * The actual view itself, includes as an inner class. Note that this also controls interaction (but not rendering)
 	 * We put the OpenGL rendering in a separate class
+	 *
+	 * Frames are only drawn when needed: while the robot stands still the view renders when dirty, and while it dances
+	 * (and eases out of the dance) the FrameScheduler paces the frames (requested on display refreshes from the Choreographer).
 	 */
-	public static class GLBasicView extends GLSurfaceView
+	public static class GLBasicView extends GLSurfaceView implements Choreographer.FrameCallback
 	{
+		private static final long FADE_CHECK_MILLIS = 16; //how often to check whether a fade-out has finished, once it should have
+
 		private RobotRenderer renderer;
+		private final FrameScheduler scheduler = new FrameScheduler(FrameScheduler.SYSTEM_CLOCK, FrameScheduler.DEFAULT_TARGET_FPS);
+		private boolean waitingForVsync; //whether we've asked the Choreographer for a callback (UI thread only)
 		
 		public GLBasicView(Context context) {
 			this(context, null);
@@ -75,25 +86,156 @@ public class GLDancingRobotActivity extends Activity
 
 			setEGLContextClientVersion(2); //specify OpenGL ES 2.0
 			super.setEGLConfigChooser(8, 8, 8, 8, 16, 0); //may be needed for some targets; specifies 24bit color
+			setPreserveEGLContextOnPause(true); //keep our shaders and buffers across a pause when the device allows it, so resuming doesn't rebuild them
 
 			renderer = new RobotRenderer(context);
-			setRenderer(renderer); //set the renderer
+			setRenderer(new DeliveryCountingRenderer(renderer, scheduler)); //set the renderer
 			
 
 
 			/* 
-			 * Render the view only when there is a change in the drawing data.
-			 * We comment this out when we don't have UI (just animation)
+			 * Render the view only when there is a change in the drawing data (the scheduler switches to
+			 * continuous rendering if we animate with no frame rate cap)
 			 */
-			setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);//WHEN_DIRTY);
+			setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
 		}
 		
 
 		public void controlDancing()
 		{
 			renderer.controlAnimation();
+			removeCallbacks(fadeOutCheck);
+			scheduler.setAnimating(renderer.isAnimating());
+			scheduleFrames();
+			if(!renderer.isDancing())
+				postDelayed(fadeOutCheck, RobotRenderer.DANCE_FADE_MILLIS); //keep drawing while the robot eases out of the dance
+		}
+
+		//stops animating once the robot has finished easing out of its dance
+		private final Runnable fadeOutCheck = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(renderer.isAnimating())
+				{
+					postDelayed(this, FADE_CHECK_MILLIS); //the last frames of the fade haven't been drawn yet
+					return;
+				}
+				scheduler.setAnimating(false);
+				scheduleFrames();
+			}
+		};
+
+		/**
+		 * Sets how many frames per second to draw while dancing, or 0 to draw as fast as the display refreshes
+		 */
+		public void setTargetFrameRate(float fps)
+		{
+			scheduler.setTargetFrameRate(fps);
+			scheduleFrames();
+		}
+
+		public FrameScheduler getFrameScheduler()
+		{
+			return scheduler;
+		}
+
+		@Override
+		public void onResume()
+		{
+			super.onResume();
+			scheduler.invalidate(); //redraw whatever we had
+			scheduleFrames();
+		}
+
+		@Override
+		public void onPause()
+		{
+			queueEvent(new Runnable() //still run on the GL thread once it is paused
+			{
+				@Override
+				public void run()
+				{
+					renderer.onPause(); //stop the renderer's background threads
+				}
+			});
+			super.onPause();
+			Choreographer.getInstance().removeFrameCallback(this);
+			waitingForVsync = false;
+		}
+
+		//sets the render mode the scheduler calls for, and listens for refreshes if it needs frames requested
+		private void scheduleFrames()
+		{
+			//frames are starting, stopping or changing pace: judge them against the new pace, and don't count the gap
+			FrameStats stats = renderer.getFrameStats();
+			stats.setFramePace(scheduler.isAnimating() ? scheduler.getFrameInterval() : 0);
+			stats.restartIntervals();
+
+			if(scheduler.isRenderingContinuously())
+			{
+				setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+				return;
+			}
+			setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+			if(!waitingForVsync && scheduler.needsFrames())
+			{
+				waitingForVsync = true;
+				Choreographer.getInstance().postFrameCallback(this);
+			}
 		}
-	
 
+		/**
+		 * Called by the Choreographer on each display refresh we asked for
+		 */
+		@Override
+		public void doFrame(long frameTimeNanos)
+		{
+			waitingForVsync = false;
+			if(scheduler.isRenderingContinuously())
+				return;
+			if(scheduler.onVsync())
+				requestRender();
+			if(scheduler.needsFrames())
+			{
+				waitingForVsync = true;
+				Choreographer.getInstance().postFrameCallback(this);
+			}
+		}
+	}
+
+	/**
+	 * Passes everything on to the real renderer, and tells the scheduler each time a frame has been drawn
+	 */
+	private static class DeliveryCountingRenderer implements GLSurfaceView.Renderer
+	{
+		private final GLSurfaceView.Renderer renderer;
+		private final FrameScheduler scheduler;
+
+		public DeliveryCountingRenderer(GLSurfaceView.Renderer renderer, FrameScheduler scheduler)
+		{
+			this.renderer = renderer;
+			this.scheduler = scheduler;
+		}
+
+		@Override
+		public void onSurfaceCreated(GL10 unused, EGLConfig config)
+		{
+			renderer.onSurfaceCreated(unused, config);
+		}
+
+		@Override
+		public void onSurfaceChanged(GL10 unused, int width, int height)
+		{
+			renderer.onSurfaceChanged(unused, width, height);
+		}
+
+		@Override
+		public void onDrawFrame(GL10 unused)
+		{
+			renderer.onDrawFrame(unused);
+			scheduler.frameDelivered();
+		}
 	}
 }
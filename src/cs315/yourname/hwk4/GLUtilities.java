@@ -26,31 +26,32 @@ public class GLUtilities
 	/** 
 	 * Helper function to compile a shader. Reports syntax errors in shader language
 	 * 
+	 * @param gl The GL calls to make.
 	 * @param shaderType The shader type.
 	 * @param shaderSource The shader source code.
 	 * @return An OpenGL handle to the shader.
 	 */
-	public static int compileShader(int shaderType, String shaderSource) 
+	public static int compileShader(GlBackend gl, int shaderType, String shaderSource) 
 	{
-		int shaderHandle = GLES20.glCreateShader(shaderType);
+		int shaderHandle = gl.glCreateShader(shaderType);
 
 		if (shaderHandle != 0) 
 		{
 			// Pass in the shader source.
-			GLES20.glShaderSource(shaderHandle, shaderSource);
+			gl.glShaderSource(shaderHandle, shaderSource);
 
 			// Compile the shader.
-			GLES20.glCompileShader(shaderHandle);
+			gl.glCompileShader(shaderHandle);
 
 			// Get the compilation status.
 			final int[] compileStatus = new int[1];
-			GLES20.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+			gl.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
 
 			// If the compilation failed, delete the shader.
 			if (compileStatus[0] == 0) 
 			{
-				Log.e(TAG, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shaderHandle));
-				GLES20.glDeleteShader(shaderHandle);
+				Log.e(TAG, "Error compiling shader: " + gl.glGetShaderInfoLog(shaderHandle));
+				gl.glDeleteShader(shaderHandle);
 				shaderHandle = 0;
 			}
 		}
@@ -66,35 +67,36 @@ public class GLUtilities
 	/**
 	 * Helper function to compile and link a program.
 	 * 
+	 * @param gl The GL calls to make.
 	 * @param vertexShaderHandle An OpenGL handle to an already-compiled vertex shader.
 	 * @param fragmentShaderHandle An OpenGL handle to an already-compiled fragment shader.
 	 * @param attributes Attributes that need to be bound to the program.
 	 * @return An OpenGL handle to the program.
 	 */
-	public static int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle) 
+	public static int createAndLinkProgram(GlBackend gl, final int vertexShaderHandle, final int fragmentShaderHandle) 
 	{
-		int programHandle = GLES20.glCreateProgram();
+		int programHandle = gl.glCreateProgram();
 
 		if (programHandle != 0) 
 		{
 			// Bind the vertex shader to the program.
-			GLES20.glAttachShader(programHandle, vertexShaderHandle);			
+			gl.glAttachShader(programHandle, vertexShaderHandle);			
 
 			// Bind the fragment shader to the program.
-			GLES20.glAttachShader(programHandle, fragmentShaderHandle);
+			gl.glAttachShader(programHandle, fragmentShaderHandle);
 
 			// Link the two shaders together into a program.
-			GLES20.glLinkProgram(programHandle);
+			gl.glLinkProgram(programHandle);
 
 			// Get the link status.
 			final int[] linkStatus = new int[1];
-			GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+			gl.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
 
 			// If the link failed, delete the program.
 			if (linkStatus[0] == 0) 
 			{				
-				Log.e(TAG, "Error compiling program: " + GLES20.glGetProgramInfoLog(programHandle));
-				GLES20.glDeleteProgram(programHandle);
+				Log.e(TAG, "Error compiling program: " + gl.glGetProgramInfoLog(programHandle));
+				gl.glDeleteProgram(programHandle);
 				programHandle = 0;
 			}
 		}
@@ -111,9 +113,9 @@ public class GLUtilities
 	 * Helper method for debugging OpenGL
 	 * From Google
 	 */
-	public static void checkGlError(String op) {
+	public static void checkGlError(GlBackend gl, String op) {
 		int error;
-		while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+		while ((error = gl.glGetError()) != GLES20.GL_NO_ERROR) {
 			Log.e(TAG, op + ": glError " + error);
 			throw new RuntimeException(op + ": glError " + error);
 		}
@@ -0,0 +1,58 @@
+package cs315.yourname.hwk4;
+
+import java.nio.Buffer;
+
+/**
+ * The OpenGL ES 2.0 calls the renderer makes, as an interface, so the drawing code can run against something other
+ * than a real GPU (such as a RecordingGlBackend, which just counts the calls).
+ * The methods match android.opengl.GLES20, and take the same GLES20 constants.
+ */
+public interface GlBackend
+{
+	//state
+	public void glEnable(int cap);
+	public void glDepthFunc(int func);
+	public void glClearColor(float red, float green, float blue, float alpha);
+	public void glClear(int mask);
+	public void glViewport(int x, int y, int width, int height);
+
+	//shaders and programs
+	public int glCreateShader(int type);
+	public void glShaderSource(int shader, String string);
+	public void glCompileShader(int shader);
+	public void glGetShaderiv(int shader, int pname, int[] params, int offset);
+	public String glGetShaderInfoLog(int shader);
+	public void glDeleteShader(int shader);
+	public int glCreateProgram();
+	public void glAttachShader(int program, int shader);
+	public void glLinkProgram(int program);
+	public void glGetProgramiv(int program, int pname, int[] params, int offset);
+	public String glGetProgramInfoLog(int program);
+	public void glDeleteProgram(int program);
+	public void glUseProgram(int program);
+
+	//uniforms and constant attributes
+	public int glGetUniformLocation(int program, String name);
+	public int glGetAttribLocation(int program, String name);
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+	public void glUniform4fv(int location, int count, float[] v, int offset);
+	public void glVertexAttrib3fv(int indx, float[] values, int offset);
+	public void glVertexAttrib4fv(int indx, float[] values, int offset);
+
+	//buffers and vertex attributes
+	public void glGenBuffers(int n, int[] buffers, int offset);
+	public void glBindBuffer(int target, int buffer);
+	public void glBufferData(int target, int size, Buffer data, int usage);
+	public void glDeleteBuffers(int n, int[] buffers, int offset);
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset);
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr);
+	public void glEnableVertexAttribArray(int index);
+	public void glDisableVertexAttribArray(int index);
+
+	//drawing
+	public void glDrawArrays(int mode, int first, int count);
+	public void glDrawElements(int mode, int count, int type, int offset);
+
+	//errors
+	public int glGetError();
+}
@@ -0,0 +1,227 @@
+package cs315.yourname.hwk4;
+
+import java.nio.Buffer;
+
+import android.opengl.GLES20;
+
+/**
+ * The real GlBackend: passes every call straight through to android.opengl.GLES20.
+ */
+public class Gles20Backend implements GlBackend
+{
+	public static final Gles20Backend INSTANCE = new Gles20Backend(); //it has no state, so one is enough
+
+	private Gles20Backend()
+	{
+	}
+
+	@Override
+	public void glEnable(int cap)
+	{
+		GLES20.glEnable(cap);
+	}
+
+	@Override
+	public void glDepthFunc(int func)
+	{
+		GLES20.glDepthFunc(func);
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha)
+	{
+		GLES20.glClearColor(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glClear(int mask)
+	{
+		GLES20.glClear(mask);
+	}
+
+	@Override
+	public void glViewport(int x, int y, int width, int height)
+	{
+		GLES20.glViewport(x, y, width, height);
+	}
+
+	@Override
+	public int glCreateShader(int type)
+	{
+		return GLES20.glCreateShader(type);
+	}
+
+	@Override
+	public void glShaderSource(int shader, String string)
+	{
+		GLES20.glShaderSource(shader, string);
+	}
+
+	@Override
+	public void glCompileShader(int shader)
+	{
+		GLES20.glCompileShader(shader);
+	}
+
+	@Override
+	public void glGetShaderiv(int shader, int pname, int[] params, int offset)
+	{
+		GLES20.glGetShaderiv(shader, pname, params, offset);
+	}
+
+	@Override
+	public String glGetShaderInfoLog(int shader)
+	{
+		return GLES20.glGetShaderInfoLog(shader);
+	}
+
+	@Override
+	public void glDeleteShader(int shader)
+	{
+		GLES20.glDeleteShader(shader);
+	}
+
+	@Override
+	public int glCreateProgram()
+	{
+		return GLES20.glCreateProgram();
+	}
+
+	@Override
+	public void glAttachShader(int program, int shader)
+	{
+		GLES20.glAttachShader(program, shader);
+	}
+
+	@Override
+	public void glLinkProgram(int program)
+	{
+		GLES20.glLinkProgram(program);
+	}
+
+	@Override
+	public void glGetProgramiv(int program, int pname, int[] params, int offset)
+	{
+		GLES20.glGetProgramiv(program, pname, params, offset);
+	}
+
+	@Override
+	public String glGetProgramInfoLog(int program)
+	{
+		return GLES20.glGetProgramInfoLog(program);
+	}
+
+	@Override
+	public void glDeleteProgram(int program)
+	{
+		GLES20.glDeleteProgram(program);
+	}
+
+	@Override
+	public void glUseProgram(int program)
+	{
+		GLES20.glUseProgram(program);
+	}
+
+	@Override
+	public int glGetUniformLocation(int program, String name)
+	{
+		return GLES20.glGetUniformLocation(program, name);
+	}
+
+	@Override
+	public int glGetAttribLocation(int program, String name)
+	{
+		return GLES20.glGetAttribLocation(program, name);
+	}
+
+	@Override
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset)
+	{
+		GLES20.glUniformMatrix4fv(location, count, transpose, value, offset);
+	}
+
+	@Override
+	public void glUniform4fv(int location, int count, float[] v, int offset)
+	{
+		GLES20.glUniform4fv(location, count, v, offset);
+	}
+
+	@Override
+	public void glVertexAttrib3fv(int indx, float[] values, int offset)
+	{
+		GLES20.glVertexAttrib3fv(indx, values, offset);
+	}
+
+	@Override
+	public void glVertexAttrib4fv(int indx, float[] values, int offset)
+	{
+		GLES20.glVertexAttrib4fv(indx, values, offset);
+	}
+
+	@Override
+	public void glGenBuffers(int n, int[] buffers, int offset)
+	{
+		GLES20.glGenBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glBindBuffer(int target, int buffer)
+	{
+		GLES20.glBindBuffer(target, buffer);
+	}
+
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage)
+	{
+		GLES20.glBufferData(target, size, data, usage);
+	}
+
+	@Override
+	public void glDeleteBuffers(int n, int[] buffers, int offset)
+	{
+		GLES20.glDeleteBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset)
+	{
+		GLES20.glVertexAttribPointer(indx, size, type, normalized, stride, offset);
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr)
+	{
+		GLES20.glVertexAttribPointer(indx, size, type, normalized, stride, ptr);
+	}
+
+	@Override
+	public void glEnableVertexAttribArray(int index)
+	{
+		GLES20.glEnableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glDisableVertexAttribArray(int index)
+	{
+		GLES20.glDisableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glDrawArrays(int mode, int first, int count)
+	{
+		GLES20.glDrawArrays(mode, first, count);
+	}
+
+	@Override
+	public void glDrawElements(int mode, int count, int type, int offset)
+	{
+		GLES20.glDrawElements(mode, count, type, offset);
+	}
+
+	@Override
+	public int glGetError()
+	{
+		return GLES20.glGetError();
+	}
+}
@@ -0,0 +1,293 @@
+package cs315.yourname.hwk4;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import android.opengl.GLES20;
+
+/**
+ * A mesh whose vertex data lives in a GPU vertex buffer object (VBO), so it is copied to the GPU once
+ * instead of on every draw call. The vertices are stored in a VertexFormat; by default the same as the ModelFactory arrays:
+ * 	{ posX, posY, posZ, normalX, normalY, normalZ } as floats
+ *
+ * An indexed mesh also gets an element (index) buffer and is drawn with glDrawElements.
+ *
+ * A mesh may also carry an "instance id" on each vertex (see IndexedMesh.replicate() and VertexFormat.withInstanceIds()).
+ *
+ * The CPU-side copy is kept so the buffer can be re-uploaded when the EGL context is lost
+ * (all GL handles die with the context).
+ */
+public class GpuMesh
+{
+	public static final String TAG = "GpuMesh";
+
+	public static final int POSITION_DATA_SIZE = 3;
+	public static final int NORMAL_DATA_SIZE = 3;
+	public static final int BYTES_PER_FLOAT = 4;
+	public static final int MAX_SHORT_INDEXED_VERTICES = 65536; //GLES 2.0 only guarantees unsigned short indices
+	public static final int INSTANCE_DATA_SIZE = 1;
+
+	private final ByteBuffer vertexData; //the CPU-side copy, already in the mesh's format
+	private final int vertexCount;
+	private final VertexFormat format;
+	private int bufferHandle; //the VBO; 0 when not (or no longer) uploaded
+
+	private final Buffer indexData; //null if the mesh is not indexed
+	private final int indexCount;
+	private final int indexType; //GL_UNSIGNED_SHORT, or GL_UNSIGNED_INT for huge meshes (needs OES_element_index_uint)
+	private final int indexSize; //bytes per index
+	private int indexBufferHandle;
+
+	/**
+	 * Creates a mesh from a packed position/normal array (such as ModelFactory.getCubeData())
+	 */
+	public GpuMesh(float[] packedData)
+	{
+		this(packedData, VertexFormat.FLOAT);
+	}
+
+	/**
+	 * Creates a mesh from a packed position/normal array, stored in the given format
+	 */
+	public GpuMesh(float[] packedData, VertexFormat format)
+	{
+		this(format.encode(packedData, POSITION_DATA_SIZE+NORMAL_DATA_SIZE), format, null);
+	}
+
+	/**
+	 * Creates an indexed mesh from packed position/normal(/instance id) vertices (such as ModelFactory.getIndexedSphere()),
+	 * stored as floats
+	 */
+	public GpuMesh(IndexedMesh mesh)
+	{
+		this(mesh, mesh.getFloatsPerVertex() == POSITION_DATA_SIZE+NORMAL_DATA_SIZE+INSTANCE_DATA_SIZE
+				? VertexFormat.FLOAT.withInstanceIds() : VertexFormat.FLOAT);
+	}
+
+	/**
+	 * Creates an indexed mesh stored in the given format (which must match whether the vertices have normals and instance ids)
+	 */
+	public GpuMesh(IndexedMesh mesh, VertexFormat format)
+	{
+		this(format.encode(mesh.getVertices(), mesh.getFloatsPerVertex()), format, toIndexBuffer(mesh.getIndices(), mesh.getVertexCount()));
+	}
+
+	/**
+	 * Creates a mesh straight from (direct, native-order) buffers, such as ones loaded by MeshCache.
+	 * @param vertexData Vertices already encoded in the given format
+	 * @param indexData A ShortBuffer or IntBuffer of triangle indices, or null if the mesh is not indexed
+	 */
+	public GpuMesh(ByteBuffer vertexData, VertexFormat format, Buffer indexData)
+	{
+		this.vertexData = vertexData;
+		this.format = format;
+		vertexCount = vertexData.capacity()/format.getStride();
+
+		this.indexData = indexData;
+		if(indexData == null)
+		{
+			indexCount = 0;
+			indexType = 0;
+			indexSize = 0;
+		}
+		else if(indexData instanceof ShortBuffer)
+		{
+			indexCount = indexData.capacity();
+			indexType = GLES20.GL_UNSIGNED_SHORT;
+			indexSize = 2;
+		}
+		else if(indexData instanceof IntBuffer)
+		{
+			indexCount = indexData.capacity();
+			indexType = GLES20.GL_UNSIGNED_INT;
+			indexSize = 4;
+		}
+		else
+		{
+			throw new IllegalArgumentException("Indices must be a ShortBuffer or IntBuffer: "+indexData);
+		}
+	}
+
+	//copies the indices into a direct buffer of the smallest index type that fits
+	private static Buffer toIndexBuffer(int[] indices, int vertexCount)
+	{
+		if(indices == null)
+			return null;
+
+		if(vertexCount <= MAX_SHORT_INDEXED_VERTICES)
+		{
+			ShortBuffer shorts = ByteBuffer.allocateDirect(indices.length * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+			for(int i=0; i<indices.length; i++)
+				shorts.put((short)indices[i]); //read back as unsigned by GL
+			shorts.position(0);
+			return shorts;
+		}
+		else
+		{
+			IntBuffer ints = ByteBuffer.allocateDirect(indices.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+			ints.put(indices).position(0);
+			return ints;
+		}
+	}
+
+	public boolean isIndexed()
+	{
+		return indexData != null;
+	}
+
+	public int getIndexCount()
+	{
+		return indexCount;
+	}
+
+	/**
+	 * Returns how many indices (or vertices, if the mesh is not indexed) a full draw of the mesh uses
+	 */
+	public int getElementCount()
+	{
+		return indexData != null ? indexCount : vertexCount;
+	}
+
+	/**
+	 * Returns whether each vertex carries an instance id
+	 */
+	public boolean hasInstanceIds()
+	{
+		return format.hasInstanceIds();
+	}
+
+	public int getVertexCount()
+	{
+		return vertexCount;
+	}
+
+	public VertexFormat getFormat()
+	{
+		return format;
+	}
+
+	/**
+	 * Returns how much memory the mesh's vertices and indices take up (on the GPU, and again for the CPU-side copy)
+	 */
+	public int getSizeInBytes()
+	{
+		return vertexData.capacity() + indexCount*indexSize;
+	}
+
+	/**
+	 * Returns whether the mesh currently has a buffer on the GPU
+	 */
+	public boolean isUploaded()
+	{
+		return bufferHandle != 0;
+	}
+
+	/**
+	 * Decodes the CPU-side copy back into an IndexedMesh (see VertexFormat.decode()), for building other meshes from this
+	 * one (such as a mesh loaded from MeshCache) without generating it again. An un-indexed mesh gets one index per vertex.
+	 */
+	public IndexedMesh toIndexedMesh()
+	{
+		float[] vertices = format.decode(vertexData, vertexCount);
+		int floatsPerVertex = vertices.length/Math.max(1, vertexCount);
+		if(indexData == null)
+			return IndexedMesh.fromTriangles(vertices, floatsPerVertex);
+
+		final int[] indices = new int[indexCount];
+		for(int i=0; i<indexCount; i++)
+		{
+			if(indexData instanceof ShortBuffer)
+				indices[i] = ((ShortBuffer)indexData).get(i) & 0xFFFF; //stored unsigned
+			else
+				indices[i] = ((IntBuffer)indexData).get(i);
+		}
+		return new IndexedMesh(vertices, floatsPerVertex, indices);
+	}
+
+	/**
+	 * Copies the vertex data into a new buffer on the GPU. Must be called on the GL thread with a current context,
+	 * e.g. from onSurfaceCreated(). Any previous handle is assumed to have died with its context and is not deleted.
+	 */
+	public void upload(GlBackend gl)
+	{
+		final int[] handles = new int[1];
+		gl.glGenBuffers(1, handles, 0);
+		bufferHandle = handles[0];
+
+		gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferHandle);
+		vertexData.position(0);
+		gl.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexData.capacity(), vertexData, GLES20.GL_STATIC_DRAW);
+		gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+		if(indexData != null)
+		{
+			gl.glGenBuffers(1, handles, 0);
+			indexBufferHandle = handles[0];
+
+			gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferHandle);
+			indexData.position(0);
+			gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexCount * indexSize, indexData, GLES20.GL_STATIC_DRAW);
+			gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		}
+		GLUtilities.checkGlError(gl, "GpuMesh.upload");
+	}
+
+	/**
+	 * Deletes the buffer on the GPU (only while its context is still current)
+	 */
+	public void release(GlBackend gl)
+	{
+		if(bufferHandle != 0)
+		{
+			gl.glDeleteBuffers(1, new int[] {bufferHandle}, 0);
+			bufferHandle = 0;
+		}
+		if(indexBufferHandle != 0)
+		{
+			gl.glDeleteBuffers(1, new int[] {indexBufferHandle}, 0);
+			indexBufferHandle = 0;
+		}
+	}
+
+	/**
+	 * Binds the buffer and points the shader's position and normal attributes at it
+	 */
+	public void bind(GlBackend gl, int positionHandle, int normalHandle)
+	{
+		gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferHandle);
+		format.bind(gl, positionHandle, normalHandle);
+
+		if(indexData != null)
+			gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferHandle);
+	}
+
+	/**
+	 * Points the shader's instance id attribute at the (bound) buffer; only for meshes with instance ids
+	 */
+	public void bindInstanceIds(GlBackend gl, int instanceHandle)
+	{
+		format.bindInstanceIds(gl, instanceHandle);
+	}
+
+	/**
+	 * Draws the (bound) mesh as triangles
+	 */
+	public void draw(GlBackend gl)
+	{
+		draw(gl, getElementCount());
+	}
+
+	/**
+	 * Draws only the first elementCount indices (or vertices) of the (bound) mesh
+	 */
+	public void draw(GlBackend gl, int elementCount)
+	{
+		if(indexData != null)
+			gl.glDrawElements(GLES20.GL_TRIANGLES, elementCount, indexType, 0); //each shared vertex is only processed once
+		else
+			gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, elementCount);
+	}
+}
@@ -0,0 +1,162 @@
+package cs315.yourname.hwk4;
+
+/**
+ * A mesh made of unique vertices plus a list of indices (3 per triangle) into them, so vertices shared by
+ * several triangles are only stored (and transformed by the vertex shader) once.
+ */
+public class IndexedMesh
+{
+	private final float[] vertices; //packed vertex data
+	private final int floatsPerVertex;
+	private final int[] indices; //3 per triangle
+
+	public IndexedMesh(float[] vertices, int floatsPerVertex, int[] indices)
+	{
+		this.vertices = vertices;
+		this.floatsPerVertex = floatsPerVertex;
+		this.indices = indices;
+	}
+
+	/**
+	 * Returns the packed data of the unique vertices
+	 */
+	public float[] getVertices()
+	{
+		return vertices;
+	}
+
+	public int getFloatsPerVertex()
+	{
+		return floatsPerVertex;
+	}
+
+	public int getVertexCount()
+	{
+		return vertices.length/floatsPerVertex;
+	}
+
+	/**
+	 * Returns the indices of the triangles' vertices (3 per triangle)
+	 */
+	public int[] getIndices()
+	{
+		return indices;
+	}
+
+	public int getIndexCount()
+	{
+		return indices.length;
+	}
+
+	/**
+	 * Returns the mesh as a plain (un-indexed) array of triangles, with every vertex written out in full
+	 */
+	public float[] toTriangleArray()
+	{
+		final float[] triangles = new float[indices.length*floatsPerVertex];
+		for(int i=0; i<indices.length; i++)
+			System.arraycopy(vertices, indices[i]*floatsPerVertex, triangles, i*floatsPerVertex, floatsPerVertex);
+		return triangles;
+	}
+
+	/**
+	 * Wraps an un-indexed array of triangles (such as ModelFactory.getCubeData()) as an indexed mesh, with one index per vertex
+	 */
+	public static IndexedMesh fromTriangles(float[] triangles, int floatsPerVertex)
+	{
+		final int[] indices = new int[triangles.length/floatsPerVertex];
+		for(int i=0; i<indices.length; i++)
+			indices[i] = i;
+		return new IndexedMesh(triangles, floatsPerVertex, indices);
+	}
+
+	/**
+	 * Returns a copy of a position-only mesh with each vertex's position repeated as its normal, which is right for a
+	 * unit sphere: { posX, posY, posZ } becomes { posX, posY, posZ, normalX, normalY, normalZ }
+	 */
+	public IndexedMesh withPositionsAsNormals()
+	{
+		if(floatsPerVertex != 3)
+			throw new IllegalStateException("Expected positions only, not "+floatsPerVertex+" floats per vertex");
+		int vertexCount = getVertexCount();
+		final float[] packed = new float[vertexCount*6];
+		for(int v=0; v<vertexCount; v++)
+		{
+			System.arraycopy(vertices, v*3, packed, v*6, 3);
+			System.arraycopy(vertices, v*3, packed, v*6+3, 3);
+		}
+		return new IndexedMesh(packed, 6, indices);
+	}
+
+	/**
+	 * Returns one mesh holding the given meshes, one after the other. Each vertex gets one more float: the index of the
+	 * mesh it came from (so a shader can look up per-part data, like a joint's matrix, from a uniform array).
+	 * Null entries add nothing, but still use up an index. The meshes must all have the same number of floats per vertex.
+	 */
+	public static IndexedMesh combine(IndexedMesh[] parts)
+	{
+		int floatsPerVertex = -1;
+		int vertexCount = 0;
+		int indexCount = 0;
+		for(int p=0; p<parts.length; p++)
+		{
+			if(parts[p] == null)
+				continue;
+			if(floatsPerVertex >= 0 && parts[p].floatsPerVertex != floatsPerVertex)
+				throw new IllegalArgumentException("Meshes to combine must have the same vertex size");
+			floatsPerVertex = parts[p].floatsPerVertex;
+			vertexCount += parts[p].getVertexCount();
+			indexCount += parts[p].indices.length;
+		}
+		if(floatsPerVertex < 0)
+			throw new IllegalArgumentException("Nothing to combine");
+
+		int outFloats = floatsPerVertex+1;
+		final float[] outVertices = new float[vertexCount*outFloats];
+		final int[] outIndices = new int[indexCount];
+		int firstVertex = 0;
+		int firstIndex = 0;
+		for(int p=0; p<parts.length; p++)
+		{
+			IndexedMesh part = parts[p];
+			if(part == null)
+				continue;
+			int partVertices = part.getVertexCount();
+			for(int v=0; v<partVertices; v++)
+			{
+				int out = (firstVertex + v)*outFloats;
+				System.arraycopy(part.vertices, v*floatsPerVertex, outVertices, out, floatsPerVertex);
+				outVertices[out+floatsPerVertex] = p; //which part this is
+			}
+			for(int i=0; i<part.indices.length; i++)
+				outIndices[firstIndex + i] = firstVertex + part.indices[i];
+			firstVertex += partVertices;
+			firstIndex += part.indices.length;
+		}
+		return new IndexedMesh(outVertices, outFloats, outIndices);
+	}
+
+	/**
+	 * Returns a mesh holding the given number of copies of this one, one after the other. Each vertex gets one more float:
+	 * the number of the copy it belongs to (so a shader can look up per-copy data, like a matrix, from a uniform array).
+	 */
+	public IndexedMesh replicate(int copies)
+	{
+		int vertexCount = getVertexCount();
+		int outFloats = floatsPerVertex+1;
+		final float[] outVertices = new float[copies*vertexCount*outFloats];
+		final int[] outIndices = new int[copies*indices.length];
+		for(int c=0; c<copies; c++)
+		{
+			for(int v=0; v<vertexCount; v++)
+			{
+				int out = (c*vertexCount + v)*outFloats;
+				System.arraycopy(vertices, v*floatsPerVertex, outVertices, out, floatsPerVertex);
+				outVertices[out+floatsPerVertex] = c; //which copy this is
+			}
+			for(int i=0; i<indices.length; i++)
+				outIndices[c*indices.length + i] = c*vertexCount + indices[i];
+		}
+		return new IndexedMesh(outVertices, outFloats, outIndices);
+	}
+}
@@ -0,0 +1,370 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.Matrix;
+
+/**
+ * The poses of many copies of one skeleton (a whole crowd), stored as a "structure of arrays": one primitive array per
+ * component (translation tx, ty, tz; rotation quaternion qx, qy, qz, qw; scale sx, sy, sz), rather than a matrix per joint.
+ * Every array is indexed joint-major, [joint*robotCount + robot], so one joint of every robot sits side by side.
+ *
+ * Posing is two bulk kernels over those arrays. computeLocalTransforms() turns every pose into a matrix in one flat loop.
+ * computeWorldTransforms() then goes joint by joint down the skeleton (parents first), each joint a flat loop over the robots:
+ * world = parentWorld * bind * pose. The bind transform is the same for every robot. The loops have no branches and
+ * only unit-stride array accesses, so the JIT can vectorize them (the matrices are Affine3's 3x4 layout, as 12 arrays).
+ *
+ * Not thread-safe; one thread poses the whole buffer.
+ */
+public class JointBuffer
+{
+	public static final String TAG = "JointBuffer";
+
+	private static final int MATRIX_SIZE = 16;
+	private static final int SIZE = Affine3.SIZE;
+
+	private final Skeleton skeleton;
+	private final int robotCount;
+	private final int jointCount;
+	private final int[] parents;
+	private final float[] binds; //3x4 per joint
+	private final float[] shapes; //3x4 per joint
+
+	//the pose of every joint of every robot: [component][joint*robotCount + robot]
+	private final float[][] translations; //x, y, z
+	private final float[][] rotations; //quaternion x, y, z, w
+	private final float[][] scales; //x, y, z
+
+	//3x4 matrices as 12 arrays each, element by element in Affine3's order
+	private final float[][] roots; //[element][robot]
+	private final float[][] locals; //[element][joint*robotCount + robot]
+	private final float[][] worlds; //[element][joint*robotCount + robot]
+
+	/**
+	 * Creates a buffer for the given number of copies of the skeleton, all in the rest pose and standing at the origin
+	 */
+	public JointBuffer(Skeleton skeleton, int robotCount)
+	{
+		if(robotCount < 1)
+			throw new IllegalArgumentException("Joint buffer needs at least one robot: "+robotCount);
+		this.skeleton = skeleton;
+		this.robotCount = robotCount;
+		jointCount = skeleton.getJointCount();
+
+		parents = new int[jointCount];
+		binds = new float[jointCount*SIZE];
+		shapes = new float[jointCount*SIZE];
+		for(int j=0; j<jointCount; j++)
+		{
+			parents[j] = skeleton.getParent(j);
+			Affine3.fromMatrix(binds, j*SIZE, skeleton.getBindTransforms(), j*MATRIX_SIZE);
+			Affine3.fromMatrix(shapes, j*SIZE, skeleton.getShapeTransforms(), j*MATRIX_SIZE);
+		}
+
+		int n = jointCount*robotCount;
+		translations = new float[3][n];
+		rotations = new float[4][n];
+		scales = new float[3][n];
+		roots = new float[SIZE][robotCount];
+		locals = new float[SIZE][n];
+		worlds = new float[SIZE][n];
+
+		float[] identity = new float[MATRIX_SIZE];
+		Matrix.setIdentityM(identity, 0);
+		for(int r=0; r<robotCount; r++)
+			setRoot(r, identity, 0);
+		resetPose();
+	}
+
+	public Skeleton getSkeleton()
+	{
+		return skeleton;
+	}
+
+	public int getRobotCount()
+	{
+		return robotCount;
+	}
+
+	/**
+	 * Returns where the given joint of the given robot is in the arrays
+	 */
+	public int indexOf(int joint, int robot)
+	{
+		return joint*robotCount + robot;
+	}
+
+	/**
+	 * Sets where the given robot stands (a 4x4 affine matrix)
+	 */
+	public void setRoot(int robot, float[] root, int rootOffset)
+	{
+		for(int col=0; col<4; col++)
+			for(int row=0; row<3; row++)
+				roots[col*3 + row][robot] = root[rootOffset + col*4 + row];
+	}
+
+	/**
+	 * Puts every joint of every robot in its rest pose
+	 */
+	public void resetPose()
+	{
+		for(int i=0; i<jointCount*robotCount; i++)
+			setIdentity(i);
+	}
+
+	/**
+	 * Puts every joint of the given robot in its rest pose
+	 */
+	public void resetPose(int robot)
+	{
+		for(int j=0; j<jointCount; j++)
+			setIdentity(j*robotCount + robot);
+	}
+
+	/**
+	 * Puts the given joint of the given robot in its rest pose
+	 */
+	public void resetPose(int joint, int robot)
+	{
+		setIdentity(joint*robotCount + robot);
+	}
+
+	private void setIdentity(int i)
+	{
+		for(int c=0; c<3; c++)
+		{
+			translations[c][i] = 0;
+			rotations[c][i] = 0;
+			scales[c][i] = 1.0f;
+		}
+		rotations[3][i] = 1.0f;
+	}
+
+	/**
+	 * Sets the pose of the given joint of the given robot in one go (like Affine3.setTRS(), as a translation, a rotation by
+	 * the given angle in degrees around the given unit axis, and a scale), rather than resetting it and then rotating it
+	 */
+	public void setPose(int joint, int robot, float tx, float ty, float tz, float angle, float x, float y, float z,
+			float sx, float sy, float sz)
+	{
+		float half = angle * (float)(Math.PI / 360.0);
+		float s = (float)Math.sin(half);
+
+		int i = joint*robotCount + robot;
+		translations[0][i] = tx;
+		translations[1][i] = ty;
+		translations[2][i] = tz;
+		rotations[0][i] = x*s;
+		rotations[1][i] = y*s;
+		rotations[2][i] = z*s;
+		rotations[3][i] = (float)Math.cos(half);
+		scales[0][i] = sx;
+		scales[1][i] = sy;
+		scales[2][i] = sz;
+	}
+
+	/**
+	 * Rotates the pose of the given joint of the given robot by the given angle (in degrees) around the given unit axis,
+	 * after whatever rotation it already has (like Matrix.rotateM(), so several channels combine in the same order)
+	 */
+	public void rotate(int joint, int robot, float angle, float x, float y, float z)
+	{
+		float half = angle * (float)(Math.PI / 360.0);
+		float s = (float)Math.sin(half);
+		float bx = x*s, by = y*s, bz = z*s, bw = (float)Math.cos(half);
+
+		int i = joint*robotCount + robot;
+		float[] qx = rotations[0], qy = rotations[1], qz = rotations[2], qw = rotations[3];
+		float ax = qx[i], ay = qy[i], az = qz[i], aw = qw[i];
+		qx[i] = aw*bx + ax*bw + ay*bz - az*by; //q = q * b
+		qy[i] = aw*by - ax*bz + ay*bw + az*bx;
+		qz[i] = aw*bz + ax*by - ay*bx + az*bw;
+		qw[i] = aw*bw - ax*bx - ay*by - az*bz;
+	}
+
+	/**
+	 * Returns the pose translations, for filling in directly: the x, y and z arrays, indexed with indexOf()
+	 */
+	public float[][] getTranslations()
+	{
+		return translations;
+	}
+
+	/**
+	 * Returns the pose rotations (unit quaternions), for filling in directly: the x, y, z and w arrays, indexed with indexOf()
+	 */
+	public float[][] getRotations()
+	{
+		return rotations;
+	}
+
+	/**
+	 * Returns the pose scales, for filling in directly: the x, y and z arrays, indexed with indexOf()
+	 */
+	public float[][] getScales()
+	{
+		return scales;
+	}
+
+	/**
+	 * Returns the local (pose) matrices as of the last computeLocalTransforms(): 12 arrays, one per element of a 3x4 matrix
+	 */
+	public float[][] getLocalTransforms()
+	{
+		return locals;
+	}
+
+	/**
+	 * Returns the world matrices as of the last computeWorldTransforms(): 12 arrays, one per element of a 3x4 matrix
+	 */
+	public float[][] getWorldTransforms()
+	{
+		return worlds;
+	}
+
+	/**
+	 * Returns the robots' root matrices: 12 arrays, one per element of a 3x4 matrix
+	 */
+	public float[][] getRoots()
+	{
+		return roots;
+	}
+
+	/**
+	 * Returns the bind transforms of the skeleton, 3x4 per joint
+	 */
+	public float[] getBinds()
+	{
+		return binds;
+	}
+
+	/**
+	 * Returns the index of each joint's parent (or Skeleton.NO_PARENT)
+	 */
+	public int[] getParents()
+	{
+		return parents;
+	}
+
+	/**
+	 * Poses every robot: computeLocalTransforms() then computeWorldTransforms()
+	 */
+	public void update()
+	{
+		computeLocalTransforms();
+		computeWorldTransforms();
+	}
+
+	/**
+	 * The first kernel: turns the translation, rotation and scale of every joint of every robot into a matrix (T * R * S)
+	 */
+	public void computeLocalTransforms()
+	{
+		final float[] m0 = locals[0], m1 = locals[1], m2 = locals[2], m3 = locals[3], m4 = locals[4], m5 = locals[5];
+		final float[] m6 = locals[6], m7 = locals[7], m8 = locals[8], m9 = locals[9], m10 = locals[10], m11 = locals[11];
+		final float[] tx = translations[0], ty = translations[1], tz = translations[2];
+		final float[] qx = rotations[0], qy = rotations[1], qz = rotations[2], qw = rotations[3];
+		final float[] sx = scales[0], sy = scales[1], sz = scales[2];
+		final int n = tx.length;
+		for(int i=0; i<n; i++)
+		{
+			float x = qx[i], y = qy[i], z = qz[i], w = qw[i];
+			float xx = x*x, yy = y*y, zz = z*z;
+			float xy = x*y, xz = x*z, yz = y*z;
+			float wx = w*x, wy = w*y, wz = w*z;
+			float scaleX = sx[i], scaleY = sy[i], scaleZ = sz[i];
+			m0[i] = (1.0f - 2.0f*(yy + zz)) * scaleX;
+			m1[i] = 2.0f*(xy + wz) * scaleX;
+			m2[i] = 2.0f*(xz - wy) * scaleX;
+			m3[i] = 2.0f*(xy - wz) * scaleY;
+			m4[i] = (1.0f - 2.0f*(xx + zz)) * scaleY;
+			m5[i] = 2.0f*(yz + wx) * scaleY;
+			m6[i] = 2.0f*(xz + wy) * scaleZ;
+			m7[i] = 2.0f*(yz - wx) * scaleZ;
+			m8[i] = (1.0f - 2.0f*(xx + yy)) * scaleZ;
+			m9[i] = tx[i];
+			m10[i] = ty[i];
+			m11[i] = tz[i];
+		}
+	}
+
+	/**
+	 * The second kernel: world = parentWorld * bind * local, for every joint of every robot (parents first, so each
+	 * joint's parents are done before it). Call computeLocalTransforms() first.
+	 */
+	public void computeWorldTransforms()
+	{
+		for(int j=0; j<jointCount; j++)
+		{
+			int parent = parents[j];
+			float[][] parentWorlds = (parent == Skeleton.NO_PARENT) ? roots : worlds;
+			int parentStart = (parent == Skeleton.NO_PARENT) ? 0 : parent*robotCount;
+			composeJoint(parentWorlds, parentStart, binds, j*SIZE, locals, worlds, j*robotCount, robotCount);
+		}
+	}
+
+	//world[start+r] = parent[parentStart+r] * bind * local[start+r], for r from 0 to count; the bind matrix is shared
+	private static void composeJoint(float[][] parent, int parentStart, float[] bind, int b, float[][] local, float[][] world,
+			int start, int count)
+	{
+		final float b0 = bind[b], b1 = bind[b+1], b2 = bind[b+2], b3 = bind[b+3], b4 = bind[b+4], b5 = bind[b+5];
+		final float b6 = bind[b+6], b7 = bind[b+7], b8 = bind[b+8], b9 = bind[b+9], b10 = bind[b+10], b11 = bind[b+11];
+		final float[] p0 = parent[0], p1 = parent[1], p2 = parent[2], p3 = parent[3], p4 = parent[4], p5 = parent[5];
+		final float[] p6 = parent[6], p7 = parent[7], p8 = parent[8], p9 = parent[9], p10 = parent[10], p11 = parent[11];
+		final float[] l0 = local[0], l1 = local[1], l2 = local[2], l3 = local[3], l4 = local[4], l5 = local[5];
+		final float[] l6 = local[6], l7 = local[7], l8 = local[8], l9 = local[9], l10 = local[10], l11 = local[11];
+		final float[] w0 = world[0], w1 = world[1], w2 = world[2], w3 = world[3], w4 = world[4], w5 = world[5];
+		final float[] w6 = world[6], w7 = world[7], w8 = world[8], w9 = world[9], w10 = world[10], w11 = world[11];
+
+		for(int r=0; r<count; r++)
+		{
+			int i = start + r;
+			int p = parentStart + r;
+
+			//c = bind * local (columns 0-2 rotate, column 3 also translates)
+			float c0 = b0*l0[i] + b3*l1[i] + b6*l2[i];
+			float c1 = b1*l0[i] + b4*l1[i] + b7*l2[i];
+			float c2 = b2*l0[i] + b5*l1[i] + b8*l2[i];
+			float c3 = b0*l3[i] + b3*l4[i] + b6*l5[i];
+			float c4 = b1*l3[i] + b4*l4[i] + b7*l5[i];
+			float c5 = b2*l3[i] + b5*l4[i] + b8*l5[i];
+			float c6 = b0*l6[i] + b3*l7[i] + b6*l8[i];
+			float c7 = b1*l6[i] + b4*l7[i] + b7*l8[i];
+			float c8 = b2*l6[i] + b5*l7[i] + b8*l8[i];
+			float c9 = b0*l9[i] + b3*l10[i] + b6*l11[i] + b9;
+			float c10 = b1*l9[i] + b4*l10[i] + b7*l11[i] + b10;
+			float c11 = b2*l9[i] + b5*l10[i] + b8*l11[i] + b11;
+
+			//world = parent * c
+			float q0 = p0[p], q1 = p1[p], q2 = p2[p], q3 = p3[p], q4 = p4[p], q5 = p5[p];
+			float q6 = p6[p], q7 = p7[p], q8 = p8[p], q9 = p9[p], q10 = p10[p], q11 = p11[p];
+			w0[i] = q0*c0 + q3*c1 + q6*c2;
+			w1[i] = q1*c0 + q4*c1 + q7*c2;
+			w2[i] = q2*c0 + q5*c1 + q8*c2;
+			w3[i] = q0*c3 + q3*c4 + q6*c5;
+			w4[i] = q1*c3 + q4*c4 + q7*c5;
+			w5[i] = q2*c3 + q5*c4 + q8*c5;
+			w6[i] = q0*c6 + q3*c7 + q6*c8;
+			w7[i] = q1*c6 + q4*c7 + q7*c8;
+			w8[i] = q2*c6 + q5*c7 + q8*c8;
+			w9[i] = q0*c9 + q3*c10 + q6*c11 + q9;
+			w10[i] = q1*c9 + q4*c10 + q7*c11 + q10;
+			w11[i] = q2*c9 + q5*c10 + q8*c11 + q11;
+		}
+	}
+
+	/**
+	 * Writes the given robot's model transforms (world * shape) as 4x4 matrices, joint by joint, for drawing
+	 * @param temp Temporary space for one 3x4 matrix
+	 */
+	public void getModelTransforms(int robot, float[] models, int modelOffset, float[] temp)
+	{
+		for(int j=0; j<jointCount; j++)
+		{
+			int i = j*robotCount + robot;
+			for(int e=0; e<SIZE; e++)
+				temp[e] = worlds[e][i];
+			Affine3.multiply(temp, 0, temp, 0, shapes, j*SIZE);
+			Affine3.toMatrix(models, modelOffset + j*MATRIX_SIZE, temp, 0);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package cs315.yourname.hwk4;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations (in nanoseconds) with log-linear buckets: each power of two is split into SUB_BUCKETS
+ * equal buckets, so every value is kept to within about 6% no matter how big it is, in a small fixed array.
+ * Recording a value never allocates.
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; //buckets per power of two
+	private static final int MAX_BITS = 40; //values up to 2^40 ns (about 18 minutes); bigger ones go in the last bucket
+	private static final int BUCKET_COUNT = (MAX_BITS - SUB_BUCKET_BITS + 1)*SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long count;
+	private long total; //for the mean
+	private long max;
+
+	/**
+	 * Adds a value (in nanoseconds; negative values count as 0)
+	 */
+	public void record(long value)
+	{
+		if(value < 0)
+			value = 0;
+		counts[bucketOf(value)]++;
+		count++;
+		total += value;
+		if(value > max)
+			max = value;
+	}
+
+	/**
+	 * Adds every value recorded in the other histogram to this one
+	 */
+	public void add(LatencyHistogram other)
+	{
+		for(int i=0; i<BUCKET_COUNT; i++)
+			counts[i] += other.counts[i];
+		count += other.count;
+		total += other.total;
+		if(other.max > max)
+			max = other.max;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(counts, 0);
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public long getMax()
+	{
+		return max;
+	}
+
+	public long getMean()
+	{
+		return count == 0 ? 0 : total/count;
+	}
+
+	/**
+	 * Returns the value that the given percent of the recorded values are at or below (to within the bucket size),
+	 * or 0 if nothing has been recorded
+	 * @param percentile From 0 to 100 (e.g., 99 for p99)
+	 */
+	public long getPercentile(double percentile)
+	{
+		if(count == 0)
+			return 0;
+		long rank = (long)Math.ceil(percentile/100.0 * count);
+		if(rank < 1)
+			rank = 1;
+
+		long seen = 0;
+		for(int i=0; i<BUCKET_COUNT; i++)
+		{
+			seen += counts[i];
+			if(seen >= rank)
+				return Math.min(highestValueIn(i), max);
+		}
+		return max;
+	}
+
+	//returns the bucket holding the given (non-negative) value
+	private static int bucketOf(long value)
+	{
+		if(value < SUB_BUCKETS)
+			return (int)value; //the smallest values get a bucket each
+		int bits = 64 - Long.numberOfLeadingZeros(value); //so value is in [2^(bits-1), 2^bits)
+		if(bits > MAX_BITS)
+			return BUCKET_COUNT-1;
+		int shift = bits - SUB_BUCKET_BITS - 1;
+		int sub = (int)(value >>> shift) - SUB_BUCKETS; //which of the power of two's buckets; 0 to SUB_BUCKETS-1
+		return (shift+1)*SUB_BUCKETS + sub;
+	}
+
+	//returns the biggest value that goes in the given bucket
+	private static long highestValueIn(int bucket)
+	{
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = bucket/SUB_BUCKETS - 1;
+		int sub = bucket % SUB_BUCKETS;
+		return ((long)(SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+}
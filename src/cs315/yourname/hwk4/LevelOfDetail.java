@@ -0,0 +1,114 @@
+package cs315.yourname.hwk4;
+
+import java.util.Arrays;
+
+/**
+ * Picks which version of a mesh to draw (finer ones have more triangles) from how big the part is on screen.
+ * Each part remembers the level it was last drawn at, and only moves to another level once its size is a margin past
+ * the threshold between them, so parts near a threshold don't flicker back and forth between levels.
+ *
+ * Parts are identified by a slot number (e.g., robot * joints + joint); call setSlotCount() when the number of parts changes.
+ */
+public class LevelOfDetail
+{
+	public static final String TAG = "LevelOfDetail";
+
+	private final int[] meshIds; //the mesh id of each level, finest first
+	private final float[] minRadii; //the smallest radius on screen (in pixels) each level is used for
+	private final float hysteresis; //how far (as a fraction of the threshold) a part has to go past a threshold to switch
+
+	private int[] levels = new int[0]; //the level each slot was last drawn at, or -1 if it hasn't been yet
+
+	/**
+	 * @param meshIds The mesh id of each level, finest first
+	 * @param minRadii The smallest radius on screen (in pixels) each level is drawn at; decreasing, and the last should be 0
+	 * @param hysteresis How far past a threshold a part has to go to switch levels, as a fraction of the threshold (e.g., 0.15)
+	 */
+	public LevelOfDetail(int[] meshIds, float[] minRadii, float hysteresis)
+	{
+		if(meshIds.length == 0 || meshIds.length != minRadii.length)
+			throw new IllegalArgumentException("Need a minimum radius for each of at least one level");
+		for(int i=1; i<minRadii.length; i++)
+			if(minRadii[i] > minRadii[i-1])
+				throw new IllegalArgumentException("Minimum radii must be decreasing: "+Arrays.toString(minRadii));
+		this.meshIds = meshIds.clone();
+		this.minRadii = minRadii.clone();
+		this.hysteresis = hysteresis;
+	}
+
+	/**
+	 * Sets how many parts we pick levels for; if it changed, every part starts over with no level
+	 */
+	public void setSlotCount(int slots)
+	{
+		if(slots == levels.length)
+			return;
+		levels = new int[slots];
+		Arrays.fill(levels, -1);
+	}
+
+	public int getSlotCount()
+	{
+		return levels.length;
+	}
+
+	/**
+	 * Returns the mesh id to draw the given part with
+	 * @param slot Which part this is
+	 * @param screenRadius How big the part is on screen, in pixels (such as from getScreenRadius())
+	 */
+	public int select(int slot, float screenRadius)
+	{
+		int level = levels[slot];
+		if(level < 0)
+		{
+			//first time: just take the finest level this size calls for
+			level = 0;
+			while(level < minRadii.length-1 && screenRadius < minRadii[level])
+				level++;
+		}
+		else
+		{
+			while(level > 0 && screenRadius >= minRadii[level-1]*(1+hysteresis)) //well into a finer level
+				level--;
+			while(level < minRadii.length-1 && screenRadius < minRadii[level]*(1-hysteresis)) //well into a coarser level
+				level++;
+		}
+		levels[slot] = level;
+		return meshIds[level];
+	}
+
+	/**
+	 * Returns the level (0 is the finest) the given part was last drawn at, or -1 if it hasn't been drawn yet
+	 */
+	public int getLevel(int slot)
+	{
+		return levels[slot];
+	}
+
+	/**
+	 * Returns roughly how big (in pixels) a mesh that fits in a sphere around its origin is on screen.
+	 * Anything at or behind the eye counts as huge.
+	 * @param model The mesh's model transform
+	 * @param meshRadius The radius of the mesh's bounding sphere, before the model transform
+	 * @param view The view matrix
+	 * @param projection The (perspective) projection matrix
+	 * @param viewportHeight The height of the viewport in pixels
+	 */
+	public static float getScreenRadius(float[] model, int modelOffset, float meshRadius, float[] view, float[] projection, int viewportHeight)
+	{
+		int m = modelOffset;
+		//the center's distance in front of the eye (the view space z, negated)
+		float depth = -(view[2]*model[m+12] + view[6]*model[m+13] + view[10]*model[m+14] + view[14]);
+		if(depth <= 0)
+			return Float.MAX_VALUE;
+
+		//the biggest the model transform stretches anything (its longest axis)
+		float sx = model[m]*model[m] + model[m+1]*model[m+1] + model[m+2]*model[m+2];
+		float sy = model[m+4]*model[m+4] + model[m+5]*model[m+5] + model[m+6]*model[m+6];
+		float sz = model[m+8]*model[m+8] + model[m+9]*model[m+9] + model[m+10]*model[m+10];
+		float radius = meshRadius*(float)Math.sqrt(Math.max(sx, Math.max(sy, sz)));
+
+		return radius*projection[5]*0.5f*viewportHeight/depth; //projection[5] is (2 * near / height of the near plane)
+	}
+}
@@ -0,0 +1,135 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.Matrix;
+
+/**
+ * A stack of 4x4 matrices stored back-to-back in one preallocated float[] (depth * 16 floats).
+ * The "current" matrix is the one on top; transformations are applied to it in place, so once the
+ * stack has been created no more memory is allocated (unlike a Stack of float[16] copies).
+ *
+ * Read the current matrix straight out of the backing array with array() and offset().
+ */
+public class MatrixStack
+{
+	public static final String TAG = "MatrixStack";
+
+	private static final int MATRIX_SIZE = 16;
+
+	private final float[] stack; //all of the matrices, one after the other
+	private int top; //offset of the current matrix in the array
+	private final float[] scratch = new float[MATRIX_SIZE]; //temporary matrix for multiply
+
+	/**
+	 * Creates a stack that can hold up to maxDepth matrices. The current matrix starts as the identity.
+	 */
+	public MatrixStack(int maxDepth)
+	{
+		if(maxDepth < 1)
+			throw new IllegalArgumentException("Matrix stack must hold at least one matrix: "+maxDepth);
+		stack = new float[maxDepth*MATRIX_SIZE];
+		loadIdentity();
+	}
+
+	/**
+	 * Returns the backing array; the current matrix starts at offset()
+	 */
+	public float[] array()
+	{
+		return stack;
+	}
+
+	/**
+	 * Returns where the current matrix starts in the backing array
+	 */
+	public int offset()
+	{
+		return top;
+	}
+
+	/**
+	 * Returns how many matrices are on the stack (1 when nothing has been pushed)
+	 */
+	public int depth()
+	{
+		return top/MATRIX_SIZE + 1;
+	}
+
+	/**
+	 * Saves the current matrix; the new current matrix starts as a copy of it
+	 */
+	public void push()
+	{
+		if(top + MATRIX_SIZE >= stack.length)
+			throw new IllegalStateException("Matrix stack overflow (depth "+depth()+")");
+		System.arraycopy(stack, top, stack, top+MATRIX_SIZE, MATRIX_SIZE);
+		top += MATRIX_SIZE;
+	}
+
+	/**
+	 * Restores the matrix that was current at the matching push()
+	 */
+	public void pop()
+	{
+		if(top == 0)
+			throw new IllegalStateException("Matrix stack underflow");
+		top -= MATRIX_SIZE;
+	}
+
+	/**
+	 * Pops everything and resets the current matrix to the identity
+	 */
+	public void reset()
+	{
+		top = 0;
+		loadIdentity();
+	}
+
+	public void loadIdentity()
+	{
+		Matrix.setIdentityM(stack, top);
+	}
+
+	/**
+	 * Replaces the current matrix with the given one
+	 */
+	public void load(float[] m, int offset)
+	{
+		System.arraycopy(m, offset, stack, top, MATRIX_SIZE);
+	}
+
+	/**
+	 * Copies the current matrix into the given array
+	 */
+	public void get(float[] m, int offset)
+	{
+		System.arraycopy(stack, top, m, offset, MATRIX_SIZE);
+	}
+
+	/**
+	 * Multiplies the current matrix by the given one (current = current * m)
+	 */
+	public void multiply(float[] m, int offset)
+	{
+		Matrix.multiplyMM(scratch, 0, stack, top, m, offset);
+		System.arraycopy(scratch, 0, stack, top, MATRIX_SIZE);
+	}
+
+	public void translate(float x, float y, float z)
+	{
+		Matrix.translateM(stack, top, x, y, z); //works in place
+	}
+
+	public void scale(float x, float y, float z)
+	{
+		Matrix.scaleM(stack, top, x, y, z); //works in place
+	}
+
+	/**
+	 * Rotates the current matrix by the given angle (in degrees) around the given axis.
+	 * Works in place with Affine3, rather than through Matrix.rotateM's shared (synchronized) temporary array.
+	 */
+	public void rotate(float angle, float x, float y, float z)
+	{
+		Affine3.rotateM(stack, top, angle, x, y, z);
+	}
+}
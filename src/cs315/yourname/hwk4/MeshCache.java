@@ -0,0 +1,175 @@
+package cs315.yourname.hwk4;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.util.Log;
+
+/**
+ * An on-disk cache of generated meshes, so they don't have to be rebuilt every time the app starts.
+ * Meshes are stored in a compact binary format and loaded back by memory-mapping the file, which gives
+ * (direct) buffers that can be handed straight to a GpuMesh.
+ *
+ * The file format (all values little-endian):
+ * 	int magic ("RBMH"), int version, int vertex format id (see VertexFormat), int bytes per vertex,
+ * 	int vertex count, int index count, int bytes per index (0, 2 or 4),
+ * 	then the vertices (already encoded in the vertex format), then the raw indices.
+ * A file with the wrong magic, version, format or size is treated as a cache miss (and deleted).
+ */
+public class MeshCache
+{
+	public static final String TAG = "MeshCache";
+
+	public static final int MAGIC = 0x484D4252; //"RBMH" when read as little-endian bytes
+	public static final int VERSION = 2;
+	private static final int HEADER_SIZE = 7*4;
+	private static final String EXTENSION = ".mesh";
+
+	private final File directory;
+
+	/**
+	 * Creates a cache that keeps its files in the given directory (e.g., Context.getCacheDir())
+	 */
+	public MeshCache(File directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the file a mesh with the given name is cached in
+	 */
+	public File getFile(String name)
+	{
+		return new File(directory, name + EXTENSION);
+	}
+
+	/**
+	 * Loads the named mesh by memory-mapping its file.
+	 * @param format The vertex format the mesh should be in; a mesh cached in another format is thrown out
+	 * @return The mesh (not yet uploaded), or null if it isn't cached or the file is invalid
+	 */
+	public GpuMesh get(String name, VertexFormat format)
+	{
+		File file = getFile(name);
+		if(!file.exists())
+			return null;
+
+		if(ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN)
+			return null; //the mapped data can't be passed straight to GL; just regenerate instead
+
+		RandomAccessFile in = null;
+		try
+		{
+			in = new RandomAccessFile(file, "r");
+			FileChannel channel = in.getChannel();
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); //stays valid after the channel is closed
+			data.order(ByteOrder.LITTLE_ENDIAN);
+
+			if(data.remaining() < HEADER_SIZE || data.getInt() != MAGIC || data.getInt() != VERSION || data.getInt() != format.getId())
+				return invalid(file, "bad header");
+
+			int stride = data.getInt();
+			int vertexCount = data.getInt();
+			int indexCount = data.getInt();
+			int indexSize = data.getInt();
+			long vertexBytes = (long)vertexCount * stride;
+			long indexBytes = (long)indexCount * indexSize;
+			if(stride != format.getStride() || (indexSize != 0 && indexSize != 2 && indexSize != 4)
+					|| HEADER_SIZE + vertexBytes + indexBytes != channel.size())
+				return invalid(file, "bad counts");
+
+			data.limit(HEADER_SIZE + (int)vertexBytes);
+			ByteBuffer vertices = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+			Buffer indices = null;
+			if(indexSize != 0)
+			{
+				data.limit(data.capacity()).position(HEADER_SIZE + (int)vertexBytes);
+				ByteBuffer indexBytesBuffer = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+				indices = (indexSize == 2) ? indexBytesBuffer.asShortBuffer() : indexBytesBuffer.asIntBuffer();
+			}
+
+			return new GpuMesh(vertices, format, indices);
+		}
+		catch(IOException e)
+		{
+			Log.w(TAG, "Could not read cached mesh "+file, e);
+			return null;
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	/**
+	 * Writes the given mesh to the cache under the given name, encoded in the given vertex format.
+	 * @return Whether the mesh was written; a failure just means it will be regenerated next time
+	 */
+	public boolean put(String name, IndexedMesh mesh, VertexFormat format)
+	{
+		int[] indices = mesh.getIndices();
+		ByteBuffer vertices = format.encode(mesh.getVertices(), mesh.getFloatsPerVertex()); //in native order, which get() insists is little-endian
+		int indexSize = mesh.getVertexCount() <= GpuMesh.MAX_SHORT_INDEXED_VERTICES ? 2 : 4;
+
+		ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + vertices.capacity() + indices.length*indexSize).order(ByteOrder.LITTLE_ENDIAN);
+		data.putInt(MAGIC).putInt(VERSION).putInt(format.getId()).putInt(format.getStride());
+		data.putInt(mesh.getVertexCount()).putInt(indices.length).putInt(indexSize);
+		data.put(vertices);
+		if(indexSize == 2)
+			for(int i=0; i<indices.length; i++)
+				data.putShort((short)indices[i]);
+		else
+			data.asIntBuffer().put(indices);
+		data.position(0);
+
+		//write to a temporary file first, so a partly-written file is never mistaken for a cached mesh
+		File file = getFile(name);
+		File temp = new File(directory, name + EXTENSION + ".tmp");
+		FileOutputStream out = null;
+		try
+		{
+			out = new FileOutputStream(temp);
+			FileChannel channel = out.getChannel();
+			while(data.hasRemaining())
+				channel.write(data);
+			out.getFD().sync();
+		}
+		catch(IOException e)
+		{
+			Log.w(TAG, "Could not write cached mesh "+file, e);
+			temp.delete();
+			return false;
+		}
+		finally
+		{
+			close(out);
+		}
+		return temp.renameTo(file);
+	}
+
+	//logs and removes a cache file that can't be used
+	private GpuMesh invalid(File file, String reason)
+	{
+		Log.w(TAG, "Ignoring cached mesh "+file+": "+reason);
+		file.delete();
+		return null;
+	}
+
+	private static void close(Closeable c)
+	{
+		if(c != null)
+		{
+			try { c.close(); }
+			catch(IOException e) { Log.w(TAG, "Could not close "+c, e); }
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.GLES20;
+
+/**
+ * Holds the GpuMesh for each mesh id (e.g., ModelFactory.CUBE_MESH), so parts can look up what to draw by id.
+ * Call uploadAll() from onSurfaceCreated(); since that is also called after the EGL context is lost,
+ * this is where every buffer gets recreated.
+ */
+public class MeshRegistry
+{
+	public static final String TAG = "MeshRegistry";
+
+	private final GpuMesh[] meshes;
+
+	public MeshRegistry(int capacity)
+	{
+		meshes = new GpuMesh[capacity];
+	}
+
+	public void register(int meshId, GpuMesh mesh)
+	{
+		meshes[meshId] = mesh;
+	}
+
+	public GpuMesh get(int meshId)
+	{
+		return meshes[meshId];
+	}
+
+	/**
+	 * Uploads every registered mesh into a new GPU buffer (old handles are dead after a context loss)
+	 */
+	public void uploadAll(GlBackend gl)
+	{
+		for(int i=0; i<meshes.length; i++)
+			if(meshes[i] != null)
+				meshes[i].upload(gl);
+	}
+
+	/**
+	 * Unbinds any mesh buffer, so client-side vertex arrays can be used again
+	 */
+	public static void unbind(GlBackend gl)
+	{
+		gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+	}
+}
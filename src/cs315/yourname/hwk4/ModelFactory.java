@@ -1,6 +1,7 @@
 package cs315.yourname.hwk4;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 
 import android.util.Log;
 
@@ -19,8 +20,7 @@ public class ModelFactory
 	public ModelFactory()
 	{
 		cubeVertexNormalData = packCubeData();
-		sphereVertexDataRough = generateSphereVertices(1);
-		sphereVertexDataSmooth = generateSphereVertices(2);
+		spheres = new IndexedMesh[MAX_SPHERE_DETAIL+1]; //spheres are generated the first time each level is asked for
 	}
 	
 
@@ -74,22 +74,58 @@ public class ModelFactory
 		return cubeVertexNormalData;
 	}
 
-	//constants representing a "rough" or "smooth" sphere (rougher spheres have fewer triangles)
+	//mesh ids for the primitives the factory provides (used by the Skeleton to say what each part looks like)
+	public static final int CUBE_MESH = 0;
+	public static final int SPHERE_MESH = 1;
+	public static final int ROUGH_SPHERE_MESH = 2; //lower detail spheres, for parts that are small on screen
+	public static final int COARSE_SPHERE_MESH = 3;
+	public static final int MESH_COUNT = 4;
+
+	/**
+	 * Returns the radius of a sphere around the origin that holds each mesh, indexed by mesh id (for culling).
+	 * The cube has corners at (+-1, +-1, +-1); the spheres have radius 1.
+	 */
+	public static float[] getBoundingRadii()
+	{
+		final float[] radii = new float[MESH_COUNT];
+		radii[CUBE_MESH] = (float)Math.sqrt(3);
+		radii[SPHERE_MESH] = 1.0f;
+		radii[ROUGH_SPHERE_MESH] = 1.0f;
+		radii[COARSE_SPHERE_MESH] = 1.0f;
+		return radii;
+	}
+
+	//constants representing a "rough" or "smooth" sphere (rougher spheres have fewer triangles).
+	//Any detail level from 0 (the plain icosahedron, 20 triangles) to MAX_SPHERE_DETAIL can be used; each level has 4x the triangles of the last
+	public static final int COARSE_SPHERE = 0;
 	public static final int ROUGH_SPHERE = 1;
-	public static final int SMOOTH_SPHERE = 1;
+	public static final int SMOOTH_SPHERE = 2;
+	public static final int MAX_SPHERE_DETAIL = 6; //40,962 vertices; any more and the indices no longer fit in the unsigned shorts GLES 2.0 guarantees
+
+	/**
+	 * Returns the detail level of each of the sphere meshes, indexed by mesh id (-1 for meshes that aren't spheres).
+	 * SPHERE_MESH is a SMOOTH_SPHERE (320 triangles), ROUGH_SPHERE_MESH a ROUGH_SPHERE (80) and COARSE_SPHERE_MESH a COARSE_SPHERE (20).
+	 */
+	public static int[] getSphereDetailLevels()
+	{
+		final int[] levels = new int[MESH_COUNT];
+		Arrays.fill(levels, -1);
+		levels[SPHERE_MESH] = SMOOTH_SPHERE;
+		levels[ROUGH_SPHERE_MESH] = ROUGH_SPHERE;
+		levels[COARSE_SPHERE_MESH] = COARSE_SPHERE;
+		return levels;
+	}
 
 	/**
 	 * Returns an array representing the vertices of a unit sphere (a sphere with radius of 1).
 	 * This is an "icosphere", or a sphere based on an icosahedron (see http://goo.gl/bLLYbO).
-	 * @param detailLevel A constant (either ROUGH_SPHERE or SMOOTH_SPHERE) for how many triangles should be included. A ROUGH_SPHERE has around 80 triangles, a SMOOTH_SPHERE has about 1000
+	 * The triangles are written out in full (expanded from the indexed sphere on each call); prefer getIndexedSphere().
+	 * @param detailLevel How many times to subdivide the icosahedron (e.g., ROUGH_SPHERE or SMOOTH_SPHERE). A ROUGH_SPHERE has 80 triangles, a SMOOTH_SPHERE has 320
 	 * @return
 	 */
 	public float[] getSphereVertices(int detailLevel)
 	{
-		if(detailLevel == SMOOTH_SPHERE)
-			return sphereVertexDataSmooth;
-		else
-			return sphereVertexDataRough;
+		return getSpherePositions(detailLevel).toTriangleArray();
 	}
 
 	/**
@@ -98,31 +134,48 @@ public class ModelFactory
 	 * 	{ posX, posY, posZ, normalX, normalY, normalZ }
 	 * You can pass this single buffer to two different variables in a shader by specifying the stride (see example code).
 	 * This is an "icosphere", or a sphere based on an icosahedron (see http://goo.gl/bLLYbO).
-	 * @param detailLevel A constant (either ROUGH_SPHERE or SMOOTH_SPHERE) for how many triangles should be included. A ROUGH_SPHERE has around 80 triangles, a SMOOTH_SPHERE has about 1000
+	 * The triangles are written out in full; prefer getIndexedSphere().
+	 * @param detailLevel How many times to subdivide the icosahedron (e.g., ROUGH_SPHERE or SMOOTH_SPHERE). A ROUGH_SPHERE has 80 triangles, a SMOOTH_SPHERE has 320
 	 * @return
 	 */
 	public float[] getSphereData(int detailLevel)
 	{
-		//this method actually does the packing; unlike cube methods that use pre-packed variables.
-		float[] sphere;
-		if(detailLevel == SMOOTH_SPHERE) //which sphere are we packing
-			sphere = sphereVertexDataSmooth;
-		else
-			sphere = sphereVertexDataRough;
-
-		//pack (double) the sphere data!
-		final float[] packedData = new float[sphere.length*2];
-		int numVertices = sphere.length/3;
-		for(int p=0; p<numVertices; p++) //counting points
-		{
-			packedData[p*6+0] = sphere[p*3+0]; //might be cleaner way to write this loop, but works.
-			packedData[p*6+1] = sphere[p*3+1];
-			packedData[p*6+2] = sphere[p*3+2];
-			packedData[p*6+3] = sphere[p*3+0];
-			packedData[p*6+4] = sphere[p*3+1];
-			packedData[p*6+5] = sphere[p*3+2];
-		}
-		return packedData;
+		return getIndexedSphere(detailLevel).toTriangleArray();
+	}
+
+	/**
+	 * Returns an indexed unit sphere: each unique vertex is stored once, "packed" with the format
+	 * 	{ posX, posY, posZ, normalX, normalY, normalZ }
+	 * along with the indices of each triangle's 3 vertices. Draw it with glDrawElements.
+	 * @param detailLevel How many times to subdivide the icosahedron (e.g., ROUGH_SPHERE or SMOOTH_SPHERE); 20 * 4^detailLevel triangles.
+	 * @return
+	 */
+	public IndexedMesh getIndexedSphere(int detailLevel)
+	{
+		return getSpherePositions(detailLevel).withPositionsAsNormals(); //on a unit sphere the normal is the same as the position
+	}
+
+	/**
+	 * Returns an indexed unit sphere with only the positions { posX, posY, posZ } of each vertex (its normals are the same).
+	 * Half the size of getIndexedSphere(); store it in a VertexFormat that takes the normals from the positions, like VertexFormat.SPHERE.
+	 * The returned mesh is shared, so don't modify it.
+	 * @param detailLevel How many times to subdivide the icosahedron (e.g., ROUGH_SPHERE or SMOOTH_SPHERE); 20 * 4^detailLevel triangles.
+	 * @return
+	 */
+	public IndexedMesh getIndexedSpherePositions(int detailLevel)
+	{
+		return getSpherePositions(detailLevel);
+	}
+
+	//the (position-only) sphere for the given detail level, generated if this is the first time it was asked for
+	private IndexedMesh getSpherePositions(int detailLevel)
+	{
+		if(detailLevel < 0 || detailLevel > MAX_SPHERE_DETAIL)
+			throw new IllegalArgumentException("Sphere detail level must be between 0 and "+MAX_SPHERE_DETAIL+": "+detailLevel);
+
+		if(spheres[detailLevel] == null)
+			spheres[detailLevel] = generateIndexedSphere(detailLevel);
+		return spheres[detailLevel];
 	}
 
 	public float[] getCoordinateAxis()
@@ -132,8 +185,7 @@ public class ModelFactory
 	
 	//instance variables for the data (some are defined programmatically through methods called in the constructor)
 	private final float[] cubeVertexNormalData;
-	private final float[] sphereVertexDataRough;
-	private final float[] sphereVertexDataSmooth;
+	private final IndexedMesh[] spheres; //indexed by detail level
 	
 	private final float[] cubeVertexData = {
 		//front face
@@ -297,9 +349,9 @@ public class ModelFactory
 		return packedData;
 	}
 
-	//This method generates an icosphere (a sphere made from subdividing an icosahedron). Unit size.
+	//This method generates an indexed icosphere (a sphere made from subdividing an icosahedron). Unit size.
 	//Code adapted from the Red Book (http://www.glprogramming.com/red/chapter02.html#name8)
-	private float[] generateSphereVertices(int divisions)
+	private IndexedMesh generateIndexedSphere(int divisions)
 	{
 		final float X = .525731112119133606f; //coordinates to produce unit icosahedron
 		final float Z = .850650808352039932f;
@@ -318,84 +370,101 @@ public class ModelFactory
 				{6,1,10}, {9,0,11}, {9,11,2}, {9,2,5}, {7,2,11} 
 		};
 
-		ArrayList<float[]> sphereVertices = new ArrayList<float[]>(); //for easy aggregation, memory be damned
-		
+		IcosphereBuilder builder = new IcosphereBuilder(divisions);
+		for(int i = 0; i < icoData.length; i++)
+			builder.addVertex(icoData[i][0], icoData[i][1], icoData[i][2]);
+
 		//subdivide!
-		for (int i = 0; i < 20; i++) { //go through the icosahedron points
-			subdivide(icoData[icoIndices[i][0]],       
-					  icoData[icoIndices[i][1]],       
-					  icoData[icoIndices[i][2]],
-					  divisions, //depth of recursion
-					  sphereVertices);
+		for (int i = 0; i < 20; i++) { //go through the icosahedron faces
+			builder.subdivide(icoIndices[i][0], icoIndices[i][1], icoIndices[i][2], divisions);
 		}
 
-		//convert ArrayList of vertices into single array
-		float[][] svArray = sphereVertices.toArray(new float[0][0]); //sphereVerticesArray
-		int numVertices = svArray.length;
-		float[] sphereVertexCoords = new float[numVertices*3];//342*3];
-		int p = 0;
-		for(int i=0; i<numVertices; i++)
-		{
-			sphereVertexCoords[p] = svArray[i][2]; //also reversing order here, at the end
-			sphereVertexCoords[p+1] = svArray[i][1];
-			sphereVertexCoords[p+2] = svArray[i][0];
-			p += 3;
-		}
-		
-		//drawing the icosahedron (no subdivisions)
-		//		float[] sphereVertexCoords = new float[20*3*3];//342*3];
-		//		int p = 0; //where we are in the coords array
-		//		//convert from indexed to non-indexed!
-		//		for(int i=0; i<icoIndices.length; i++){
-		//			for(int j=0; j<icoIndices[i].length; j++)
-		//			{
-		//				float[] v = icoData[icoIndices[i][j]];
-		//
-		//				//this is "drawTriangle"
-		//				sphereVertexCoords[p+0] = v[2]; //indicies are clockwise; have to reverse
-		//				sphereVertexCoords[p+1] = v[1];
-		//				sphereVertexCoords[p+2] = v[0];
-		//				p += 3;
-		//			}
-		//		}
-
-		return sphereVertexCoords;
+		return builder.build();
 	}
 
-	//subdivides the given triangle with 3 new vertices)
-	//params are the 3 vertices of the triangle, depth of recursion, and growing list of final vertices
-	private void subdivide(float[] v1, float[] v2, float[] v3, int depth, ArrayList<float[]> vertices)
+	/**
+	 * Helper for generating an indexed icosphere. Every edge's midpoint is cached (keyed by the edge's two vertex indices),
+	 * so a vertex shared by several triangles is computed and stored only once.
+	 */
+	private static class IcosphereBuilder
 	{
-		if(depth == 0) //if at the bottom
+		private final float[] vertices;
+		private final int[] indices;
+		private int vertexCount;
+		private int indexCount;
+		private final HashMap<Long, Integer> midpoints; //edge -> index of its midpoint vertex
+		private final float[] midpoint = new float[3];
+
+		public IcosphereBuilder(int divisions)
+		{
+			int faces = 20 << (2*divisions); //each subdivision splits every triangle into 4
+			int numVertices = faces/2 + 2; //Euler's formula for a closed triangle mesh
+			vertices = new float[numVertices*3];
+			indices = new int[faces*3];
+			midpoints = new HashMap<Long, Integer>(numVertices*2);
+		}
+
+		public int addVertex(float x, float y, float z)
+		{
+			vertices[vertexCount*3+0] = x;
+			vertices[vertexCount*3+1] = y;
+			vertices[vertexCount*3+2] = z;
+			return vertexCount++;
+		}
+
+		//returns the index of the (normalized) midpoint of the edge between vertices a and b, creating it only the first time
+		private int midpoint(int a, int b)
+		{
+			Long edge = a < b ? ((long)a << 32) | b : ((long)b << 32) | a; //same key in either direction
+			Integer cached = midpoints.get(edge);
+			if(cached != null)
+				return cached;
+
+			for (int i = 0; i < 3; i++)
+				midpoint[i] = vertices[a*3+i]+vertices[b*3+i]; //find the middle vector of these guys (we will scale it back later)
+			normalize(midpoint); //scale down to fit our unit sphere
+
+			int index = addVertex(midpoint[0], midpoint[1], midpoint[2]);
+			midpoints.put(edge, index);
+			return index;
+		}
+
+		//subdivides the given triangle with 3 new (or cached) vertices
+		//params are the indices of the 3 vertices of the triangle and depth of recursion
+		public void subdivide(int v1, int v2, int v3, int depth)
 		{
-			//Log.d(TAG,"Adding 3 new vertices at #"+vertices.size());
-			vertices.add(v1);
-			vertices.add(v2);
-			vertices.add(v3);
-			return; //stop recursing
+			if(depth == 0) //if at the bottom
+			{
+				indices[indexCount++] = v1;
+				indices[indexCount++] = v2;
+				indices[indexCount++] = v3;
+				return; //stop recursing
+			}
+
+			int v12 = midpoint(v1, v2); //new vertices
+			int v23 = midpoint(v2, v3);
+			int v31 = midpoint(v3, v1);
+
+			subdivide(v1, v12, v31, depth-1); //subdvide and increment counter...
+			subdivide(v2, v23, v12, depth-1);
+			subdivide(v3, v31, v23, depth-1);
+			subdivide(v12, v23, v31, depth-1);
 		}
 
-		float[] v12 = new float[3]; //new vertices
-		float[] v23 = new float[3];
-		float[] v31 = new float[3];
-
-		for (int i = 0; i < 3; i++) { 
-			v12[i] = v1[i]+v2[i]; //find the middle vector of these guys (we will scale it back later)
-			v23[i] = v2[i]+v3[i];
-			v31[i] = v3[i]+v1[i];
-		} 		
-
-		normalize(v12); //scale down to fit our unit sphere
-		normalize(v23); 
-		normalize(v31);
-		subdivide(v1, v12, v31, depth-1, vertices); //subdvide and increment counter...
-		subdivide(v2, v23, v12, depth-1, vertices);
-		subdivide(v3, v31, v23, depth-1, vertices);
-		subdivide(v12, v23, v31, depth-1, vertices);
+		public IndexedMesh build()
+		{
+			for(int p = 0; p < vertexCount*3; p += 3) //reversing order here, at the end, since the indices are clockwise
+			{
+				float x = vertices[p];
+				vertices[p] = vertices[p+2];
+				vertices[p+2] = x;
+			}
+			return new IndexedMesh(vertices, 3, indices);
+		}
 	}
 
 	//performs and in-place normalization of the given vec3
-	private void normalize(float[] v) 
+	private static void normalize(float[] v) 
 	{    
 		double d = Math.sqrt(v[0]*v[0] + v[1]*v[1] + v[2]*v[2]);
 		if (d == 0.0) {
@@ -0,0 +1,170 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.Matrix;
+
+/**
+ * Draws a whole skeleton with a single draw call ("matrix palette skinning"). Every part's mesh is merged into one static
+ * mesh up front, with each vertex knowing which joint it belongs to. Each frame, the modelview matrix and color of every
+ * joint are uploaded as uniform arrays (the "palette"), and the vertex shader picks its joint's entries.
+ *
+ * Parts that are culled get an all-zero matrix, which collapses their triangles to nothing.
+ *
+ * Usage (on the GL thread): onSurfaceCreated() once per context, then draw() each robot.
+ */
+public class PaletteSkinner
+{
+	public static final String TAG = "PaletteSkinner";
+
+	//matrix (4 vec4s) + color (1 vec4) per joint = 100 vec4s, plus the projection, of the 128 GLES 2.0 guarantees
+	public static final int MAX_JOINTS = 20;
+
+	private static final int MATRIX_SIZE = 16;
+
+	//the vertex shader; same lighting as the regular per-vertex shader, but reading each joint's data from uniform arrays
+	private static final String skinnedVertexShaderCode =
+			"uniform mat4 uProjectionMatrix;" +			// The projection matrix, shared by every joint
+			"uniform mat4 uMVMatrix[" + MAX_JOINTS + "];" +	// The modelview matrix of each joint
+			"uniform vec4 uColor[" + MAX_JOINTS + "];" +		// The color of each joint
+			"attribute vec4 aPosition;" +				// Per-vertex position information we will pass in
+			"attribute vec3 aNormal;" +					// Per-vertex normal information we will pass in.
+			"attribute float aJoint;" +					// Which joint this vertex belongs to
+			"varying vec4 vColor;"  + 					//out : the ultimate color of the vertex
+			"vec3 lightPos = vec3(0.0,0.0,3.0);" + //the position of the light
+			"void main() {" +
+			"  int joint = int(aJoint);" +
+			"  mat4 mv = uMVMatrix[joint];" +
+			"  vec3 modelViewVertex = vec3(mv * aPosition);" + 					//position modified by modelview
+			"  vec3 modelViewNormal = normalize(vec3(mv * vec4(aNormal, 0.0)));" +	//normal modified by modelview
+			"  vec3 lightVector = normalize(lightPos - modelViewVertex);" +		//the normalized vector between the light and the vertex
+			"  float diffuse = max(dot(modelViewNormal, lightVector), 0.1);" +	//the amount of diffuse light to give (based on angle between light and normal)
+			"  vColor = uColor[joint] * diffuse;"+ 								//scale the color by the light factor and set to output
+			"  gl_Position = uProjectionMatrix * vec4(modelViewVertex, 1.0);" +
+			"}";
+
+	private static final String fragmentShaderCode =
+			"precision mediump float;" + 	//don't need high precision
+			"varying vec4 vColor;" + 		//color for the fragment; this was output from the vertexShader
+			"void main() {" +
+			"  gl_FragColor = vColor;" + 	//gl_fragColor is built-in variable for color of fragment
+			"}";
+
+	private static final String[] UNIFORMS = {"uProjectionMatrix", "uMVMatrix", "uColor"};
+	private static final String[] ATTRIBUTES = {"aPosition", "aNormal", "aJoint"};
+
+	private final GlBackend gl;
+	private final ProgramCache programs;
+	private final ProgramCache.Program program;
+	private final GpuMesh mesh; //every part, merged
+	private final int jointCount;
+	private final float[] palette; //the modelview matrix of each joint
+
+	//OpenGL handles
+	private int programHandle;
+	private int projectionMatrixHandle;
+	private int mvMatrixHandle;
+	private int colorHandle;
+	private int positionHandle;
+	private int normalHandle;
+	private int jointHandle;
+
+	/**
+	 * Merges the meshes of every joint of the given skeleton into one
+	 * @param programs Where to get the skinning shader program from
+	 * @param sourceMeshes The mesh for each mesh id, packed as { posX, posY, posZ, normalX, normalY, normalZ }
+	 * @param format How to store the merged vertices (joint indices are added to it)
+	 */
+	public PaletteSkinner(GlBackend gl, ProgramCache programs, Skeleton skeleton, IndexedMesh[] sourceMeshes, VertexFormat format)
+	{
+		jointCount = skeleton.getJointCount();
+		if(jointCount > MAX_JOINTS)
+			throw new IllegalArgumentException("Can only skin up to "+MAX_JOINTS+" joints: "+jointCount);
+
+		this.gl = gl;
+		this.programs = programs;
+		program = addProgram(programs);
+		palette = new float[jointCount*MATRIX_SIZE];
+
+		IndexedMesh[] parts = new IndexedMesh[jointCount]; //each joint's mesh, in joint order so the part index is the joint index
+		for(int j=0; j<jointCount; j++)
+		{
+			int meshId = skeleton.getMeshId(j);
+			if(meshId != Skeleton.NO_MESH)
+				parts[j] = sourceMeshes[meshId];
+		}
+		mesh = new GpuMesh(IndexedMesh.combine(parts), format.withInstanceIds());
+	}
+
+	/**
+	 * Registers the skinning shader program with the given cache (so it can be built while loading, before any skinner exists)
+	 */
+	public static ProgramCache.Program addProgram(ProgramCache programs)
+	{
+		return programs.add(skinnedVertexShaderCode, fragmentShaderCode, UNIFORMS, ATTRIBUTES);
+	}
+
+	/**
+	 * Gets the skinning shader (building it, if the cache hasn't yet) and uploads the merged mesh; call from
+	 * onSurfaceCreated() (i.e., again after a context loss), after the program cache has been invalidated
+	 */
+	public void onSurfaceCreated()
+	{
+		programs.build(program);
+		programHandle = program.getHandle();
+
+		projectionMatrixHandle = program.getUniformLocation("uProjectionMatrix");
+		mvMatrixHandle = program.getUniformLocation("uMVMatrix");
+		colorHandle = program.getUniformLocation("uColor");
+		positionHandle = program.getAttributeLocation("aPosition");
+		normalHandle = program.getAttributeLocation("aNormal");
+		jointHandle = program.getAttributeLocation("aJoint");
+
+		mesh.upload(gl);
+	}
+
+	/**
+	 * Returns the merged mesh (all of the skeleton's parts)
+	 */
+	public GpuMesh getMesh()
+	{
+		return mesh;
+	}
+
+	/**
+	 * Draws one robot with a single call (switches to the skinning shader program)
+	 * @param models The model transform of each joint (16 floats each), starting at modelOffset
+	 * @param visible Whether each joint's mesh is in view (starting at visibleOffset), or null to draw them all
+	 * @param colors The color of each joint (4 floats each)
+	 * @return Whether anything was drawn (nothing is if every part is culled)
+	 */
+	public boolean draw(float[] viewMatrix, float[] projectionMatrix, float[] models, int modelOffset, boolean[] visible, int visibleOffset,
+			float[] colors)
+	{
+		boolean any = false;
+		for(int j=0; j<jointCount; j++)
+		{
+			if(visible == null || visible[visibleOffset + j])
+			{
+				Matrix.multiplyMM(palette, j*MATRIX_SIZE, viewMatrix, 0, models, modelOffset + j*MATRIX_SIZE); //"M * V"
+				any = true;
+			}
+			else
+			{
+				for(int i=0; i<MATRIX_SIZE; i++)
+					palette[j*MATRIX_SIZE + i] = 0; //squashes the part to a point, so it draws nothing
+			}
+		}
+		if(!any)
+			return false;
+
+		gl.glUseProgram(programHandle);
+		gl.glUniformMatrix4fv(projectionMatrixHandle, 1, false, projectionMatrix, 0);
+		gl.glUniformMatrix4fv(mvMatrixHandle, jointCount, false, palette, 0);
+		gl.glUniform4fv(colorHandle, jointCount, colors, 0);
+
+		mesh.bind(gl, positionHandle, normalHandle);
+		mesh.bindInstanceIds(gl, jointHandle); //the "instance" of each vertex is its joint
+		mesh.draw(gl);
+		gl.glDisableVertexAttribArray(jointHandle); //so other programs don't read joint ids from a stale buffer
+		return true;
+	}
+}
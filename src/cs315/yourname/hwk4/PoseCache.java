@@ -0,0 +1,112 @@
+package cs315.yourname.hwk4;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.util.Log;
+
+/**
+ * Keeps baked clips around so they only have to be baked once, up to a memory limit.
+ * Clips are looked up by clip, skeleton and rate; when the cache is full, the clips used least recently are dropped.
+ */
+public class PoseCache
+{
+	public static final String TAG = "PoseCache";
+
+	private final long maxBytes;
+	private long bytes; //how much the cached clips take up
+	private final LinkedHashMap<Key, BakedClip> baked = new LinkedHashMap<Key, BakedClip>(16, 0.75f, true); //in order of use
+
+	/**
+	 * @param maxBytes How much memory the baked clips may take up in total
+	 */
+	public PoseCache(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the given clip baked at the given rate, baking it if needed.
+	 * Returns null if the baked clip would be bigger than the whole cache.
+	 */
+	public synchronized BakedClip get(AnimationClip clip, Skeleton skeleton, float rate)
+	{
+		Key key = new Key(clip, skeleton, rate);
+		BakedClip result = baked.get(key);
+		if(result != null)
+			return result;
+
+		long size = BakedClip.getSizeInBytes(clip, skeleton, rate);
+		if(size > maxBytes)
+		{
+			Log.w(TAG, "Clip "+clip.getName()+" is too big to bake at "+rate+" Hz ("+size+" bytes)");
+			return null;
+		}
+
+		//make room, starting with the clips used longest ago
+		Iterator<BakedClip> eldest = baked.values().iterator();
+		while(bytes + size > maxBytes)
+		{
+			bytes -= eldest.next().getSizeInBytes();
+			eldest.remove();
+		}
+
+		result = new BakedClip(clip, skeleton, rate);
+		baked.put(key, result);
+		bytes += size;
+		return result;
+	}
+
+	/**
+	 * Drops every baked clip
+	 */
+	public synchronized void clear()
+	{
+		baked.clear();
+		bytes = 0;
+	}
+
+	public synchronized int size()
+	{
+		return baked.size();
+	}
+
+	/**
+	 * Returns how much memory the cached clips take up, in bytes
+	 */
+	public synchronized long getSizeInBytes()
+	{
+		return bytes;
+	}
+
+	//what a baked clip is looked up by; clips and skeletons are compared by identity
+	private static class Key
+	{
+		private final AnimationClip clip;
+		private final Skeleton skeleton;
+		private final float rate;
+
+		public Key(AnimationClip clip, Skeleton skeleton, float rate)
+		{
+			this.clip = clip;
+			this.skeleton = skeleton;
+			this.rate = rate;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof Key))
+				return false;
+			Key other = (Key)o;
+			return clip == other.clip && skeleton == other.skeleton && Float.floatToIntBits(rate) == Float.floatToIntBits(other.rate);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (System.identityHashCode(clip)*31 + System.identityHashCode(skeleton))*31 + Float.floatToIntBits(rate);
+		}
+	}
+}
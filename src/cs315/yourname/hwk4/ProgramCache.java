@@ -0,0 +1,314 @@
+package cs315.yourname.hwk4;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * Owns the shader programs, so each is only compiled once per context. Programs are registered by their source code
+ * (looked up by the sources' hashes), along with the names of their uniforms and attributes; once linked, a program
+ * knows all of its locations, so nothing is looked up by name while drawing. A shader used by several programs
+ * (like a shared fragment shader) is only compiled once.
+ *
+ * Register every program up front and call warmUp() while loading (e.g., from onSurfaceCreated()), so no shader is
+ * compiled in the middle of an animation. Call invalidate() first whenever there is a new context, since every handle
+ * dies with the old one. Compile and link times are kept for reporting.
+ */
+public class ProgramCache
+{
+	public static final String TAG = "ProgramCache";
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	/**
+	 * A registered program and, once it is built, its handle and locations
+	 */
+	public static class Program
+	{
+		private final String vertexSource;
+		private final String fragmentSource;
+		private final String[] uniforms;
+		private final String[] attributes;
+
+		private int handle; //0 until built (in the current context)
+		private final int[] uniformLocations;
+		private final int[] attributeLocations;
+
+		private Program(String vertexSource, String fragmentSource, String[] uniforms, String[] attributes)
+		{
+			this.vertexSource = vertexSource;
+			this.fragmentSource = fragmentSource;
+			this.uniforms = uniforms.clone();
+			this.attributes = attributes.clone();
+			uniformLocations = new int[uniforms.length];
+			attributeLocations = new int[attributes.length];
+		}
+
+		/**
+		 * Returns whether the program has been built in the current context
+		 */
+		public boolean isBuilt()
+		{
+			return handle != 0;
+		}
+
+		/**
+		 * Returns the program's handle (only once it is built)
+		 */
+		public int getHandle()
+		{
+			checkBuilt();
+			return handle;
+		}
+
+		/**
+		 * Returns the location of one of the uniforms the program was registered with
+		 */
+		public int getUniformLocation(String name)
+		{
+			checkBuilt();
+			return uniformLocations[indexOf(uniforms, name, "uniform")];
+		}
+
+		/**
+		 * Returns the location of one of the attributes the program was registered with
+		 */
+		public int getAttributeLocation(String name)
+		{
+			checkBuilt();
+			return attributeLocations[indexOf(attributes, name, "attribute")];
+		}
+
+		private void checkBuilt()
+		{
+			if(handle == 0)
+				throw new IllegalStateException("Program has not been built in this context");
+		}
+
+		private static int indexOf(String[] names, String name, String kind)
+		{
+			for(int i=0; i<names.length; i++)
+				if(names[i].equals(name))
+					return i;
+			throw new IllegalArgumentException("Program was not registered with the "+kind+" "+name);
+		}
+	}
+
+	private final GlBackend gl;
+	private final HashMap<Key, Program> programs = new HashMap<Key, Program>();
+	private final ArrayList<Program> order = new ArrayList<Program>(); //in the order they were registered, for warmUp()
+	private final HashMap<ShaderKey, Integer> shaders = new HashMap<ShaderKey, Integer>(); //compiled in the current context
+
+	//timing
+	private int compileCount;
+	private long compileNanos;
+	private int linkCount;
+	private long linkNanos;
+
+	public ProgramCache(GlBackend gl)
+	{
+		this.gl = gl;
+	}
+
+	/**
+	 * Registers a program (if it wasn't already) and returns it; it isn't built until build() or warmUp() is called.
+	 * Registering the same sources again returns the same program.
+	 * @param uniforms The names of the uniforms to look up once it is linked
+	 * @param attributes The names of the attributes to look up once it is linked
+	 */
+	public Program add(String vertexSource, String fragmentSource, String[] uniforms, String[] attributes)
+	{
+		Key key = new Key(vertexSource, fragmentSource);
+		Program program = programs.get(key);
+		if(program == null)
+		{
+			program = new Program(vertexSource, fragmentSource, uniforms, attributes);
+			programs.put(key, program);
+			order.add(program);
+		}
+		return program;
+	}
+
+	/**
+	 * Compiles and links every registered program that isn't built yet. Call while loading, on the GL thread.
+	 */
+	public void warmUp()
+	{
+		long start = System.nanoTime();
+		int built = 0;
+		for(int i=0; i<order.size(); i++)
+		{
+			if(!order.get(i).isBuilt())
+			{
+				build(order.get(i));
+				built++;
+			}
+		}
+		if(built > 0)
+			Log.i(TAG, "Built "+built+" programs in "+millis(System.nanoTime() - start)+" ms ("+getSummary()+")");
+	}
+
+	/**
+	 * Compiles (reusing already compiled shaders) and links the given program, if it isn't built yet; on the GL thread
+	 */
+	public void build(Program program)
+	{
+		if(program.isBuilt())
+			return;
+
+		int vertexShader = getShader(GLES20.GL_VERTEX_SHADER, program.vertexSource);
+		int fragmentShader = getShader(GLES20.GL_FRAGMENT_SHADER, program.fragmentSource);
+
+		long start = System.nanoTime();
+		int handle = GLUtilities.createAndLinkProgram(gl, vertexShader, fragmentShader);
+		for(int i=0; i<program.uniforms.length; i++)
+			program.uniformLocations[i] = gl.glGetUniformLocation(handle, program.uniforms[i]);
+		for(int i=0; i<program.attributes.length; i++)
+			program.attributeLocations[i] = gl.glGetAttribLocation(handle, program.attributes[i]);
+		linkNanos += System.nanoTime() - start;
+		linkCount++;
+		program.handle = handle;
+	}
+
+	//returns the compiled shader for the given source, compiling it the first time
+	private int getShader(int type, String source)
+	{
+		ShaderKey key = new ShaderKey(type, source);
+		Integer shader = shaders.get(key);
+		if(shader != null)
+			return shader;
+
+		long start = System.nanoTime();
+		int handle = GLUtilities.compileShader(gl, type, source);
+		compileNanos += System.nanoTime() - start;
+		compileCount++;
+		shaders.put(key, handle);
+		return handle;
+	}
+
+	/**
+	 * Forgets every handle, since they died with the old context (the programs stay registered, to be built again).
+	 * Call whenever a new context is created, before warmUp().
+	 */
+	public void invalidate()
+	{
+		for(int i=0; i<order.size(); i++)
+			order.get(i).handle = 0;
+		shaders.clear();
+	}
+
+	/**
+	 * Deletes every program and shader (only while their context is still current)
+	 */
+	public void release()
+	{
+		for(int i=0; i<order.size(); i++)
+		{
+			Program program = order.get(i);
+			if(program.isBuilt())
+				gl.glDeleteProgram(program.handle);
+			program.handle = 0;
+		}
+		for(Integer shader : shaders.values())
+			gl.glDeleteShader(shader);
+		shaders.clear();
+	}
+
+	public int getCompileCount()
+	{
+		return compileCount;
+	}
+
+	/**
+	 * Returns the total time spent compiling shaders, in nanoseconds
+	 */
+	public long getCompileNanos()
+	{
+		return compileNanos;
+	}
+
+	public int getLinkCount()
+	{
+		return linkCount;
+	}
+
+	/**
+	 * Returns the total time spent linking programs (and looking up their locations), in nanoseconds
+	 */
+	public long getLinkNanos()
+	{
+		return linkNanos;
+	}
+
+	/**
+	 * Returns the compile and link times so far, like "3 compiles in 12.5 ms, 2 links in 4.0 ms"
+	 */
+	public String getSummary()
+	{
+		return compileCount+" compiles in "+millis(compileNanos)+" ms, "+linkCount+" links in "+millis(linkNanos)+" ms";
+	}
+
+	private static String millis(long nanos)
+	{
+		return String.format(Locale.US, "%.1f", nanos/(double)NANOS_PER_MILLI);
+	}
+
+	//what a program is looked up by: its sources (by hash, then compared in full)
+	private static class Key
+	{
+		private final String vertexSource;
+		private final String fragmentSource;
+
+		public Key(String vertexSource, String fragmentSource)
+		{
+			this.vertexSource = vertexSource;
+			this.fragmentSource = fragmentSource;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof Key))
+				return false;
+			Key other = (Key)o;
+			return vertexSource.equals(other.vertexSource) && fragmentSource.equals(other.fragmentSource);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return vertexSource.hashCode()*31 + fragmentSource.hashCode(); //strings cache their hashes
+		}
+	}
+
+	//what a compiled shader is looked up by
+	private static class ShaderKey
+	{
+		private final int type;
+		private final String source;
+
+		public ShaderKey(int type, String source)
+		{
+			this.type = type;
+			this.source = source;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof ShaderKey))
+				return false;
+			ShaderKey other = (ShaderKey)o;
+			return type == other.type && source.equals(other.source);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return source.hashCode()*31 + type;
+		}
+	}
+}
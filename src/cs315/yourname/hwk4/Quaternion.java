@@ -0,0 +1,134 @@
+package cs315.yourname.hwk4;
+
+/**
+ * Math for rotations stored as unit quaternions: 4 floats { x, y, z, w } in the caller's arrays. Unlike rotation matrices,
+ * two quaternions can be blended smoothly (for crossfading and layering animations), and they are a quarter the size.
+ *
+ * Like Affine3, everything works in place on the caller's arrays and nothing is shared between calls, so any number of
+ * threads can use it at once, and nothing is allocated.
+ */
+public final class Quaternion
+{
+	public static final String TAG = "Quaternion";
+
+	public static final int SIZE = 4; //floats in a quaternion
+
+	private static final float SLERP_THRESHOLD = 0.9995f; //closer than this, slerp falls back to nlerp (sin(theta) is tiny)
+
+	private Quaternion()
+	{
+		//just static methods
+	}
+
+	/**
+	 * Sets the quaternion to the identity (no rotation)
+	 */
+	public static void setIdentity(float[] q, int offset)
+	{
+		q[offset] = 0;
+		q[offset+1] = 0;
+		q[offset+2] = 0;
+		q[offset+3] = 1.0f;
+	}
+
+	/**
+	 * Rotates the quaternion by the given angle (in degrees) around the given unit axis, after whatever rotation it already
+	 * has (q = q * r, like Matrix.rotateM(), so several rotations combine in the same order)
+	 */
+	public static void rotate(float[] q, int offset, float angle, float x, float y, float z)
+	{
+		float half = angle * (float)(Math.PI / 360.0);
+		float s = (float)Math.sin(half);
+		float bx = x*s, by = y*s, bz = z*s, bw = (float)Math.cos(half);
+
+		float ax = q[offset], ay = q[offset+1], az = q[offset+2], aw = q[offset+3];
+		q[offset] = aw*bx + ax*bw + ay*bz - az*by;
+		q[offset+1] = aw*by - ax*bz + ay*bw + az*bx;
+		q[offset+2] = aw*bz + ax*by - ay*bx + az*bw;
+		q[offset+3] = aw*bw - ax*bx - ay*by - az*bz;
+	}
+
+	/**
+	 * Blends a toward b by t (0 leaves a, 1 gives b) by interpolating linearly and renormalizing, the result going into a.
+	 * Cheap, and close to slerp for the small angles between neighbouring poses, though not at a constant speed.
+	 */
+	public static void nlerp(float[] a, int aOffset, float[] b, int bOffset, float t)
+	{
+		float bx = b[bOffset], by = b[bOffset+1], bz = b[bOffset+2], bw = b[bOffset+3];
+		float ax = a[aOffset], ay = a[aOffset+1], az = a[aOffset+2], aw = a[aOffset+3];
+		float tb = (ax*bx + ay*by + az*bz + aw*bw < 0) ? -t : t; //q and -q are the same rotation; take the short way around
+		float ta = 1.0f - t;
+		set(a, aOffset, ax*ta + bx*tb, ay*ta + by*tb, az*ta + bz*tb, aw*ta + bw*tb);
+	}
+
+	/**
+	 * Blends a toward b by t (0 leaves a, 1 gives b) along the shortest arc at a constant speed, the result going into a
+	 */
+	public static void slerp(float[] a, int aOffset, float[] b, int bOffset, float t)
+	{
+		float bx = b[bOffset], by = b[bOffset+1], bz = b[bOffset+2], bw = b[bOffset+3];
+		float ax = a[aOffset], ay = a[aOffset+1], az = a[aOffset+2], aw = a[aOffset+3];
+		float dot = ax*bx + ay*by + az*bz + aw*bw;
+		float sign = 1.0f;
+		if(dot < 0) //take the short way around
+		{
+			dot = -dot;
+			sign = -1.0f;
+		}
+
+		float ta, tb;
+		if(dot > SLERP_THRESHOLD)
+		{
+			ta = 1.0f - t;
+			tb = t;
+		}
+		else
+		{
+			float theta = (float)Math.acos(dot);
+			float recip = 1.0f / (float)Math.sin(theta);
+			ta = (float)Math.sin((1.0f - t)*theta) * recip;
+			tb = (float)Math.sin(t*theta) * recip;
+		}
+		tb *= sign;
+		set(a, aOffset, ax*ta + bx*tb, ay*ta + by*tb, az*ta + bz*tb, aw*ta + bw*tb);
+	}
+
+	//stores the quaternion, normalized
+	private static void set(float[] q, int offset, float x, float y, float z, float w)
+	{
+		float length = (float)Math.sqrt(x*x + y*y + z*z + w*w);
+		float recip = (length > 0) ? 1.0f / length : 0;
+		q[offset] = x*recip;
+		q[offset+1] = y*recip;
+		q[offset+2] = z*recip;
+		q[offset+3] = w*recip;
+	}
+
+	/**
+	 * Writes the rotation as a 4x4 matrix (column-major, like android.opengl.Matrix)
+	 */
+	public static void toMatrix(float[] m, int mOffset, float[] q, int offset)
+	{
+		float x = q[offset], y = q[offset+1], z = q[offset+2], w = q[offset+3];
+		float xx = x*x, yy = y*y, zz = z*z;
+		float xy = x*y, xz = x*z, yz = y*z;
+		float wx = w*x, wy = w*y, wz = w*z;
+
+		m[mOffset] = 1.0f - 2.0f*(yy + zz);
+		m[mOffset+1] = 2.0f*(xy + wz);
+		m[mOffset+2] = 2.0f*(xz - wy);
+		m[mOffset+3] = 0;
+		m[mOffset+4] = 2.0f*(xy - wz);
+		m[mOffset+5] = 1.0f - 2.0f*(xx + zz);
+		m[mOffset+6] = 2.0f*(yz + wx);
+		m[mOffset+7] = 0;
+		m[mOffset+8] = 2.0f*(xz + wy);
+		m[mOffset+9] = 2.0f*(yz - wx);
+		m[mOffset+10] = 1.0f - 2.0f*(xx + yy);
+		m[mOffset+11] = 0;
+		m[mOffset+12] = 0;
+		m[mOffset+13] = 0;
+		m[mOffset+14] = 0;
+		m[mOffset+15] = 1.0f;
+	}
+}
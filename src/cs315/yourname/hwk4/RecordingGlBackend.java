@@ -0,0 +1,391 @@
+package cs315.yourname.hwk4;
+
+import java.nio.Buffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import android.opengl.GLES20;
+
+/**
+ * A GlBackend with no GPU behind it: it just records which calls were made, so the render path can be run (and timed,
+ * and its draw calls counted) off-device.
+ * The log is one int (the command) per call; it is kept between clear()s without allocating once it has grown big enough.
+ * Shaders always compile, programs always link, and every created object gets a new, non-zero handle.
+ */
+public class RecordingGlBackend implements GlBackend
+{
+	public static final String TAG = "RecordingGlBackend";
+
+	//the commands
+	public static final int ENABLE = 0;
+	public static final int DEPTH_FUNC = 1;
+	public static final int CLEAR_COLOR = 2;
+	public static final int CLEAR = 3;
+	public static final int VIEWPORT = 4;
+	public static final int CREATE_SHADER = 5;
+	public static final int SHADER_SOURCE = 6;
+	public static final int COMPILE_SHADER = 7;
+	public static final int GET_SHADERIV = 8;
+	public static final int GET_SHADER_INFO_LOG = 9;
+	public static final int DELETE_SHADER = 10;
+	public static final int CREATE_PROGRAM = 11;
+	public static final int ATTACH_SHADER = 12;
+	public static final int LINK_PROGRAM = 13;
+	public static final int GET_PROGRAMIV = 14;
+	public static final int GET_PROGRAM_INFO_LOG = 15;
+	public static final int DELETE_PROGRAM = 16;
+	public static final int USE_PROGRAM = 17;
+	public static final int GET_UNIFORM_LOCATION = 18;
+	public static final int GET_ATTRIB_LOCATION = 19;
+	public static final int UNIFORM_MATRIX4FV = 20;
+	public static final int UNIFORM4FV = 21;
+	public static final int VERTEX_ATTRIB3FV = 22;
+	public static final int VERTEX_ATTRIB4FV = 23;
+	public static final int GEN_BUFFERS = 24;
+	public static final int BIND_BUFFER = 25;
+	public static final int BUFFER_DATA = 26;
+	public static final int DELETE_BUFFERS = 27;
+	public static final int VERTEX_ATTRIB_POINTER = 28;
+	public static final int ENABLE_VERTEX_ATTRIB_ARRAY = 29;
+	public static final int DISABLE_VERTEX_ATTRIB_ARRAY = 30;
+	public static final int DRAW_ARRAYS = 31;
+	public static final int DRAW_ELEMENTS = 32;
+	public static final int GET_ERROR = 33;
+	public static final int COMMAND_COUNT = 34;
+
+	private static final String[] NAMES = {
+		"ENABLE", "DEPTH_FUNC", "CLEAR_COLOR", "CLEAR", "VIEWPORT", "CREATE_SHADER", "SHADER_SOURCE", "COMPILE_SHADER",
+		"GET_SHADERIV", "GET_SHADER_INFO_LOG", "DELETE_SHADER", "CREATE_PROGRAM", "ATTACH_SHADER", "LINK_PROGRAM", "GET_PROGRAMIV", "GET_PROGRAM_INFO_LOG",
+		"DELETE_PROGRAM", "USE_PROGRAM", "GET_UNIFORM_LOCATION", "GET_ATTRIB_LOCATION", "UNIFORM_MATRIX4FV", "UNIFORM4FV", "VERTEX_ATTRIB3FV", "VERTEX_ATTRIB4FV",
+		"GEN_BUFFERS", "BIND_BUFFER", "BUFFER_DATA", "DELETE_BUFFERS", "VERTEX_ATTRIB_POINTER", "ENABLE_VERTEX_ATTRIB_ARRAY", "DISABLE_VERTEX_ATTRIB_ARRAY", "DRAW_ARRAYS",
+		"DRAW_ELEMENTS", "GET_ERROR",
+	};
+
+	private int[] log = new int[1024]; //the commands, in the order they were made
+	private int logSize;
+	private final int[] counts = new int[COMMAND_COUNT]; //how many times each command was made
+	private long elements; //how many vertices (or indices) were drawn
+
+	private int nextHandle = 1;
+	private final HashMap<String, Integer> locations = new HashMap<String, Integer>(); //by program and name
+
+	/**
+	 * Forgets every recorded call (but not the handles handed out)
+	 */
+	public void clear()
+	{
+		logSize = 0;
+		Arrays.fill(counts, 0);
+		elements = 0;
+	}
+
+	/**
+	 * Returns how many calls were recorded
+	 */
+	public int getCommandCount()
+	{
+		return logSize;
+	}
+
+	/**
+	 * Returns the i-th recorded call (one of the command constants)
+	 */
+	public int getCommand(int i)
+	{
+		if(i < 0 || i >= logSize)
+			throw new IndexOutOfBoundsException("Command "+i+" of "+logSize);
+		return log[i];
+	}
+
+	/**
+	 * Returns how many times the given command was called
+	 */
+	public int getCount(int command)
+	{
+		return counts[command];
+	}
+
+	/**
+	 * Returns how many draw calls (of either kind) were made
+	 */
+	public int getDrawCallCount()
+	{
+		return counts[DRAW_ARRAYS] + counts[DRAW_ELEMENTS];
+	}
+
+	/**
+	 * Returns how many vertices (or indices) were drawn in total
+	 */
+	public long getElementCount()
+	{
+		return elements;
+	}
+
+	public static String getName(int command)
+	{
+		return NAMES[command];
+	}
+
+	/**
+	 * Lists how many times each command was made, like "DRAW_ELEMENTS=40 UNIFORM_MATRIX4FV=80"
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder();
+		for(int c=0; c<COMMAND_COUNT; c++)
+		{
+			if(counts[c] == 0)
+				continue;
+			if(builder.length() > 0)
+				builder.append(' ');
+			builder.append(NAMES[c]).append('=').append(counts[c]);
+		}
+		return builder.toString();
+	}
+
+	//adds a call to the log
+	private void record(int command)
+	{
+		if(logSize == log.length)
+			log = Arrays.copyOf(log, logSize*2);
+		log[logSize++] = command;
+		counts[command]++;
+	}
+
+	//returns the same location every time a program asks for the same name
+	private int location(int program, String name)
+	{
+		String key = program+"/"+name;
+		Integer location = locations.get(key);
+		if(location == null)
+		{
+			location = locations.size();
+			locations.put(key, location);
+		}
+		return location;
+	}
+
+	@Override
+	public void glEnable(int cap)
+	{
+		record(ENABLE);
+	}
+
+	@Override
+	public void glDepthFunc(int func)
+	{
+		record(DEPTH_FUNC);
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha)
+	{
+		record(CLEAR_COLOR);
+	}
+
+	@Override
+	public void glClear(int mask)
+	{
+		record(CLEAR);
+	}
+
+	@Override
+	public void glViewport(int x, int y, int width, int height)
+	{
+		record(VIEWPORT);
+	}
+
+	@Override
+	public int glCreateShader(int type)
+	{
+		record(CREATE_SHADER);
+		return nextHandle++;
+	}
+
+	@Override
+	public void glShaderSource(int shader, String string)
+	{
+		record(SHADER_SOURCE);
+	}
+
+	@Override
+	public void glCompileShader(int shader)
+	{
+		record(COMPILE_SHADER);
+	}
+
+	@Override
+	public void glGetShaderiv(int shader, int pname, int[] params, int offset)
+	{
+		record(GET_SHADERIV);
+		params[offset] = 1; //everything compiles
+	}
+
+	@Override
+	public String glGetShaderInfoLog(int shader)
+	{
+		record(GET_SHADER_INFO_LOG);
+		return "";
+	}
+
+	@Override
+	public void glDeleteShader(int shader)
+	{
+		record(DELETE_SHADER);
+	}
+
+	@Override
+	public int glCreateProgram()
+	{
+		record(CREATE_PROGRAM);
+		return nextHandle++;
+	}
+
+	@Override
+	public void glAttachShader(int program, int shader)
+	{
+		record(ATTACH_SHADER);
+	}
+
+	@Override
+	public void glLinkProgram(int program)
+	{
+		record(LINK_PROGRAM);
+	}
+
+	@Override
+	public void glGetProgramiv(int program, int pname, int[] params, int offset)
+	{
+		record(GET_PROGRAMIV);
+		params[offset] = 1; //everything links
+	}
+
+	@Override
+	public String glGetProgramInfoLog(int program)
+	{
+		record(GET_PROGRAM_INFO_LOG);
+		return "";
+	}
+
+	@Override
+	public void glDeleteProgram(int program)
+	{
+		record(DELETE_PROGRAM);
+	}
+
+	@Override
+	public void glUseProgram(int program)
+	{
+		record(USE_PROGRAM);
+	}
+
+	@Override
+	public int glGetUniformLocation(int program, String name)
+	{
+		record(GET_UNIFORM_LOCATION);
+		return location(program, name);
+	}
+
+	@Override
+	public int glGetAttribLocation(int program, String name)
+	{
+		record(GET_ATTRIB_LOCATION);
+		return location(program, name);
+	}
+
+	@Override
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset)
+	{
+		record(UNIFORM_MATRIX4FV);
+	}
+
+	@Override
+	public void glUniform4fv(int location, int count, float[] v, int offset)
+	{
+		record(UNIFORM4FV);
+	}
+
+	@Override
+	public void glVertexAttrib3fv(int indx, float[] values, int offset)
+	{
+		record(VERTEX_ATTRIB3FV);
+	}
+
+	@Override
+	public void glVertexAttrib4fv(int indx, float[] values, int offset)
+	{
+		record(VERTEX_ATTRIB4FV);
+	}
+
+	@Override
+	public void glGenBuffers(int n, int[] buffers, int offset)
+	{
+		record(GEN_BUFFERS);
+		for(int i=0; i<n; i++)
+			buffers[offset+i] = nextHandle++;
+	}
+
+	@Override
+	public void glBindBuffer(int target, int buffer)
+	{
+		record(BIND_BUFFER);
+	}
+
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage)
+	{
+		record(BUFFER_DATA);
+	}
+
+	@Override
+	public void glDeleteBuffers(int n, int[] buffers, int offset)
+	{
+		record(DELETE_BUFFERS);
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset)
+	{
+		record(VERTEX_ATTRIB_POINTER);
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr)
+	{
+		record(VERTEX_ATTRIB_POINTER);
+	}
+
+	@Override
+	public void glEnableVertexAttribArray(int index)
+	{
+		record(ENABLE_VERTEX_ATTRIB_ARRAY);
+	}
+
+	@Override
+	public void glDisableVertexAttribArray(int index)
+	{
+		record(DISABLE_VERTEX_ATTRIB_ARRAY);
+	}
+
+	@Override
+	public void glDrawArrays(int mode, int first, int count)
+	{
+		record(DRAW_ARRAYS);
+		elements += count;
+	}
+
+	@Override
+	public void glDrawElements(int mode, int count, int type, int offset)
+	{
+		record(DRAW_ELEMENTS);
+		elements += count;
+	}
+
+	@Override
+	public int glGetError()
+	{
+		record(GET_ERROR);
+		return GLES20.GL_NO_ERROR;
+	}
+}
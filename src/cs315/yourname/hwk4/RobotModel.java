@@ -0,0 +1,161 @@
+package cs315.yourname.hwk4;
+
+import android.opengl.Matrix;
+
+/**
+ * Describes the dancing robot as data: which parts it has, how they are attached to each other, and what they look like.
+ * Call createSkeleton() to get a Skeleton that can be posed and drawn.
+ * The joint constants below are the indices of each part in that skeleton.
+ */
+public class RobotModel
+{
+	//joint indices (parents always come before their children)
+	public static final int TORSO = 0;
+	public static final int HEAD = 1;
+	public static final int RIGHT_SHOULDER = 2;
+	public static final int RIGHT_UPPER_ARM = 3;
+	public static final int RIGHT_ELBOW = 4;
+	public static final int RIGHT_LOWER_ARM = 5;
+	public static final int RIGHT_HAND = 6;
+	public static final int LEFT_SHOULDER = 7;
+	public static final int LEFT_UPPER_ARM = 8;
+	public static final int LEFT_ELBOW = 9;
+	public static final int LEFT_LOWER_ARM = 10;
+	public static final int LEFT_HAND = 11;
+	public static final int RIGHT_HIP = 12;
+	public static final int RIGHT_UPPER_LEG = 13;
+	public static final int RIGHT_KNEE = 14;
+	public static final int RIGHT_LOWER_LEG = 15;
+	public static final int LEFT_HIP = 16;
+	public static final int LEFT_UPPER_LEG = 17;
+	public static final int LEFT_KNEE = 18;
+	public static final int LEFT_LOWER_LEG = 19;
+	public static final int JOINT_COUNT = 20;
+
+	public static final long DANCE_LENGTH = 10000L; //the dance repeats every 10 seconds
+
+	//sides, used to mirror the arms and legs (the robot's right is on the -x side)
+	private static final float RIGHT = -1.0f;
+	private static final float LEFT = 1.0f;
+
+	//changed original colors but left original colors, just commented out here
+//	public static final float[] RED = {0.8f, 0.1f, 0.1f, 1.0f};
+//	public static final float[] BLUE = {0.1f, 0.1f, 0.8f, 1.0f};
+//	public static final float[] GREY = {0.8f, 0.8f, 0.8f, 1.0f};
+	public static final float[] RED = {0.314f, 0.0f, 0.0f, 1.0f};
+	public static final float[] BLUE = {0.0f, 0.15f, 0.445f, 1.0f};
+	public static final float[] GREY = {0.15f, 0.15f, 0.15f, 1.0f};
+	public static final float[] GREEN = {0.0f, 0.2f, 0.0f, 1.0f};
+
+	/**
+	 * Builds the skeleton of the robot. Each part is a joint with a bind transform (inherited by the parts attached to it)
+	 * and a shape transform (applied to only that part's mesh).
+	 */
+	public static Skeleton createSkeleton()
+	{
+		Skeleton skeleton = new Skeleton(JOINT_COUNT, ModelFactory.getBoundingRadii());
+		float[] bind = new float[16];
+		float[] shape = new float[16];
+
+		Matrix.setIdentityM(bind, 0);
+		scale(shape, 1.0f, 1.0f, 0.5f);
+		int torso = skeleton.addJoint("torso", Skeleton.NO_PARENT, bind, shape, ModelFactory.CUBE_MESH, RED);
+
+		translate(bind, 0.0f, 1.6f, 0.0f);
+		scale(shape, 0.8f, 0.8f, 0.8f);
+		skeleton.addJoint("head", torso, bind, shape, ModelFactory.SPHERE_MESH, GREY);
+
+		addArm(skeleton, torso, "right", RIGHT, bind, shape);
+		addArm(skeleton, torso, "left", LEFT, bind, shape);
+		addLeg(skeleton, torso, "right", RIGHT, bind, shape);
+		addLeg(skeleton, torso, "left", LEFT, bind, shape);
+
+		return skeleton;
+	}
+
+	/**
+	 * Builds the robot's dance as keyframes: the shoulders swing up, the elbows twist one way and then the other,
+	 * and the legs take turns kicking (the right leg in the first half, the left leg in the second).
+	 */
+	public static AnimationClip createDanceClip()
+	{
+		final float end = DANCE_LENGTH;
+		final float half = DANCE_LENGTH/2;
+		AnimationClip.Channel[] channels = {
+				rotation("rightShoulder", -1.0f, 0.0f, 0.0f, new float[] {0, end}, new float[] {0, 20}),
+				rotation("leftShoulder", -1.0f, 0.0f, 0.0f, new float[] {0, end}, new float[] {0, 20}),
+				rotation("rightElbow", 0.0f, 1.0f, 0.0f, new float[] {0, half, half, end}, new float[] {0, 15, -15, -30}),
+				rotation("leftElbow", 0.0f, 1.0f, 0.0f, new float[] {0, half, half, end}, new float[] {0, 15, -15, -30}),
+				rotation("rightHip", -1.0f, 0.0f, 0.0f, new float[] {0, half, half}, new float[] {0, 90, 0}),
+				rotation("rightKnee", -1.0f, 0.0f, 0.0f, new float[] {0, half, half}, new float[] {0, -90, 0}),
+				rotation("leftHip", -1.0f, 0.0f, 0.0f, new float[] {half, end}, new float[] {0, 90}),
+				rotation("leftKnee", -1.0f, 0.0f, 0.0f, new float[] {half, end}, new float[] {0, -90}),
+		};
+		return new AnimationClip("dance", DANCE_LENGTH, channels);
+	}
+
+	//a linearly interpolated rotation channel
+	private static AnimationClip.Channel rotation(String joint, float x, float y, float z, float[] times, float[] angles)
+	{
+		return new AnimationClip.Channel(joint, x, y, z, AnimationClip.LINEAR, times, angles);
+	}
+
+	//adds the shoulder, upper arm, elbow, lower arm and hand on the given side
+	private static void addArm(Skeleton skeleton, int torso, String prefix, float side, float[] bind, float[] shape)
+	{
+		translate(bind, 0.9f*side, 0.5f, 0.0f);
+		scale(shape, 0.5f, 0.5f, 0.5f);
+		int shoulder = skeleton.addJoint(prefix+"Shoulder", torso, bind, shape, ModelFactory.SPHERE_MESH, GREEN);
+
+		translate(bind, 0.4f*side, 0.0f, 1.0f);
+		scale(shape, 0.25f, 0.25f, 0.6f);
+		Matrix.rotateM(shape, 0, -30.0f*side, 0.0f, 0.0f, 1.0f); //tilt the arms outwards
+		int upperArm = skeleton.addJoint(prefix+"UpperArm", shoulder, bind, shape, ModelFactory.CUBE_MESH, GREY);
+
+		Affine3.setTRSM(bind, 0, 0.0f, 0.0f, 0.6f, 90.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f);
+		scale(shape, 0.2f, 0.2f, 0.2f);
+		int elbow = skeleton.addJoint(prefix+"Elbow", upperArm, bind, shape, ModelFactory.SPHERE_MESH, GREEN);
+
+		translate(bind, 0.0f, 0.0f, 0.75f);
+		scale(shape, 0.2f, 0.2f, 0.6f);
+		int lowerArm = skeleton.addJoint(prefix+"LowerArm", elbow, bind, shape, ModelFactory.CUBE_MESH, BLUE);
+
+		translate(bind, 0.0f, 0.0f, 0.6f);
+		scale(shape, 0.2f, 0.2f, 0.2f);
+		skeleton.addJoint(prefix+"Hand", lowerArm, bind, shape, ModelFactory.SPHERE_MESH, GREEN);
+	}
+
+	//adds the hip, upper leg, knee and lower leg on the given side
+	private static void addLeg(Skeleton skeleton, int torso, String prefix, float side, float[] bind, float[] shape)
+	{
+		translate(bind, 0.4f*side, -1.2f, 0.0f);
+		scale(shape, 0.3f, 0.3f, 0.3f);
+		int hip = skeleton.addJoint(prefix+"Hip", torso, bind, shape, ModelFactory.SPHERE_MESH, GREEN);
+
+		translate(bind, 0.0f, -0.6f, 0.0f);
+		scale(shape, 0.25f, 0.6f, 0.25f);
+		int upperLeg = skeleton.addJoint(prefix+"UpperLeg", hip, bind, shape, ModelFactory.CUBE_MESH, GREY);
+
+		translate(bind, 0.0f, -0.6f, 0.0f);
+		scale(shape, 0.2f, 0.2f, 0.2f);
+		int knee = skeleton.addJoint(prefix+"Knee", upperLeg, bind, shape, ModelFactory.SPHERE_MESH, GREEN);
+
+		translate(bind, 0.0f, -0.7f, 0.0f);
+		scale(shape, 0.2f, 0.6f, 0.2f);
+		skeleton.addJoint(prefix+"LowerLeg", knee, bind, shape, ModelFactory.CUBE_MESH, BLUE);
+	}
+
+	//sets the matrix to a translation
+	private static void translate(float[] m, float x, float y, float z)
+	{
+		Matrix.setIdentityM(m, 0);
+		Matrix.translateM(m, 0, x, y, z);
+	}
+
+	//sets the matrix to a scale
+	private static void scale(float[] m, float x, float y, float z)
+	{
+		Matrix.setIdentityM(m, 0);
+		Matrix.scaleM(m, 0, x, y, z);
+	}
+}
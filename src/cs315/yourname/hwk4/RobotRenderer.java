@@ -3,8 +3,6 @@ package cs315.yourname.hwk4;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.Arrays;
-import java.util.Stack;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -33,42 +31,78 @@ public class RobotRenderer implements GLSurfaceView.Renderer
 	private final int NORMAL_DATA_SIZE = 3;
 	private final int COLOR_DATA_SIZE = 4; //in case we may want it!
 	private final int BYTES_PER_FLOAT = 4;
+	private static final VertexFormat CUBE_FORMAT = VertexFormat.COMPACT; //12 bytes per vertex, rather than 24
+	private static final VertexFormat SPHERE_FORMAT = VertexFormat.COMPACT_SPHERE; //8 bytes per vertex; the normals come from the positions
+	private static final long POSE_CACHE_BYTES = 8*1024*1024; //how much memory baked dances may use
+	public static final long DANCE_FADE_MILLIS = 400; //how long the robot takes to ease into (and out of) its dance
+
+	//the sphere's levels of detail, finest first, and the smallest radius on screen (in pixels) each is drawn at
+	private static final int[] SPHERE_LOD_MESHES = {ModelFactory.SPHERE_MESH, ModelFactory.ROUGH_SPHERE_MESH, ModelFactory.COARSE_SPHERE_MESH};
+	private static final float[] SPHERE_LOD_RADII = {32.0f, 8.0f, 0.0f};
+	private static final float LOD_HYSTERESIS = 0.15f; //how far past a threshold a part has to get before it switches
 	
+	private final GlBackend mGl; //where our GL calls go
+	private final StateCachingGlBackend mStateCache; //skips the calls that wouldn't change anything; mGl goes through it
+
 	//Matrix storage
 	private float[] mModelMatrix = new float[16]; //to store current model matrix
 	private float[] mViewMatrix = new float[16];
 	private float[] mProjectionMatrix = new float[16];
 	private float[] mMVMatrix = new float[16]; //to store the current modelview matrix
 	private float[] mMVPMatrix = new float[16]; //combined MVP matrix
-	private float[] mTempMatrix = new float[16]; //temporary matrix for transformations, if needed
-
-	//Buffer for model data
-	private final FloatBuffer mCubeData;
-	private final int mCubeVertexCount; //vertex count for the buffer
-	
-	private final FloatBuffer mSphereData;
-	private final int mSphereVertexCount; //vertex count for the buffer
-	
-
-	private Stack<float[]> roboStack; //the stack of all of the parts of the robot, used for relative locations of the parts of the robot
-	
-	//dancing rotation angles
-	private float shoulderAngle;
-	private float elbowAngle;
-
-	private float rightHipAngle;
-	private float rightKneeAngle;
-	private float leftHipAngle;
-	private float leftKneeAngle;
-	
+	private final MatrixStack mMatrixStack = new MatrixStack(8); //preallocated stack of reference frames; no garbage per frame
+
+	//model data, uploaded to GPU buffers once per context and looked up by mesh id
+	private final MeshRegistry mMeshes;
+	private final MeshCache mMeshCache; //generated meshes saved on disk, so they only have to be built once
+	private final ModelFactory mModels;
+
+	private volatile int mCrowdSize = 1; //how many robots to draw (set from the UI thread)
+	private Crowd mCrowd; //the robots to draw when there is more than one; only touched on the GL thread
+	private int mWidth, mHeight; //size of the surface
+	private final FrameStats mFrameStats = new FrameStats(); //how long our frames take
+	private long mCrowdNanos; //time spent posing the crowd since the last report
+	private int mCrowdFrames; //frames since the last report
+	private volatile boolean mCrowdJointBuffer; //whether to pose the crowd in bulk on the GL thread, rather than on its workers
+
+	private volatile boolean mCulling = true; //whether to skip the parts that are out of view
+	private final Frustum mFrustum = new Frustum();
+	private float[] mViewProjectionMatrix = new float[16];
+
+	private volatile boolean mLevelOfDetail = true; //whether to draw spheres that are small on screen with fewer triangles
+	private final LevelOfDetail mSphereLod = new LevelOfDetail(SPHERE_LOD_MESHES, SPHERE_LOD_RADII, LOD_HYSTERESIS);
+
+	private volatile boolean mBatching; //whether to draw parts that share a mesh together, rather than one call per part
+	private DrawBatcher mBatcher; //created the first time batching is turned on
+
+	private volatile boolean mSkinning; //whether to draw each robot as one merged mesh with one call
+	private PaletteSkinner mSkinner; //created the first time skinning is turned on
+
+	private volatile boolean mStaticBatching = true; //whether to draw the parts that don't move as one pre-transformed buffer
+	private StaticBatch mStaticBatch; //created the first time it is needed
+	private boolean[] mAllStatics; //every joint (while the robot isn't dancing)
+	private boolean[] mDanceStatics; //the joints the current dance doesn't move
+	private AnimationClip mStaticsDance; //the dance mDanceStatics was found for
+
+	private final Skeleton mRobot; //the parts of the robot, flattened so they can be posed and drawn in a single loop
+	
+	private volatile AnimationClip mDance; //the dance to do (can be changed from the UI thread)
+	private final AnimationMixer mMixer; //blends the single robot's dance in and out
+	private final int mDanceLayer; //the mixer's layer for the dance
+	private boolean mMixerDancing; //whether the mixer was last told to dance; only touched on the GL thread
+	private volatile boolean mDanceShowing; //whether any of the dance shows (so also while it fades out); set on the GL thread
+	private volatile float mBakingRate; //frames per second to bake the dance at, or 0 to not bake it
+	private final PoseCache mPoseCache = new PoseCache(POSE_CACHE_BYTES); //the dances we've baked
+	private BakedClip mBakedDance; //the current dance baked at the current rate (or null if it was too big to bake)
+	private AnimationClip mBakedClip; //the dance and rate mBakedDance was looked up for, so the cache is only asked when they change
+	private float mBakedRate;
+	private float[] mBakedModels; //the single robot's model transforms, when played back from a baked dance
+	private final float[] mBakeTemp = new float[16]; //temporary matrix for baked playback
+	private volatile boolean mSimulating; //whether to pose the single robot on its own thread
+	private AnimationSimulation mSimulation; //the thread posing the single robot, while simulating; only touched on the GL thread
 	private long _time;//make time an instance variable for easier access in dancing animations
 	
 	private boolean isDancing;//for animation control
-	
-	private final float[] mColorRed;
-	private final float[] mColorBlue;
-	private final float[] mColorGrey;
-	private final float[] mColorGreen;
 
 	//axis points (for debugging)
 	private final FloatBuffer mAxisBuffer;
@@ -81,6 +115,8 @@ public class RobotRenderer implements GLSurfaceView.Renderer
 	 * We pass the pointers around instead of the data to increase efficiency (and because OpenGL is
 	 * C-based, and that's how they do things).
 	 */
+	private final ProgramCache mPrograms; //every shader program we use, built once per context
+	private final ProgramCache.Program mPerVertexProgram;
 	private int mPerVertexProgramHandle; //our "program" (OpenGL state) for drawing (uses some lighting!)
 	private int mMVMatrixHandle; //the combined ModelView matrix
 	private int mMVPMatrixHandle; //the combined ModelViewProjection matrix
@@ -119,39 +155,47 @@ public class RobotRenderer implements GLSurfaceView.Renderer
 	 * Constructor should initialize any data we need, such as model data
 	 */
 	public RobotRenderer(Context context)
+	{
+		this(context, Gles20Backend.INSTANCE);
+	}
+
+	/**
+	 * Creates a renderer that makes its GL calls through the given backend (such as a RecordingGlBackend, to run off-device)
+	 */
+	public RobotRenderer(Context context, GlBackend gl)
 	{	
+		mStateCache = new StateCachingGlBackend(gl);
+		mGl = mStateCache;
+
+		//register every shader program up front, so they can all be compiled while loading rather than mid-dance
+		mPrograms = new ProgramCache(mGl);
+		mPerVertexProgram = mPrograms.add(perVertexShaderCode, fragmentShaderCode,
+				new String[] {"uMVPMatrix", "uMVMatrix"}, new String[] {"aPosition", "aNormal", "aColor"});
+		DrawBatcher.addProgram(mPrograms); //even if batching is only turned on later
+		PaletteSkinner.addProgram(mPrograms); //likewise for skinning
+
 		/**
 		 * Initialize our model data--we fetch it from the factory!
 		 */
 		ModelFactory models = new ModelFactory();
+		mModels = models;
 		
-		roboStack = new Stack<float[]>();//initialize the stack
+		mRobot = RobotModel.createSkeleton(); //the robot's parts, colors and how they attach to each other
+		mDance = RobotModel.createDanceClip();
+		mMixer = new AnimationMixer(mRobot, 1);
+		mDanceLayer = mMixer.addLayer(mDance, 0);
 
-		float[] cubeData = models.getCubeData();
-		mCubeVertexCount = cubeData.length/(POSITION_DATA_SIZE+NORMAL_DATA_SIZE);
-		mCubeData = ByteBuffer.allocateDirect(cubeData.length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder()).asFloatBuffer(); //generate buffer
-		mCubeData.put(cubeData); //put the float[] into the buffer and set the position
+		mMeshes = new MeshRegistry(ModelFactory.MESH_COUNT);
+		mMeshes.register(ModelFactory.CUBE_MESH, new GpuMesh(models.getCubeData(), CUBE_FORMAT));
 
 		//more models can go here!
 		
-		
-		
 		//SPHERE
-		float[] sphereData = models.getSphereData(ModelFactory.SMOOTH_SPHERE);
-		mSphereVertexCount = sphereData.length/(POSITION_DATA_SIZE+NORMAL_DATA_SIZE);
-		mSphereData = ByteBuffer.allocateDirect(sphereData.length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder()).asFloatBuffer(); //generate buffer
-		mSphereData.put(sphereData); //put the float[] into the buffer and set the position
-	
-		//changed original colors but left original colors, just commented out here
-		//set up some example colors. Can add more as needed!
-//		mColorRed = new float[] {0.8f, 0.1f, 0.1f, 1.0f};
-//		mColorBlue = new float[] {0.1f, 0.1f, 0.8f, 1.0f};
-//		mColorGrey = new float[] {0.8f, 0.8f, 0.8f, 1.0f};
-		
-		mColorRed = new float[] {0.314f, 0.0f, 0.0f, 1.0f};
-		mColorBlue = new float[] {0.0f, 0.15f, 0.445f, 1.0f};
-		mColorGrey = new float[] {0.15f, 0.15f, 0.15f, 1.0f};		
-		mColorGreen = new float[] {0.0f, 0.2f, 0.0f, 1.0f};
+		mMeshCache = new MeshCache(context.getCacheDir());
+		int[] sphereLevels = ModelFactory.getSphereDetailLevels();
+		for(int mesh=0; mesh<ModelFactory.MESH_COUNT; mesh++) //the sphere at every level of detail
+			if(sphereLevels[mesh] >= 0)
+				mMeshes.register(mesh, loadSphere(models, sphereLevels[mesh]));
 		
 		
 		//axis
@@ -164,6 +208,22 @@ public class RobotRenderer implements GLSurfaceView.Renderer
 
 	}
 
+	/**
+	 * Loads the sphere of the given detail level from the mesh cache, or generates (and caches) it if it isn't there yet.
+	 */
+	private GpuMesh loadSphere(ModelFactory models, int detailLevel)
+	{
+		String name = "sphere" + detailLevel;
+		GpuMesh sphere = mMeshCache.get(name, SPHERE_FORMAT);
+		if(sphere == null)
+		{
+			IndexedMesh generated = models.getIndexedSpherePositions(detailLevel);
+			mMeshCache.put(name, generated, SPHERE_FORMAT);
+			sphere = new GpuMesh(generated, SPHERE_FORMAT);
+		}
+		return sphere;
+	}
+
 	/**
 	 * This method is called when the rendering surface is first created; more initializing stuff goes here.
 	 * I put OpenGL initialization here (with more generic model initialization in the Renderer constructor).
@@ -175,25 +235,37 @@ public class RobotRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onSurfaceCreated(GL10 unused, EGLConfig config) 
 	{
+		mStateCache.invalidate(); //this is a new context, in a fresh state
+
 		//flags to enable depth work
-		GLES20.glEnable(GLES20.GL_CULL_FACE); //remove back faces
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST); //enable depth testing
-		GLES20.glDepthFunc(GLES20.GL_LEQUAL);
+		mGl.glEnable(GLES20.GL_CULL_FACE); //remove back faces
+		mGl.glEnable(GLES20.GL_DEPTH_TEST); //enable depth testing
+		mGl.glDepthFunc(GLES20.GL_LEQUAL);
 		
 		// Set the background clear color
-		GLES20.glClearColor(0.2f, 0.2f, 0.2f, 1.0f); //Currently a dark grey so we can make sure things are working
+		mGl.glClearColor(0.2f, 0.2f, 0.2f, 1.0f); //Currently a dark grey so we can make sure things are working
 
-		//This is a good place to compile the shaders from Strings into actual executables. We use a helper method for that
-		int vertexShaderHandle = GLUtilities.compileShader(GLES20.GL_VERTEX_SHADER, perVertexShaderCode); //get pointers to the executables		
-		int fragmentShaderHandle = GLUtilities.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShaderCode);
-		mPerVertexProgramHandle = GLUtilities.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle); //and then we throw them into a program
+		//This is a good place to compile the shaders from Strings into actual executables. The cache compiles every program
+		//we registered (the old context's programs died with it), and looks up their variables' locations
+		mPrograms.invalidate();
+		mPrograms.warmUp();
+		mPerVertexProgramHandle = mPerVertexProgram.getHandle();
 
 		//Get pointers to the shader's variables (for use elsewhere)
-		mMVPMatrixHandle = GLES20.glGetUniformLocation(mPerVertexProgramHandle, "uMVPMatrix");
-		mMVMatrixHandle = GLES20.glGetUniformLocation(mPerVertexProgramHandle, "uMVMatrix");
-		mPositionHandle = GLES20.glGetAttribLocation(mPerVertexProgramHandle, "aPosition");
-		mNormalHandle = GLES20.glGetAttribLocation(mPerVertexProgramHandle, "aNormal");
-		mColorHandle = GLES20.glGetAttribLocation(mPerVertexProgramHandle, "aColor");
+		mMVPMatrixHandle = mPerVertexProgram.getUniformLocation("uMVPMatrix");
+		mMVMatrixHandle = mPerVertexProgram.getUniformLocation("uMVMatrix");
+		mPositionHandle = mPerVertexProgram.getAttributeLocation("aPosition");
+		mNormalHandle = mPerVertexProgram.getAttributeLocation("aNormal");
+		mColorHandle = mPerVertexProgram.getAttributeLocation("aColor");
+
+		//copy the model data to the GPU. This gets called again with a new context if the old one is lost, so the buffers are always recreated here
+		mMeshes.uploadAll(mGl);
+		if(mBatcher != null)
+			mBatcher.onSurfaceCreated();
+		if(mSkinner != null)
+			mSkinner.onSurfaceCreated();
+		if(mStaticBatch != null)
+			mStaticBatch.onSurfaceCreated();
 	}
 
 	/**
@@ -203,455 +275,556 @@ public class RobotRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onSurfaceChanged(GL10 unused, int width, int height) 
 	{
-		GLES20.glViewport(0, 0, width, height); // Set the OpenGL viewport (basically the canvas) to the same size as the surface.
+		mGl.glViewport(0, 0, width, height); // Set the OpenGL viewport (basically the canvas) to the same size as the surface.
+		mWidth = width;
+		mHeight = height;
+		updateCamera();
+	}
+
+	/**
+	 * Set up the View and Projection matrixes. These matter more for when we're actually constructing
+	 * 3D models, rather than 2D models in a 3D world.
+	 * The camera backs up (and the far plane moves out) so that a whole crowd fits on screen.
+	 */
+	private void updateCamera()
+	{
+		float distance = 5.0f;
+		float height = 0.0f;
+		float far = 50.0f;
+		if(mCrowd != null)
+		{
+			float extent = mCrowd.getExtent();
+			distance += extent;
+			height = extent*0.5f;
+			far = Math.max(far, distance + extent*2);
+		}
 
-		/**
-		 * Set up the View and Projection matrixes. These matter more for when we're actually constructing
-		 * 3D models, rather than 2D models in a 3D world.
-		 */
-		
 		//Set View Matrix
 		Matrix.setLookAtM(mViewMatrix, 0, 
-				0.0f, 0.0f, 5.0f, //eye's location
+				0.0f, height, distance, //eye's location
 				0.0f, 0.0f, -1.0f, //direction we're looking at
 				0.0f, 1.0f, 0.0f //direction that is "up" from our head
 				); //this gets compiled into the proper matrix automatically
 
 		//Set Projection Matrix. We will talk about this more in the future
-		final float ratio = (float) width / height; //aspect ratio
+		final float ratio = (float) mWidth / mHeight; //aspect ratio
 		final float left = -ratio;
 		final float right = ratio;
 		final float bottom = -1;
 		final float top = 1;
 		final float near = 1.0f;
-		final float far = 50.0f;
 		Matrix.frustumM(mProjectionMatrix, 0, left, right, bottom, top, near, far);
 	}
 	
 	/**
-	 * This method is for changing whether or not the robot is dancing.
+	 * This method is for changing whether or not the robot is dancing. The robot eases into and out of the dance over
+	 * DANCE_FADE_MILLIS, rather than snapping.
 	 */
 	public void controlAnimation()
 	{
 		isDancing = !isDancing;//switch whether or not the robot is dancing
 	}
 
+	/**
+	 * Returns whether the robot is dancing (or starting to)
+	 */
+	public boolean isDancing()
+	{
+		return isDancing;
+	}
+
+	/**
+	 * Returns whether the scene changes from frame to frame: while the robot is dancing, and until it has finished easing
+	 * out of the dance
+	 */
+	public boolean isAnimating()
+	{
+		return isDancing || mDanceShowing;
+	}
+
+	/**
+	 * Turns batched drawing on or off. When on, parts that share a mesh are drawn together (a couple of draw calls
+	 * for the whole robot, rather than one per part), which saves a lot of driver overhead on low-end devices.
+	 */
+	public void setBatching(boolean batching)
+	{
+		mBatching = batching;
+	}
+
+	/**
+	 * Turns skinned drawing on or off. When on, every part of the robot is merged into one mesh up front, and each robot
+	 * is drawn with a single call using a palette of joint matrices (this takes priority over batching).
+	 */
+	public void setSkinning(boolean skinning)
+	{
+		mSkinning = skinning;
+	}
+
+	/**
+	 * Returns the frame time statistics (frame CPU time, time between frames, and overruns); safe to read from any thread
+	 */
+	public FrameStats getFrameStats()
+	{
+		return mFrameStats;
+	}
+
+	/**
+	 * Sets the dance the robots do (such as one read with AnimationClip.load())
+	 */
+	public void setDance(AnimationClip dance)
+	{
+		if(dance == null)
+			throw new IllegalArgumentException("Dance must not be null");
+		mDance = dance;
+	}
+
+	/**
+	 * Sets how many robots to draw. With more than one, the robots stand on a grid and are all posed in parallel.
+	 * @param robots From 1 to Crowd.MAX_ROBOTS
+	 */
+	public void setCrowdSize(int robots)
+	{
+		if(robots < 1 || robots > Crowd.MAX_ROBOTS)
+			throw new IllegalArgumentException("Crowd size must be between 1 and "+Crowd.MAX_ROBOTS+": "+robots);
+		mCrowdSize = robots;
+	}
+
+	/**
+	 * Sets whether to pose the crowd with a JointBuffer (every robot at once, with bulk kernels over structure-of-arrays
+	 * joint data, on the GL thread) rather than robot by robot on the crowd's worker threads
+	 */
+	public void setCrowdJointBuffer(boolean jointBuffer)
+	{
+		mCrowdJointBuffer = jointBuffer;
+	}
+
+	/**
+	 * Stops the crowd's worker threads and the simulation thread, so they don't outlive the view; they are started again
+	 * by the next frame that needs them. Call on the GL thread (such as with GLSurfaceView.queueEvent()) when the view is paused.
+	 */
+	public void onPause()
+	{
+		if(mCrowd != null)
+		{
+			mCrowd.shutdown();
+			mCrowd = null;
+		}
+		if(mSimulation != null)
+		{
+			mSimulation.stop();
+			mSimulation = null;
+		}
+	}
+
+	//(re)creates the crowd if its size was changed; called on the GL thread
+	private void updateCrowd()
+	{
+		int size = mCrowdSize;
+		AnimationClip dance = mDance;
+		int current = (mCrowd == null) ? 1 : mCrowd.getRobotCount();
+		if(size == current && (mCrowd == null || mCrowd.getDance() == dance))
+			return;
+
+		if(mCrowd != null)
+			mCrowd.shutdown();
+		mCrowd = (size > 1) ? new Crowd(mRobot, dance, size, Crowd.defaultThreadCount()) : null;
+		updateCamera();
+	}
+
 	/**
 	 * This is like our "onDraw" method; it says what to do each frame
 	 */
 	@Override
 	public void onDrawFrame(GL10 unused) 
 	{
-		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT); //start by clearing the screen for each frame
+		mFrameStats.frameStart(System.nanoTime());
+
+		mGl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT); //start by clearing the screen for each frame
 
-		GLES20.glUseProgram(mPerVertexProgramHandle); //tell OpenGL to use the shader program we've compiled
+		mGl.glUseProgram(mPerVertexProgramHandle); //tell OpenGL to use the shader program we've compiled
 	
 		/*
 		 * THE ALGORITHM
-		 * SAVE current reference frame (push my frame onto the stack)
-		 * apply GLOBAL transformations we want children to INHERIT (animation, see below)
-		 * RECURSE: draw each child component //this is slightly different from class--post-order traversal rather than pre-order
-		 * apply LOCAL transformations we do NOT want children to inherit (local rotations, etc.)
-		 * DRAW this model's primitives
-		 * RESTORE my parent's frame (by popping my frame off the stack!)
+		 * POSE the joints that are animated (the dance, see below)
+		 * UPDATE every joint's world transform in one pass over the skeleton (parents come before children,
+		 * 	so each joint just concatenates its parent's world transform with its bind and pose transforms)
+		 * DRAW each joint's mesh with its world transform and its LOCAL shape transform (which children do NOT inherit)
 		 */
 		
-		_time = SystemClock.uptimeMillis() % 10000L;
-
-		shoulderAngle = (20.0f / 10000.0f) * ((int) _time);
-		elbowAngle = (30.0f / 10000.0f) * ((int) _time);
-		
-		//I had to make different variables for right and left to get the timing right
-		rightHipAngle = (180.0f / 10000.0f) * ((int) _time);
-    	rightKneeAngle = -rightHipAngle;
-    	leftHipAngle = Math.abs(90-rightHipAngle);
-    	leftKneeAngle = -leftHipAngle;
+		_time = SystemClock.uptimeMillis();
 		
-		Matrix.setIdentityM(mTempMatrix, 0);//set the identity
-		drawTorso();//start the recursive drawing process
+		updateMixer();
+		updateCrowd();
+		updateSimulation();
+		if(mSimulation == null)
+			poseRobot();
+		BakedClip baked = getBakedDance();
+		Frustum frustum = null;
+		if(mCulling)
+		{
+			Matrix.multiplyMM(mViewProjectionMatrix, 0, mProjectionMatrix, 0, mViewMatrix, 0);
+			mFrustum.set(mViewProjectionMatrix, 0); //what the camera can see, in world space
+			frustum = mFrustum;
+		}
+
+		if(mCrowd != null)
+		{
+			//every robot is posed in parallel (each at its own point in the dance); here we just draw them
+			mCrowd.setStructureOfArrays(mCrowdJointBuffer);
+			mCrowd.update(SystemClock.uptimeMillis(), isDancing, baked, frustum);
+			drawRobots(mRobot, mCrowd.getModelTransforms(), mCrowd.getVisibility(), mCrowd.getRobotCount(), null);
+			reportCrowdTime();
+		}
+		else
+		{
+			mMatrixStack.reset();//set the identity
+			mMatrixStack.push();//SAVE the world frame
+			//float angleInDegrees = (360.0f / 10000.0f) * ((int) _time); // Do a complete rotation every 10 seconds.
+			//mMatrixStack.rotate(angleInDegrees, 0.0f, 1.0f, 0.0f);//UNCOMMENT THESE LINES TO WATCH THE ROBOT SPIN AROUND WHILE IT DANCES
+			AnimationSimulation.PoseFrame frame = (mSimulation != null) ? mSimulation.getLatestFrame() : null;
+			StaticBatch statics = updateStaticBatch();
+			if(frame != null && frame.getTime() >= 0)
+			{
+				//already posed on the simulation thread (at the origin); just draw the newest finished pose
+				if(frustum == null || mRobot.intersects(frustum, mMatrixStack.array(), mMatrixStack.offset()))
+					drawRobots(mRobot, frame.getModelTransforms(), null, 1, statics);
+			}
+			else if(isDancing && baked != null)
+			{
+				if(mBakedModels == null)
+					mBakedModels = new float[mRobot.getJointCount()*Skeleton.MATRIX_SIZE];
+				if(frustum == null || mRobot.intersects(frustum, mMatrixStack.array(), mMatrixStack.offset()))
+				{
+					baked.sample(_time, mMatrixStack.array(), mMatrixStack.offset(), mBakedModels, 0, mBakeTemp);
+					drawRobots(mRobot, mBakedModels, null, 1, statics);
+				}
+			}
+			else if(statics != null && statics.containsAll())
+			{
+				//nothing moves, and every part is already in the pre-transformed buffer: there is nothing to pose
+				if(frustum == null || mRobot.intersects(frustum, mMatrixStack.array(), mMatrixStack.offset()))
+					drawRobots(mRobot, null, null, 1, statics);
+			}
+			else
+			{
+				mRobot.update(mMatrixStack.array(), mMatrixStack.offset(), frustum);
+				drawRobots(mRobot, mRobot.getModelTransforms(), mRobot.getVisibility(), 1, statics);
+			}
+			mMatrixStack.pop();//RESTORE the world frame
+		}
 
 		//drawAxis(); //so we have guides on coordinate axes, for debugging
+
+		mFrameStats.frameEnd(System.nanoTime());
 	}				
 
 	/**
-	 * This method draws the torso. It acts like the rest of the drawRobotPart methods and acts recursively to draw each of the "children" then itself.
+	 * Sets whether to skip posing and drawing the parts of the robots that are out of the camera's view
 	 */
-	public void drawTorso()
+	public void setCulling(boolean culling)
 	{
-		// Do a complete rotation every 10 seconds.
-	
-		float angleInDegrees = (360.0f / 10000.0f) * ((int) _time);
-				
-		float[] saved = new float[16];//save a copy of the parent to the stack so we can get to it later
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		//Matrix.rotateM(mTempMatrix, 0, angleInDegrees, 0.0f, 1.0f, 0.0f);//UNCOMMENT THIS LINE TO WATCH THE ROBOT SPIN AROUND WHILE IT DANCES
-		//RECURSE
-		drawRightShoulder();
-		drawLeftShoulder();
-		drawHead();
-		drawRightHip();
-		drawLeftHip();
-		Matrix.scaleM(mTempMatrix, 0, 1.0f, 1.0f, 0.5f);//local transformations
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorRed); //draw the triangle with the given model matrix
-		mTempMatrix = roboStack.pop();//pop off of the stack
+		mCulling = culling;
 	}
 
-	
-	
 	/**
-	 * This method draws the head
+	 * Sets whether to draw the parts of the robot that don't move relative to it (all of them while it isn't dancing, and
+	 * the torso and head while it is) from one buffer transformed ahead of time, with a single call. Only used while a
+	 * single robot is drawn without skinning.
 	 */
-	public void drawHead()
+	public void setStaticBatching(boolean staticBatching)
 	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, 1.6f, 0.0f);
-		Matrix.scaleM(mTempMatrix, 0, 0.8f, 0.8f, 0.8f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGrey);
-		mTempMatrix = roboStack.pop();
+		mStaticBatching = staticBatching;
 	}
-	
+
 	/**
-	 * This method will draw the right shoulder and it's "child" robot parts.
+	 * Sets whether to draw spheres that are small on screen (like the hands) with fewer triangles
 	 */
-	public void drawRightShoulder()
+	public void setLevelOfDetail(boolean levelOfDetail)
 	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, -0.9f, 0.5f, 0.0f);
-		if(isDancing)//only draw dancing animation if the robot should be dancing
-		{
-			Matrix.rotateM(mTempMatrix, 0, shoulderAngle, -1.0f, 0.0f, 0.0f);
-		}
-		drawRightUpperArm();
-		Matrix.scaleM(mTempMatrix, 0, 0.5f, 0.5f, 0.5f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
+		mLevelOfDetail = levelOfDetail;
 	}
-	
-	public void drawRightUpperArm()
-	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, -0.4f, 0.0f, 1.0f);
-		drawRightElbow();
-		Matrix.scaleM(mTempMatrix, 0, 0.25f, 0.25f, 0.6f);
-		Matrix.rotateM(mTempMatrix, 0, 30.0f, 0.0f, 0.0f, 1.0f);
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorGrey);
-		mTempMatrix = roboStack.pop();
+
+	/**
+	 * Sets whether to bake the dance (sample it ahead of time) and play it back by looking up the baked frames.
+	 * @param rate How many frames per second to bake at, or 0 to sample the dance every frame instead
+	 */
+	public void setBakingRate(float rate)
+	{
+		if(rate < 0)
+			throw new IllegalArgumentException("Baking rate must not be negative: "+rate);
+		mBakingRate = rate;
 	}
-	
-	public void drawRightElbow()
-	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, 0.0f, 0.6f);
-		Matrix.rotateM(mTempMatrix, 0, 90.0f, 1.0f, 0.0f, 0.0f);
-		if(isDancing)
-		{
-		if(_time<5000)
+
+	/**
+	 * Sets whether to pose the robot on a separate simulation thread (stepped at a fixed rate), so the animation math
+	 * runs alongside drawing rather than before it. Only used while a single robot is drawn; crowds have their own threads.
+	 */
+	public void setSimulationThread(boolean simulating)
+	{
+		mSimulating = simulating;
+	}
+
+	//starts or stops the simulation thread as needed, and passes on what the robot should be doing; called on the GL thread
+	private void updateSimulation()
+	{
+		boolean wanted = mSimulating && mCrowd == null;
+		if(!wanted)
 		{
-			Matrix.rotateM(mTempMatrix, 0, elbowAngle, 0.0f, 1.0f, 0.0f);
+			if(mSimulation != null)
+			{
+				mSimulation.stop();
+				mSimulation = null;
+			}
+			return;
 		}
-		else if(5000<_time && _time<10000)
+
+		if(mSimulation == null)
 		{
-			Matrix.rotateM(mTempMatrix, 0, -elbowAngle, 0.0f, 1.0f, 0.0f);
-		}
+			mSimulation = new AnimationSimulation(mRobot, mDance, AnimationSimulation.DEFAULT_STEP_RATE);
+			mSimulation.start();
 		}
-		drawRightLowerArm();
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.2f, 0.2f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
-	}
-	public void drawRightLowerArm()
-	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, 0.0f, 0.75f);
-		drawRightHand();
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.2f, 0.6f);
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorBlue);
-		mTempMatrix = roboStack.pop();
-		//END right lower arm
-	}
-	public void drawRightHand()
-	{
-		//START right hand
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, 0.0f, 0.6f);
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.2f, 0.2f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
-		//END right hand
-		
+		mSimulation.setDance(mDance);
+		mSimulation.setDancing(isDancing);
 	}
-	
-	
-	/**
-	 * This method will draw the left shoulder and it's "child" robot parts.
-	 */
-	public void drawLeftShoulder()
-	{
-		//START left shoulder
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.9f, 0.5f, 0.0f);
-		if(isDancing)
+
+	//returns the current dance baked at the current rate (baking it the first time), or null if we're not baking
+	private BakedClip getBakedDance()
+	{
+		float rate = mBakingRate;
+		if(rate == 0 || !isDancing || mMixer.isFading(mDanceLayer, _time)) //a baked dance can't be blended in or out
+			return null;
+		AnimationClip dance = mDance;
+		if(dance != mBakedClip || rate != mBakedRate) //the lookup allocates a key, so not every frame
 		{
-			Matrix.rotateM(mTempMatrix, 0, shoulderAngle, -1.0f, 0.0f, 0.0f);
+			mBakedDance = mPoseCache.get(dance, mRobot, rate);
+			mBakedClip = dance;
+			mBakedRate = rate;
 		}
-		drawLeftUpperArm();
-		Matrix.scaleM(mTempMatrix, 0, 0.5f, 0.5f, 0.5f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
-		//END left shoulder
-	}
-	
-	public void drawLeftUpperArm()
-	{
-		//START left upper arm
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.4f, 0.0f, 1.0f);
-		drawLeftElbow();
-		Matrix.scaleM(mTempMatrix, 0, 0.25f, 0.25f, 0.6f);
-		Matrix.rotateM(mTempMatrix, 0, -30.0f, 0.0f, 0.0f, 1.0f);
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorGrey);
-		mTempMatrix = roboStack.pop();
-		//END left upper arm
+		return mBakedDance;
 	}
-	
-	public void drawLeftElbow()
+
+	//starts fading the dance in or out when the robot is told to start or stop dancing; called on the GL thread
+	private void updateMixer()
 	{
-		//START left elbow
-		
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, 0.0f, 0.6f);
-		Matrix.rotateM(mTempMatrix, 0, 90.0f, 1.0f, 0.0f, 0.0f);
-		if(isDancing){
-		if(_time<5000)
-		{
-			Matrix.rotateM(mTempMatrix, 0, elbowAngle, 0.0f, 1.0f, 0.0f);
-		}
-		else if(5000<_time && _time<10000)
+		if(mMixer.getClip(mDanceLayer) != mDance) //the dance was changed
+			mMixer.setClip(mDanceLayer, mDance);
+
+		boolean dancing = isDancing;
+		if(dancing != mMixerDancing)
 		{
-			Matrix.rotateM(mTempMatrix, 0, -elbowAngle, 0.0f, 1.0f, 0.0f);
+			mMixer.fadeTo(mDanceLayer, dancing ? 1.0f : 0.0f, DANCE_FADE_MILLIS, _time);
+			mMixerDancing = dancing;
 		}
-		}
-		drawLeftLowerArm();
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.2f, 0.2f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
-		//END left elbow
-	}
-	public void drawLeftLowerArm()
-	{
-		//START left lower arm
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, 0.0f, 0.75f);
-		drawLeftHand();
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.2f, 0.6f);
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorBlue);
-		mTempMatrix = roboStack.pop();
-		//END left lower arm
+		mDanceShowing = mMixer.getWeight(mDanceLayer, _time) > 0;
 	}
-	
-	public void drawLeftHand()
-	{
-		//START left hand
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, 0.0f, 0.6f);
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.2f, 0.2f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
-		//END left hand
+
+	/**
+	 * Sets the pose transform of each animated joint for the current time.
+	 */
+	private void poseRobot()
+	{
+		mMixer.sample(_time); //just the rest pose while the robot isn't dancing, which leaves every joint clean
 	}
-	
-	public void drawRightHip()
-	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, -0.4f, -1.2f, 0.0f);
-		//Log.d("dance", "_time = "+_time);
-		//Log.d("dance", "angle = "+hipAngle);
-		if(isDancing){
-		if(_time<2500)
+
+	//makes sure the static batch holds the joints that don't move right now, and returns it (or null if it isn't used)
+	private StaticBatch updateStaticBatch()
+	{
+		if(!mStaticBatching || mSkinning)
+			return null;
+
+		if(mStaticBatch == null)
 		{
-			Matrix.rotateM(mTempMatrix, 0, rightHipAngle, -1.0f, 0.0f, 0.0f);
+			IndexedMesh[] sources = new IndexedMesh[ModelFactory.MESH_COUNT];
+			sources[ModelFactory.CUBE_MESH] = getSourceMesh(ModelFactory.CUBE_MESH);
+			sources[ModelFactory.SPHERE_MESH] = getSourceMesh(ModelFactory.SPHERE_MESH).withPositionsAsNormals();
+			mStaticBatch = new StaticBatch(mRobot, sources);
+			mAllStatics = StaticBatch.findStaticJoints(mRobot, null);
 		}
-		else if(2500<_time && _time<=5000)
+
+		AnimationClip dance = mDance;
+		boolean moving = mDanceShowing || isDancing;
+		if(moving && mStaticsDance != dance) //the dance was changed
 		{
-			Matrix.rotateM(mTempMatrix, 0, -rightHipAngle, 1.0f, 0.0f, 0.0f);
+			mDanceStatics = StaticBatch.findStaticJoints(mRobot, dance);
+			mStaticsDance = dance;
 		}
-		}
-		drawRightUpperLeg();
-		Matrix.scaleM(mTempMatrix, 0, 0.3f, 0.3f, 0.3f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
+		mStaticBatch.update(moving ? mDanceStatics : mAllStatics); //only rebuilt if the set changed
+		return mStaticBatch;
 	}
-	
-	public void drawRightUpperLeg()
+
+	/**
+	 * Draws every part of one or more robots shaped like the given skeleton, in a single loop over their joints.
+	 * @param models The model transform of every part: robot by robot, joint by joint, 16 floats each
+	 * @param visible Whether each part is in view (robot by robot, joint by joint), or null to draw them all
+	 * @param statics The parts that don't move, pre-transformed, for a single robot at the top of the matrix stack (or null);
+	 * 	they are drawn in one call, and skipped in the loop
+	 */
+	private void drawRobots(Skeleton skeleton, float[] models, boolean[] visible, int robotCount, StaticBatch statics)
 	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, -0.6f, 0.0f);
-		drawRightKnee();
-		Matrix.scaleM(mTempMatrix, 0, 0.25f, 0.6f, 0.25f);
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorGrey);
-		mTempMatrix = roboStack.pop();
-	}
-	
-	public void drawRightKnee()
-	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, -0.6f, 0.0f);
-		if(isDancing){
-			if(_time<2500)
+		float[] colors = skeleton.getColors();
+		int jointCount = skeleton.getJointCount();
+		boolean levelOfDetail = mLevelOfDetail;
+		mSphereLod.setSlotCount(robotCount*jointCount);
+
+		if(statics != null && isAnyVisible(statics, visible, jointCount))
+			drawStaticBatch(statics, mMatrixStack.array(), mMatrixStack.offset());
+
+		if(mSkinning)
+		{
+			PaletteSkinner skinner = getSkinner();
+			for(int r=0; r<robotCount; r++)
+				skinner.draw(mViewMatrix, mProjectionMatrix, models, r*jointCount*Skeleton.MATRIX_SIZE, visible, r*jointCount, colors);
+			return;
+		}
+
+		if(mBatching)
+		{
+			DrawBatcher batcher = getBatcher();
+			batcher.begin(mViewMatrix, mProjectionMatrix);
+			for(int r=0; r<robotCount; r++)
 			{
-				Matrix.rotateM(mTempMatrix, 0, rightKneeAngle, -1.0f, 0.0f, 0.0f);
+				int robotOffset = r*jointCount*Skeleton.MATRIX_SIZE;
+				for(int j=0; j<jointCount; j++)
+				{
+					int mesh = skeleton.getMeshId(j);
+					if(mesh == Skeleton.NO_MESH || (visible != null && !visible[r*jointCount + j]) || (statics != null && statics.contains(j)))
+						continue;
+					if(levelOfDetail)
+						mesh = selectMesh(mesh, r*jointCount + j, models, robotOffset + j*Skeleton.MATRIX_SIZE);
+					batcher.add(mesh, models, robotOffset + j*Skeleton.MATRIX_SIZE, colors, j*Skeleton.COLOR_SIZE);
+				}
 			}
-			else if(2500<_time && _time<=5000)
+			batcher.end();
+			return;
+		}
+
+		for(int r=0; r<robotCount; r++)
+		{
+			int robotOffset = r*jointCount*Skeleton.MATRIX_SIZE;
+			for(int j=0; j<jointCount; j++)
 			{
-				Matrix.rotateM(mTempMatrix, 0, -rightKneeAngle, 1.0f, 0.0f, 0.0f);
+				int mesh = skeleton.getMeshId(j);
+				if(mesh == Skeleton.NO_MESH || (visible != null && !visible[r*jointCount + j]) || (statics != null && statics.contains(j)))
+					continue;
+				if(levelOfDetail)
+					mesh = selectMesh(mesh, r*jointCount + j, models, robotOffset + j*Skeleton.MATRIX_SIZE);
+				drawPackedTriangleBuffer(mMeshes.get(mesh), models, robotOffset + j*Skeleton.MATRIX_SIZE, colors, j*Skeleton.COLOR_SIZE);
 			}
 		}
-		drawRightLowerLeg();
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.2f, 0.2f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
 	}
-	
-	public void drawRightLowerLeg()
+
+	//returns whether any of the (single robot's) static parts is in view
+	private static boolean isAnyVisible(StaticBatch statics, boolean[] visible, int jointCount)
 	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, -0.7f, 0.0f);
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.6f, 0.2f);
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorBlue);
-		mTempMatrix = roboStack.pop();
+		if(visible == null)
+			return true;
+		for(int j=0; j<jointCount; j++)
+			if(visible[j] && statics.contains(j))
+				return true;
+		return false;
 	}
-	
-	
 
-	public void drawLeftHip()
+	//draws the pre-transformed static parts with the given root transform as their model matrix
+	private void drawStaticBatch(StaticBatch statics, float[] root, int rootOffset)
 	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.4f, -1.2f, 0.0f);
-		if(isDancing){
-		if(5000<_time && _time<7500)
-		{
-			Matrix.rotateM(mTempMatrix, 0, leftHipAngle, -1.0f, 0.0f, 0.0f);
-		}
-		else if(7500<_time && _time<=10000)
+		Matrix.multiplyMM(mMVMatrix, 0, mViewMatrix, 0, root, rootOffset);  //"M * V"
+		Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVMatrix, 0); //"MV * P"
+
+		mGl.glUseProgram(mPerVertexProgramHandle); //the per-vertex shader, with its color attribute read from the buffer
+		mGl.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVMatrix, 0);
+		mGl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+		statics.draw(mGl, mPositionHandle, mNormalHandle, mColorHandle);
+	}
+
+	//returns the mesh to draw a part with: spheres get the level of detail that suits their size on screen
+	private int selectMesh(int mesh, int slot, float[] models, int modelOffset)
+	{
+		if(mesh != ModelFactory.SPHERE_MESH)
+			return mesh;
+		float radius = LevelOfDetail.getScreenRadius(models, modelOffset, 1.0f, mViewMatrix, mProjectionMatrix, mHeight); //the spheres have radius 1
+		return mSphereLod.select(slot, radius);
+	}
+
+	//logs the average time spent posing the crowd every few hundred frames
+	private void reportCrowdTime()
+	{
+		mCrowdNanos += mCrowd.getLastUpdateNanos();
+		if(++mCrowdFrames == 300)
 		{
-			Matrix.rotateM(mTempMatrix, 0, -leftHipAngle, 1.0f, 0.0f, 0.0f);
-		}
+			Log.d(TAG, "Posed "+mCrowd.getRobotCount()+" robots on "+mCrowd.getThreadCount()+" threads in "
+					+(mCrowdNanos/mCrowdFrames/1000)+" us per frame");
+			mCrowdNanos = 0;
+			mCrowdFrames = 0;
 		}
-		drawLeftUpperLeg();
-		Matrix.scaleM(mTempMatrix, 0, 0.3f, 0.3f, 0.3f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
 	}
-	
-	public void drawLeftUpperLeg()
+
+	//the vertices of one of the meshes, decoded from the copy already loaded (from MeshCache, or generated once at startup)
+	//rather than generated again; spheres come back as positions only
+	private IndexedMesh getSourceMesh(int mesh)
 	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, -0.6f, 0.0f);
-		drawLeftKnee();
-		Matrix.scaleM(mTempMatrix, 0, 0.25f, 0.6f, 0.25f);
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorGrey);
-		mTempMatrix = roboStack.pop();
+		if(mesh == ModelFactory.CUBE_MESH)
+			return IndexedMesh.fromTriangles(mModels.getCubeData(), 6); //the cube's data is kept as floats anyway
+		return mMeshes.get(mesh).toIndexedMesh();
 	}
-	
-	public void drawLeftKnee()
-	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, -0.6f, 0.0f);
-		if(isDancing){
-			if(5000<_time && _time<7500)
-			{
-				Matrix.rotateM(mTempMatrix, 0, leftKneeAngle, -1.0f, 0.0f, 0.0f);
-			}
-			else if(7500<_time && _time<=10000)
+
+	//returns the batcher, creating it (on the GL thread) the first time it is needed
+	private DrawBatcher getBatcher()
+	{
+		if(mBatcher == null)
+		{
+			IndexedMesh[] sources = new IndexedMesh[ModelFactory.MESH_COUNT];
+			VertexFormat[] formats = new VertexFormat[ModelFactory.MESH_COUNT];
+			sources[ModelFactory.CUBE_MESH] = getSourceMesh(ModelFactory.CUBE_MESH);
+			formats[ModelFactory.CUBE_MESH] = CUBE_FORMAT;
+			int[] sphereLevels = ModelFactory.getSphereDetailLevels();
+			for(int mesh=0; mesh<ModelFactory.MESH_COUNT; mesh++)
 			{
-				Matrix.rotateM(mTempMatrix, 0, -leftKneeAngle, 1.0f, 0.0f, 0.0f);
+				if(sphereLevels[mesh] >= 0)
+				{
+					sources[mesh] = getSourceMesh(mesh);
+					formats[mesh] = SPHERE_FORMAT;
+				}
 			}
+			mBatcher = new DrawBatcher(mGl, mPrograms, sources, formats);
+			mBatcher.onSurfaceCreated();
 		}
-		drawLeftLowerLeg();
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.2f, 0.2f);
-		drawPackedTriangleBuffer(mSphereData, mSphereVertexCount, mTempMatrix, mColorGreen);
-		mTempMatrix = roboStack.pop();
+		return mBatcher;
 	}
-	
-	public void drawLeftLowerLeg()
+
+	//returns the skinner, creating it (on the GL thread) the first time it is needed
+	private PaletteSkinner getSkinner()
 	{
-		float[] saved = new float[16];
-		System.arraycopy(mTempMatrix, 0, saved, 0, 16);
-		roboStack.push(saved);
-		Matrix.translateM(mTempMatrix, 0, 0.0f, -0.7f, 0.0f);
-		Matrix.scaleM(mTempMatrix, 0, 0.2f, 0.6f, 0.2f);
-		drawPackedTriangleBuffer(mCubeData, mCubeVertexCount, mTempMatrix, mColorBlue);
-		mTempMatrix = roboStack.pop();
+		if(mSkinner == null)
+		{
+			IndexedMesh[] sources = new IndexedMesh[ModelFactory.MESH_COUNT];
+			sources[ModelFactory.CUBE_MESH] = getSourceMesh(ModelFactory.CUBE_MESH);
+			sources[ModelFactory.SPHERE_MESH] = getSourceMesh(ModelFactory.SPHERE_MESH).withPositionsAsNormals();
+			mSkinner = new PaletteSkinner(mGl, mPrograms, mRobot, sources, CUBE_FORMAT); //one format for every part, so the spheres keep their normals
+			mSkinner.onSurfaceCreated();
+		}
+		return mSkinner;
 	}
-	
-	
-	
+
 	/**
-	 * Draws a triangle buffer with the given modelMatrix and single color. 
+	 * Draws a mesh (stored in a GPU buffer) with the given modelMatrix and single color. 
 	 * Note the view matrix is defined per program.
 	 */			
-	private void drawPackedTriangleBuffer(FloatBuffer buffer, int vertexCount, float[] modelMatrix, float[] color)
+	private void drawPackedTriangleBuffer(GpuMesh mesh, float[] modelMatrix, int modelOffset, float[] color, int colorOffset)
 	{		
 		//Calculate MV and MVPMatrix. Note written as MVP, but really P*V*M
-		Matrix.multiplyMM(mMVMatrix, 0, mViewMatrix, 0, modelMatrix, 0);  //"M * V"
+		Matrix.multiplyMM(mMVMatrix, 0, mViewMatrix, 0, modelMatrix, modelOffset);  //"M * V"
 		Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVMatrix, 0); //"MV * P"
 
-		GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVMatrix, 0); //put combined matrixes in the shader variables
-		GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
-
-		
-		final int stride = (POSITION_DATA_SIZE + NORMAL_DATA_SIZE) * BYTES_PER_FLOAT; //how big of steps we take through the buffer
-		
-		buffer.position(0); //reset buffer start to 0 (where the position data starts)
-		GLES20.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, stride, buffer); //note the stride lets us step over the normal data!
-		GLES20.glEnableVertexAttribArray(mPositionHandle);
+		mGl.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVMatrix, 0); //put combined matrixes in the shader variables
+		mGl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 
-		buffer.position(POSITION_DATA_SIZE); //shift pointer to where the normal data starts
-		GLES20.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, stride, buffer); //note the stride lets us step over the position data!
-		GLES20.glEnableVertexAttribArray(mNormalHandle);
+		mesh.bind(mGl, mPositionHandle, mNormalHandle); //the vertex data is already on the GPU; just point the shader at it
 
 		//put color data in the shader variable
-		GLES20.glVertexAttrib4fv(mColorHandle, color, 0);
+		mGl.glVertexAttrib4fv(mColorHandle, color, colorOffset);
 
 		//This the OpenGL command to draw the specified number of vertices (as triangles; that is, every 3 coordinates). 
-		GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexCount);
+		mesh.draw(mGl);
 	}		
 
 	
@@ -662,20 +835,21 @@ public class RobotRenderer implements GLSurfaceView.Renderer
 		Matrix.multiplyMM(mMVMatrix, 0, mModelMatrix, 0, mViewMatrix, 0);  //M * V
 		Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVMatrix, 0); //P * MV 
 
-		GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVMatrix, 0);
-		GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+		mGl.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVMatrix, 0);
+		mGl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 
 		// Pass in the position information
+		MeshRegistry.unbind(mGl); //the axis is a client-side buffer, not a GPU one
 		mAxisBuffer.position(0); //reset buffer start to 0 (just in case)
-		GLES20.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, 0, mAxisBuffer); 
-		GLES20.glEnableVertexAttribArray(mPositionHandle);
-		GLES20.glDisableVertexAttribArray(mNormalHandle); //turn off the buffer version of normals
-		GLES20.glVertexAttrib3fv(mNormalHandle, lightNormal, 0); //pass particular normal (so points are bright)
+		mGl.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, 0, mAxisBuffer); 
+		mGl.glEnableVertexAttribArray(mPositionHandle);
+		mGl.glDisableVertexAttribArray(mNormalHandle); //turn off the buffer version of normals
+		mGl.glVertexAttrib3fv(mNormalHandle, lightNormal, 0); //pass particular normal (so points are bright)
 
 		//GLES20.glDisableVertexAttribArray(mColorHandle); //just in case it was enabled earlier
-		GLES20.glVertexAttrib4fv(mColorHandle, mColorGrey, 0); //put color in the shader variable
+		mGl.glVertexAttrib4fv(mColorHandle, RobotModel.GREY, 0); //put color in the shader variable
 		
-		GLES20.glDrawArrays(GLES20.GL_POINTS, 0, mAxisCount); //draw the axis (as points!)
+		mGl.glDrawArrays(GLES20.GL_POINTS, 0, mAxisCount); //draw the axis (as points!)
 	}
 
 }
\ No newline at end of file
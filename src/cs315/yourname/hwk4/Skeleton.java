@@ -0,0 +1,575 @@
+package cs315.yourname.hwk4;
+
+import java.util.Arrays;
+
+import android.opengl.Matrix;
+
+/**
+ * A flattened, data-driven hierarchy of joints (the "parts" of a model).
+ * Joints are stored in parallel arrays in depth-first order--every joint is followed directly by all of its descendants--so
+ * the world transform of every joint can be computed in a single linear pass, with no recursion, and a whole subtree
+ * can be skipped by jumping to the index where it ends.
+ *
+ * Each joint has:
+ * 	a bind transform (relative to its parent; inherited by its children)
+ * 	a pose transform (the animated part, applied after the bind transform; also inherited by children)
+ * 	a shape transform (applied only to this joint's own mesh; NOT inherited by children)
+ * 	a mesh id and a color to draw the mesh with
+ * 	a bounding sphere around its mesh, and one around its whole subtree, for frustum culling
+ * All matrices are 4x4 column-major (like android.opengl.Matrix), stored 16 floats per joint. They must all be affine (as are
+ * the root transforms passed in), since they are multiplied with Affine3.
+ *
+ * The skeleton's own world and model transforms are cached between updates: a joint is only recomputed if its pose
+ * was written since its transforms were last computed ("dirty"), or its parent's world transform changed (dirtiness flows
+ * down to the whole subtree). Whoever writes a pose says which joints it wrote (setPoseIdentity(), markPoseChanged()),
+ * and each joint also keeps whether anything in its subtree is dirty, so update() jumps straight over clean subtrees:
+ * an idle skeleton costs one check of each root to update, and a dancing one only pays for what moves.
+ */
+public class Skeleton
+{
+	public static final String TAG = "Skeleton";
+
+	public static final int NO_PARENT = -1; //parent index of a root joint
+	public static final int NO_MESH = -1; //mesh id of a joint that is not drawn
+	public static final int MATRIX_SIZE = 16;
+	public static final int COLOR_SIZE = 4;
+	private static final int BOUND_SIZE = 4; //x, y, z, radius
+
+	private int jointCount;
+	private String[] names;
+	private int[] parents;
+	private int[] meshIds;
+	private float[] colors;
+	private float[] bindTransforms;
+	private float[] shapeTransforms;
+	private float[] poseTransforms;
+	private float[] worldTransforms; //bind * pose, concatenated with the parent's world transform
+	private float[] modelTransforms; //world * shape; what we actually draw each mesh with
+
+	//culling
+	private final float[] meshRadii; //how big each mesh is (around its origin), by mesh id; null if unknown
+	private int[] subtreeEnds; //the index just past each joint's last descendant
+	private float[] meshBounds; //a sphere around each joint's mesh, in the joint's space
+	private float[] subtreeRadii; //how far the joint's subtree (including its mesh) reaches from its origin, in any pose
+	private boolean[] visible; //whether each joint's mesh was in the frustum (as of the last update)
+
+	//dirty flags, so update() only recomputes what moved
+	private boolean[] poseChanged; //whether each joint's pose was written since its world transform was last computed
+	private boolean[] poseIdentity; //whether each joint's pose is known to be the identity (so resetting it changes nothing)
+	private boolean[] dirtyBelow; //whether anything in each joint's subtree (itself included) needs looking at in the next update
+	private boolean[] worldValid; //whether each joint's world transform is up to date with its pose (not if it was culled)
+	private boolean[] modelValid; //whether each joint's model transform is up to date with its world transform
+	private boolean[] worldChanged; //whether each joint's world transform changed in the current update (so its children's must too)
+	private final float[] appliedRoot = new float[MATRIX_SIZE]; //the root transform of the last update
+	private final Frustum appliedFrustum = new Frustum(); //the frustum of the last update
+	private boolean appliedCulling; //whether the last update culled at all
+	private int recomputedCount; //how many joints the last update recomputed
+
+	private final float[] scratch = new float[MATRIX_SIZE]; //temporary matrix for the update pass
+
+	/**
+	 * Creates an empty skeleton with room for the given number of joints (it will grow if needed).
+	 * Its joints are never culled, since it doesn't know how big their meshes are.
+	 */
+	public Skeleton(int capacity)
+	{
+		this(capacity, null);
+	}
+
+	/**
+	 * Creates an empty skeleton with room for the given number of joints (it will grow if needed)
+	 * @param meshRadii The radius of a sphere around the origin that holds each mesh, by mesh id (such as
+	 * ModelFactory.getBoundingRadii()). Joints can only be culled when this is given.
+	 */
+	public Skeleton(int capacity, float[] meshRadii)
+	{
+		this.meshRadii = meshRadii;
+		names = new String[capacity];
+		parents = new int[capacity];
+		meshIds = new int[capacity];
+		colors = new float[capacity*COLOR_SIZE];
+		bindTransforms = new float[capacity*MATRIX_SIZE];
+		shapeTransforms = new float[capacity*MATRIX_SIZE];
+		poseTransforms = new float[capacity*MATRIX_SIZE];
+		worldTransforms = new float[capacity*MATRIX_SIZE];
+		modelTransforms = new float[capacity*MATRIX_SIZE];
+		subtreeEnds = new int[capacity];
+		meshBounds = new float[capacity*BOUND_SIZE];
+		subtreeRadii = new float[capacity];
+		visible = new boolean[capacity];
+		poseChanged = new boolean[capacity];
+		poseIdentity = new boolean[capacity];
+		dirtyBelow = new boolean[capacity];
+		worldValid = new boolean[capacity];
+		modelValid = new boolean[capacity];
+		worldChanged = new boolean[capacity];
+	}
+
+	/**
+	 * Adds a joint to the skeleton. Joints must be added depth-first: a joint's parent must be the last joint added,
+	 * or one of its ancestors.
+	 * @param name A name for the joint (used for lookups by animation data)
+	 * @param parent The index of the parent joint, or NO_PARENT for a root
+	 * @param bind The bind transform (relative to the parent)
+	 * @param shape The shape transform for this joint's mesh only
+	 * @param meshId The mesh to draw for this joint, or NO_MESH
+	 * @param color The (rgba) color to draw the mesh with
+	 * @return The index of the new joint
+	 */
+	public int addJoint(String name, int parent, float[] bind, float[] shape, int meshId, float[] color)
+	{
+		if(parent < NO_PARENT || parent >= jointCount)
+			throw new IllegalArgumentException("Parent of joint "+name+" must be added before it: "+parent);
+		if(parent != NO_PARENT && subtreeEnds[parent] != jointCount)
+			throw new IllegalArgumentException("Joint "+name+" must be added right after the rest of its parent's subtree (depth-first)");
+
+		if(jointCount == parents.length)
+			grow(Math.max(4, jointCount*2));
+
+		int j = jointCount++;
+		names[j] = name;
+		parents[j] = parent;
+		meshIds[j] = meshId;
+		System.arraycopy(color, 0, colors, j*COLOR_SIZE, COLOR_SIZE);
+		System.arraycopy(bind, 0, bindTransforms, j*MATRIX_SIZE, MATRIX_SIZE);
+		System.arraycopy(shape, 0, shapeTransforms, j*MATRIX_SIZE, MATRIX_SIZE);
+		Matrix.setIdentityM(poseTransforms, j*MATRIX_SIZE);
+		poseIdentity[j] = true;
+		visible[j] = true;
+		worldValid[j] = false; //computed in the next update
+		markDirtyBelow(j);
+
+		subtreeEnds[j] = j+1;
+		for(int a=parent; a != NO_PARENT; a = parents[a])
+			subtreeEnds[a] = j+1; //the new joint is now the end of all of its ancestors' subtrees
+
+		//the mesh's bounding sphere, moved and scaled into the joint's space by the shape transform
+		int b = j*BOUND_SIZE;
+		meshBounds[b] = shape[12];
+		meshBounds[b+1] = shape[13];
+		meshBounds[b+2] = shape[14];
+		if(meshId == NO_MESH)
+			meshBounds[b+3] = 0;
+		else if(meshRadii == null)
+			meshBounds[b+3] = Float.POSITIVE_INFINITY; //never culled
+		else
+			meshBounds[b+3] = meshRadii[meshId] * maxScale(shape, 0);
+		updateSubtreeRadii();
+
+		return j;
+	}
+
+	//recomputes how far each joint's subtree reaches. Poses are assumed to only rotate joints (as animation clips do), so
+	//a child's subtree can point any which way around the child's origin, which the bind transform places in the parent's space
+	private void updateSubtreeRadii()
+	{
+		for(int j=0; j<jointCount; j++)
+		{
+			int b = j*BOUND_SIZE;
+			subtreeRadii[j] = length(meshBounds[b], meshBounds[b+1], meshBounds[b+2]) + meshBounds[b+3];
+		}
+		for(int j=jointCount-1; j>=0; j--) //children come after their parents, so each is done before its parent
+		{
+			int parent = parents[j];
+			if(parent == NO_PARENT)
+				continue;
+			int m = j*MATRIX_SIZE;
+			float reach = length(bindTransforms[m+12], bindTransforms[m+13], bindTransforms[m+14]) + subtreeRadii[j]*maxScale(bindTransforms, m);
+			subtreeRadii[parent] = Math.max(subtreeRadii[parent], reach);
+		}
+	}
+
+	private static float length(float x, float y, float z)
+	{
+		return (float)Math.sqrt(x*x + y*y + z*z);
+	}
+
+	//the most the given matrix stretches anything by (the length of its longest axis)
+	private static float maxScale(float[] m, int offset)
+	{
+		float x = m[offset]*m[offset] + m[offset+1]*m[offset+1] + m[offset+2]*m[offset+2];
+		float y = m[offset+4]*m[offset+4] + m[offset+5]*m[offset+5] + m[offset+6]*m[offset+6];
+		float z = m[offset+8]*m[offset+8] + m[offset+9]*m[offset+9] + m[offset+10]*m[offset+10];
+		return (float)Math.sqrt(Math.max(x, Math.max(y, z)));
+	}
+
+	//resizes all of the parallel arrays
+	private void grow(int capacity)
+	{
+		names = Arrays.copyOf(names, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		meshIds = Arrays.copyOf(meshIds, capacity);
+		colors = Arrays.copyOf(colors, capacity*COLOR_SIZE);
+		bindTransforms = Arrays.copyOf(bindTransforms, capacity*MATRIX_SIZE);
+		shapeTransforms = Arrays.copyOf(shapeTransforms, capacity*MATRIX_SIZE);
+		poseTransforms = Arrays.copyOf(poseTransforms, capacity*MATRIX_SIZE);
+		worldTransforms = Arrays.copyOf(worldTransforms, capacity*MATRIX_SIZE);
+		modelTransforms = Arrays.copyOf(modelTransforms, capacity*MATRIX_SIZE);
+		subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+		meshBounds = Arrays.copyOf(meshBounds, capacity*BOUND_SIZE);
+		subtreeRadii = Arrays.copyOf(subtreeRadii, capacity);
+		visible = Arrays.copyOf(visible, capacity);
+		poseChanged = Arrays.copyOf(poseChanged, capacity);
+		poseIdentity = Arrays.copyOf(poseIdentity, capacity);
+		dirtyBelow = Arrays.copyOf(dirtyBelow, capacity);
+		worldValid = Arrays.copyOf(worldValid, capacity);
+		modelValid = Arrays.copyOf(modelValid, capacity);
+		worldChanged = Arrays.copyOf(worldChanged, capacity);
+	}
+
+	/**
+	 * Returns the index of the joint with the given name, or -1 if there is none
+	 */
+	public int findJoint(String name)
+	{
+		for(int j=0; j<jointCount; j++)
+			if(names[j].equals(name))
+				return j;
+		return -1;
+	}
+
+	public int getJointCount()
+	{
+		return jointCount;
+	}
+
+	public String getName(int joint)
+	{
+		return names[joint];
+	}
+
+	public int getParent(int joint)
+	{
+		return parents[joint];
+	}
+
+	public int getMeshId(int joint)
+	{
+		return meshIds[joint];
+	}
+
+	/**
+	 * Returns the index just past the last descendant of the given joint (its subtree is the joints from it up to there)
+	 */
+	public int getSubtreeEnd(int joint)
+	{
+		return subtreeEnds[joint];
+	}
+
+	/**
+	 * Returns whether each joint's mesh was (at least partly) inside the frustum, as of the last update
+	 */
+	public boolean[] getVisibility()
+	{
+		return visible;
+	}
+
+	/**
+	 * Returns the packed (rgba) colors of every joint; 4 floats per joint
+	 */
+	public float[] getColors()
+	{
+		return colors;
+	}
+
+	/**
+	 * Returns the packed bind transforms; 16 floats per joint (don't change them)
+	 */
+	public float[] getBindTransforms()
+	{
+		return bindTransforms;
+	}
+
+	/**
+	 * Returns the packed shape transforms; 16 floats per joint (don't change them)
+	 */
+	public float[] getShapeTransforms()
+	{
+		return shapeTransforms;
+	}
+
+	/**
+	 * Returns the packed pose transforms; 16 floats per joint. Animations write into this array directly, and then
+	 * call markPoseChanged() for each joint they wrote (or setPoseIdentity() instead), so update() knows what moved.
+	 */
+	public float[] getPoseTransforms()
+	{
+		return poseTransforms;
+	}
+
+	/**
+	 * Returns the packed world transforms (as of the last update); 16 floats per joint
+	 */
+	public float[] getWorldTransforms()
+	{
+		return worldTransforms;
+	}
+
+	/**
+	 * Returns the packed model transforms (world * shape, as of the last update); 16 floats per joint
+	 */
+	public float[] getModelTransforms()
+	{
+		return modelTransforms;
+	}
+
+	/**
+	 * Resets every joint to its bind pose (identity pose transforms); joints already there aren't marked as changed
+	 */
+	public void resetPose()
+	{
+		for(int j=0; j<jointCount; j++)
+			setPoseIdentity(j);
+	}
+
+	/**
+	 * Resets a joint to its bind pose (the identity pose transform), marking it changed only if it wasn't there already
+	 */
+	public void setPoseIdentity(int joint)
+	{
+		if(poseIdentity[joint])
+			return;
+		Matrix.setIdentityM(poseTransforms, joint*MATRIX_SIZE);
+		markPoseChanged(joint);
+		poseIdentity[joint] = true;
+	}
+
+	/**
+	 * Notes that a joint's pose transform was written (in the getPoseTransforms() array), so the next update() recomputes
+	 * it and its subtree
+	 */
+	public void markPoseChanged(int joint)
+	{
+		poseChanged[joint] = true;
+		poseIdentity[joint] = false;
+		markDirtyBelow(joint);
+	}
+
+	//notes that the joint needs looking at in the next update, and so do all of its ancestors (to reach it)
+	private void markDirtyBelow(int joint)
+	{
+		for(int j=joint; j != NO_PARENT && !dirtyBelow[j]; j = parents[j]) //an ancestor already marked has all of its own marked
+			dirtyBelow[j] = true;
+	}
+
+	/**
+	 * Computes the world and model transforms of every joint in one linear pass.
+	 * Since parents come before children, a parent's world transform is always ready when its children need it.
+	 * @param root The transform to place the root joint(s) with
+	 * @param rootOffset Where in the root array the matrix starts
+	 */
+	public void update(float[] root, int rootOffset)
+	{
+		update(root, rootOffset, null);
+	}
+
+	/**
+	 * Computes the world and model transforms of every joint that might be seen, and which joints' meshes are visible.
+	 * A joint whose whole subtree is outside the frustum is skipped along with its subtree (so their transforms are left stale).
+	 * Only the joints that are dirty (their pose, or an ancestor's, or the root changed since they were last computed) are
+	 * recomputed; the rest keep their cached transforms. Unless the root or the frustum changed, a subtree with nothing
+	 * dirty in it isn't even visited.
+	 * @param frustum The camera's frustum (in the same space as the root transform), or null to not cull anything
+	 */
+	public void update(float[] root, int rootOffset, Frustum frustum)
+	{
+		boolean rootDirty = copyIfChanged(root, rootOffset, appliedRoot, 0);
+		boolean cullingChanged = (frustum != null) ? appliedFrustum.copyIfChanged(frustum) || !appliedCulling : appliedCulling;
+		appliedCulling = frustum != null;
+		recomputedCount = 0;
+		int j = 0;
+		while(j < jointCount)
+		{
+			int m = j*MATRIX_SIZE;
+			int parent = parents[j];
+			boolean parentMoved = (parent == NO_PARENT) ? rootDirty : worldChanged[parent];
+			if(!dirtyBelow[j] && !parentMoved && !cullingChanged)
+			{
+				j = subtreeEnds[j]; //nothing in the subtree changed, nor what it hangs from, nor what can be seen
+				continue;
+			}
+			dirtyBelow[j] = false;
+
+			boolean dirty = poseChanged[j] || !worldValid[j] || parentMoved;
+			poseChanged[j] = false;
+			worldChanged[j] = dirty;
+			if(dirty)
+			{
+				if(parent == NO_PARENT)
+					Affine3.multiplyMM(scratch, 0, root, rootOffset, bindTransforms, m);
+				else
+					Affine3.multiplyMM(scratch, 0, worldTransforms, parent*MATRIX_SIZE, bindTransforms, m);
+				Affine3.multiplyMM(worldTransforms, m, scratch, 0, poseTransforms, m);
+				worldValid[j] = true;
+				modelValid[j] = false;
+				recomputedCount++;
+			}
+
+			boolean seen = true;
+			if(frustum != null)
+			{
+				float scale = maxScale(worldTransforms, m);
+				if(!frustum.intersectsSphere(worldTransforms[m+12], worldTransforms[m+13], worldTransforms[m+14], subtreeRadii[j]*scale))
+				{
+					int end = subtreeEnds[j];
+					for(int k=j; k<end; k++)
+						visible[k] = false;
+					for(int k=j+1; k<end; k++)
+						worldValid[k] = false; //skipped, so recomputed once they come back into view
+					if(end > j+1)
+						markDirtyBelow(j);
+					j = end; //skip the whole subtree
+					continue;
+				}
+				seen = meshIds[j] != NO_MESH && isMeshInFrustum(j, worldTransforms, m, scale, frustum);
+			}
+			visible[j] = seen;
+			if(seen && !modelValid[j])
+			{
+				Affine3.multiplyMM(modelTransforms, m, worldTransforms, m, shapeTransforms, m);
+				modelValid[j] = true;
+			}
+			j++;
+		}
+	}
+
+	/**
+	 * Returns how many joints' transforms the last update() actually recomputed (the rest were clean)
+	 */
+	public int getRecomputedCount()
+	{
+		return recomputedCount;
+	}
+
+	/**
+	 * Marks every joint dirty, so the next update() recomputes them all (needed if the transforms arrays were changed
+	 * from outside without saying which joints; see markPoseChanged())
+	 */
+	public void invalidate()
+	{
+		Arrays.fill(worldValid, false);
+		Arrays.fill(poseIdentity, false); //the poses may have been written too
+		Arrays.fill(dirtyBelow, true);
+	}
+
+	//copies 16 floats from one matrix to the other, returning whether they were different
+	private static boolean copyIfChanged(float[] from, int fromOffset, float[] to, int toOffset)
+	{
+		boolean changed = false;
+		for(int i=0; i<MATRIX_SIZE; i++)
+		{
+			if(from[fromOffset+i] != to[toOffset+i])
+			{
+				to[toOffset+i] = from[fromOffset+i];
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Computes the model transforms (world * shape) of every joint for the given pose, without touching this skeleton's own
+	 * pose or transforms. This can be called from several threads at once, as long as each uses its own output and scratch arrays.
+	 * @param pose Packed pose transforms for every joint (16 floats per joint), starting at poseOffset
+	 * @param models Where to write the model transforms (16 floats per joint), starting at modelOffset
+	 * @param scratch Temporary space; must hold at least getScratchSize() floats
+	 */
+	public void computeModelTransforms(float[] root, int rootOffset, float[] pose, int poseOffset, float[] models, int modelOffset, float[] scratch)
+	{
+		computeTransforms(root, rootOffset, pose, poseOffset, scratch, MATRIX_SIZE, models, modelOffset, scratch, null, null, 0);
+	}
+
+	/**
+	 * Like computeModelTransforms(), but culling against the given frustum: writes whether each joint's mesh is visible
+	 * (starting at visibleOffset), and skips the transforms of joints whose subtrees are entirely outside of it.
+	 */
+	public void computeModelTransforms(float[] root, int rootOffset, float[] pose, int poseOffset, float[] models, int modelOffset, float[] scratch,
+			Frustum frustum, boolean[] visible, int visibleOffset)
+	{
+		computeTransforms(root, rootOffset, pose, poseOffset, scratch, MATRIX_SIZE, models, modelOffset, scratch, frustum, visible, visibleOffset);
+	}
+
+	/**
+	 * Returns whether any part of the skeleton (in any pose) might be inside the frustum, when placed with the given root
+	 * transform. This is a quick test for a whole model, without computing any of its joints' transforms.
+	 */
+	public boolean intersects(Frustum frustum, float[] root, int rootOffset)
+	{
+		float rootScale = maxScale(root, rootOffset);
+		for(int j=0; j<jointCount; j = subtreeEnds[j]) //each root joint
+		{
+			int m = j*MATRIX_SIZE;
+			float x = bindTransforms[m+12], y = bindTransforms[m+13], z = bindTransforms[m+14];
+			float cx = root[rootOffset]*x + root[rootOffset+4]*y + root[rootOffset+8]*z + root[rootOffset+12];
+			float cy = root[rootOffset+1]*x + root[rootOffset+5]*y + root[rootOffset+9]*z + root[rootOffset+13];
+			float cz = root[rootOffset+2]*x + root[rootOffset+6]*y + root[rootOffset+10]*z + root[rootOffset+14];
+			if(frustum.intersectsSphere(cx, cy, cz, subtreeRadii[j]*maxScale(bindTransforms, m)*rootScale))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns how much scratch space computeModelTransforms() needs
+	 */
+	public int getScratchSize()
+	{
+		return (jointCount+1)*MATRIX_SIZE;
+	}
+
+	//the linear pass: world = parentWorld * bind * pose, model = world * shape. Uses the first 16 floats of temp.
+	//With a frustum, subtrees outside of it are jumped over, and only visible meshes get model transforms
+	private void computeTransforms(float[] root, int rootOffset, float[] pose, int poseOffset, float[] world, int worldOffset,
+			float[] models, int modelOffset, float[] temp, Frustum frustum, boolean[] visible, int visibleOffset)
+	{
+		int j = 0;
+		while(j < jointCount)
+		{
+			int m = j*MATRIX_SIZE;
+			int parent = parents[j];
+			if(parent == NO_PARENT)
+				Affine3.multiplyMM(temp, 0, root, rootOffset, bindTransforms, m);
+			else
+				Affine3.multiplyMM(temp, 0, world, worldOffset + parent*MATRIX_SIZE, bindTransforms, m);
+			int w = worldOffset + m;
+			Affine3.multiplyMM(world, w, temp, 0, pose, poseOffset + m);
+
+			if(frustum != null)
+			{
+				float scale = maxScale(world, w);
+				if(!frustum.intersectsSphere(world[w+12], world[w+13], world[w+14], subtreeRadii[j]*scale))
+				{
+					int end = subtreeEnds[j];
+					for(int k=j; k<end; k++)
+						visible[visibleOffset + k] = false;
+					j = end; //skip the whole subtree
+					continue;
+				}
+
+				boolean seen = meshIds[j] != NO_MESH && isMeshInFrustum(j, world, w, scale, frustum);
+				visible[visibleOffset + j] = seen;
+				if(seen)
+					Affine3.multiplyMM(models, modelOffset + m, world, w, shapeTransforms, m);
+			}
+			else
+			{
+				if(visible != null)
+					visible[visibleOffset + j] = true;
+				Affine3.multiplyMM(models, modelOffset + m, world, w, shapeTransforms, m);
+			}
+			j++;
+		}
+	}
+
+	//whether the given joint's own mesh is in view, given its world transform (and how much that scales)
+	private boolean isMeshInFrustum(int joint, float[] world, int w, float scale, Frustum frustum)
+	{
+		int b = joint*BOUND_SIZE;
+		float x = meshBounds[b], y = meshBounds[b+1], z = meshBounds[b+2];
+		return frustum.intersectsSphere(
+				world[w]*x + world[w+4]*y + world[w+8]*z + world[w+12],
+				world[w+1]*x + world[w+5]*y + world[w+9]*z + world[w+13],
+				world[w+2]*x + world[w+6]*y + world[w+10]*z + world[w+14],
+				meshBounds[b+3]*scale);
+	}
+}
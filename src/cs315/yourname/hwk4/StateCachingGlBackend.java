@@ -0,0 +1,465 @@
+package cs315.yourname.hwk4;
+
+import java.nio.Buffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import android.opengl.GLES20;
+
+/**
+ * A GlBackend that sits in front of another one and skips calls that wouldn't change anything: using the program
+ * that is already in use, binding the buffer that is already bound, re-enabling an enabled attribute array, pointing an
+ * attribute at the same place again, and uploading the same uniform or constant attribute values again.
+ * Everything else is passed straight through.
+ *
+ * The cache only knows about calls made through it, so all GL calls must go through it, and invalidate() must be called
+ * whenever the context is (re)created.
+ */
+public class StateCachingGlBackend implements GlBackend
+{
+	public static final String TAG = "StateCachingGlBackend";
+
+	private static final int NONE = -1; //for state we don't know
+	private static final int POINTER_SIZE = 6; //ints per attribute pointer
+
+	private final GlBackend gl;
+	private long skipped; //how many calls we didn't pass on
+
+	private int program;
+	private int arrayBuffer;
+	private int elementArrayBuffer;
+
+	//per vertex attribute
+	private boolean[] attribEnabled = new boolean[0];
+	private int[] attribPointers = new int[0]; //buffer, size, type, normalized, stride, offset; buffer is NONE if unknown
+	private Values[] attribValues = new Values[0]; //the constant value of each attribute, or null if unknown
+
+	//the last values uploaded to each uniform location, for each program
+	private final HashMap<Integer, Values[]> uniforms = new HashMap<Integer, Values[]>();
+	private Values[] programUniforms; //the entry for the program in use
+
+	public StateCachingGlBackend(GlBackend gl)
+	{
+		this.gl = gl;
+		invalidate();
+	}
+
+	/**
+	 * Forgets all of the state we know about; call whenever a new context is created (e.g., from onSurfaceCreated())
+	 */
+	public void invalidate()
+	{
+		program = NONE;
+		arrayBuffer = NONE;
+		elementArrayBuffer = NONE;
+		attribEnabled = new boolean[0];
+		attribPointers = new int[0];
+		attribValues = new Values[0];
+		uniforms.clear();
+		programUniforms = null;
+	}
+
+	/**
+	 * Returns how many calls were skipped (since the last clearSkippedCount())
+	 */
+	public long getSkippedCount()
+	{
+		return skipped;
+	}
+
+	public void clearSkippedCount()
+	{
+		skipped = 0;
+	}
+
+	//makes room to track the given attribute
+	private void trackAttrib(int index)
+	{
+		if(index < attribEnabled.length)
+			return;
+		int size = index+1;
+		int oldSize = attribEnabled.length;
+		attribEnabled = Arrays.copyOf(attribEnabled, size);
+		attribPointers = Arrays.copyOf(attribPointers, size*POINTER_SIZE);
+		attribValues = Arrays.copyOf(attribValues, size);
+		for(int i=oldSize; i<size; i++)
+			attribPointers[i*POINTER_SIZE] = NONE;
+	}
+
+	//returns true (and remembers the new values) if the given values differ from the cached ones
+	private static boolean changed(Values[] cache, int slot, float[] values, int offset, int length)
+	{
+		Values cached = cache[slot];
+		if(cached == null)
+			cached = cache[slot] = new Values();
+		else if(cached.length == length)
+		{
+			boolean same = true;
+			for(int i=0; i<length; i++)
+			{
+				if(Float.floatToRawIntBits(cached.values[i]) != Float.floatToRawIntBits(values[offset+i])) //so NaNs and -0 count as changes
+				{
+					same = false;
+					break;
+				}
+			}
+			if(same)
+				return false;
+		}
+
+		if(cached.values.length < length)
+			cached.values = new float[length];
+		System.arraycopy(values, offset, cached.values, 0, length);
+		cached.length = length;
+		return true;
+	}
+
+	//the last values given to a uniform or attribute; the array only grows, so changing the count doesn't allocate
+	private static class Values
+	{
+		private float[] values = new float[16];
+		private int length;
+	}
+
+	//returns the cache slot array for the current program, with room for the given location (or null if we can't cache it)
+	private Values[] uniformCache(int location)
+	{
+		if(programUniforms == null || location < 0)
+			return null;
+		if(location >= programUniforms.length)
+		{
+			programUniforms = Arrays.copyOf(programUniforms, Math.max(location+1, programUniforms.length*2));
+			uniforms.put(program, programUniforms);
+		}
+		return programUniforms;
+	}
+
+	//state
+
+	@Override
+	public void glEnable(int cap)
+	{
+		gl.glEnable(cap);
+	}
+
+	@Override
+	public void glDepthFunc(int func)
+	{
+		gl.glDepthFunc(func);
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha)
+	{
+		gl.glClearColor(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glClear(int mask)
+	{
+		gl.glClear(mask);
+	}
+
+	@Override
+	public void glViewport(int x, int y, int width, int height)
+	{
+		gl.glViewport(x, y, width, height);
+	}
+
+	//shaders and programs
+
+	@Override
+	public int glCreateShader(int type)
+	{
+		return gl.glCreateShader(type);
+	}
+
+	@Override
+	public void glShaderSource(int shader, String string)
+	{
+		gl.glShaderSource(shader, string);
+	}
+
+	@Override
+	public void glCompileShader(int shader)
+	{
+		gl.glCompileShader(shader);
+	}
+
+	@Override
+	public void glGetShaderiv(int shader, int pname, int[] params, int offset)
+	{
+		gl.glGetShaderiv(shader, pname, params, offset);
+	}
+
+	@Override
+	public String glGetShaderInfoLog(int shader)
+	{
+		return gl.glGetShaderInfoLog(shader);
+	}
+
+	@Override
+	public void glDeleteShader(int shader)
+	{
+		gl.glDeleteShader(shader);
+	}
+
+	@Override
+	public int glCreateProgram()
+	{
+		return gl.glCreateProgram();
+	}
+
+	@Override
+	public void glAttachShader(int program, int shader)
+	{
+		gl.glAttachShader(program, shader);
+	}
+
+	@Override
+	public void glLinkProgram(int program)
+	{
+		gl.glLinkProgram(program);
+		forgetProgram(program); //linking resets the uniforms
+	}
+
+	@Override
+	public void glGetProgramiv(int program, int pname, int[] params, int offset)
+	{
+		gl.glGetProgramiv(program, pname, params, offset);
+	}
+
+	@Override
+	public String glGetProgramInfoLog(int program)
+	{
+		return gl.glGetProgramInfoLog(program);
+	}
+
+	@Override
+	public void glDeleteProgram(int program)
+	{
+		gl.glDeleteProgram(program);
+		forgetProgram(program);
+	}
+
+	//forgets what we know about the given program's uniforms (and whether it is in use)
+	private void forgetProgram(int program)
+	{
+		uniforms.remove(program);
+		if(this.program == program)
+		{
+			this.program = NONE;
+			programUniforms = null;
+		}
+	}
+
+	@Override
+	public void glUseProgram(int program)
+	{
+		if(program == this.program)
+		{
+			skipped++;
+			return;
+		}
+		gl.glUseProgram(program);
+		this.program = program;
+		programUniforms = uniforms.get(program);
+		if(programUniforms == null)
+		{
+			programUniforms = new Values[8];
+			uniforms.put(program, programUniforms);
+		}
+	}
+
+	//uniforms and constant attributes
+
+	@Override
+	public int glGetUniformLocation(int program, String name)
+	{
+		return gl.glGetUniformLocation(program, name);
+	}
+
+	@Override
+	public int glGetAttribLocation(int program, String name)
+	{
+		return gl.glGetAttribLocation(program, name);
+	}
+
+	@Override
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset)
+	{
+		Values[] cache = uniformCache(location);
+		if(cache != null && !transpose && !changed(cache, location, value, offset, count*16))
+		{
+			skipped++;
+			return;
+		}
+		gl.glUniformMatrix4fv(location, count, transpose, value, offset);
+	}
+
+	@Override
+	public void glUniform4fv(int location, int count, float[] v, int offset)
+	{
+		Values[] cache = uniformCache(location);
+		if(cache != null && !changed(cache, location, v, offset, count*4))
+		{
+			skipped++;
+			return;
+		}
+		gl.glUniform4fv(location, count, v, offset);
+	}
+
+	@Override
+	public void glVertexAttrib3fv(int indx, float[] values, int offset)
+	{
+		trackAttrib(indx);
+		attribValues[indx] = null; //the 4th component is set to 1; simplest to just not cache these
+		gl.glVertexAttrib3fv(indx, values, offset);
+	}
+
+	@Override
+	public void glVertexAttrib4fv(int indx, float[] values, int offset)
+	{
+		trackAttrib(indx);
+		if(!changed(attribValues, indx, values, offset, 4))
+		{
+			skipped++;
+			return;
+		}
+		gl.glVertexAttrib4fv(indx, values, offset);
+	}
+
+	//buffers and vertex attributes
+
+	@Override
+	public void glGenBuffers(int n, int[] buffers, int offset)
+	{
+		gl.glGenBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glBindBuffer(int target, int buffer)
+	{
+		if(target == GLES20.GL_ARRAY_BUFFER)
+		{
+			if(buffer == arrayBuffer)
+			{
+				skipped++;
+				return;
+			}
+			arrayBuffer = buffer;
+		}
+		else if(target == GLES20.GL_ELEMENT_ARRAY_BUFFER)
+		{
+			if(buffer == elementArrayBuffer)
+			{
+				skipped++;
+				return;
+			}
+			elementArrayBuffer = buffer;
+		}
+		gl.glBindBuffer(target, buffer);
+	}
+
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage)
+	{
+		gl.glBufferData(target, size, data, usage);
+	}
+
+	@Override
+	public void glDeleteBuffers(int n, int[] buffers, int offset)
+	{
+		gl.glDeleteBuffers(n, buffers, offset);
+		for(int i=0; i<n; i++)
+		{
+			int buffer = buffers[offset+i];
+			if(buffer == arrayBuffer)
+				arrayBuffer = 0; //deleting a bound buffer unbinds it
+			if(buffer == elementArrayBuffer)
+				elementArrayBuffer = 0;
+			for(int p=0; p<attribPointers.length; p+=POINTER_SIZE)
+				if(attribPointers[p] == buffer)
+					attribPointers[p] = NONE; //the handle could be reused for a new buffer
+		}
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset)
+	{
+		trackAttrib(indx);
+		int p = indx*POINTER_SIZE;
+		int norm = normalized ? 1 : 0;
+		if(arrayBuffer != NONE && attribPointers[p] == arrayBuffer && attribPointers[p+1] == size && attribPointers[p+2] == type
+				&& attribPointers[p+3] == norm && attribPointers[p+4] == stride && attribPointers[p+5] == offset)
+		{
+			skipped++;
+			return;
+		}
+		gl.glVertexAttribPointer(indx, size, type, normalized, stride, offset);
+		attribPointers[p] = arrayBuffer;
+		attribPointers[p+1] = size;
+		attribPointers[p+2] = type;
+		attribPointers[p+3] = norm;
+		attribPointers[p+4] = stride;
+		attribPointers[p+5] = offset;
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr)
+	{
+		trackAttrib(indx);
+		attribPointers[indx*POINTER_SIZE] = NONE; //client-side arrays can change under us; never skip these
+		gl.glVertexAttribPointer(indx, size, type, normalized, stride, ptr);
+	}
+
+	@Override
+	public void glEnableVertexAttribArray(int index)
+	{
+		trackAttrib(index);
+		attribValues[index] = null; //GLES 2.0 leaves the constant undefined once a draw has used the array, so it must be sent again
+		if(attribEnabled[index])
+		{
+			skipped++;
+			return;
+		}
+		attribEnabled[index] = true;
+		gl.glEnableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glDisableVertexAttribArray(int index)
+	{
+		trackAttrib(index);
+		attribValues[index] = null; //GLES 2.0 leaves the constant undefined once a draw has used the array, so it must be sent again
+		if(!attribEnabled[index])
+		{
+			skipped++;
+			return;
+		}
+		attribEnabled[index] = false;
+		gl.glDisableVertexAttribArray(index);
+	}
+
+	//drawing
+
+	@Override
+	public void glDrawArrays(int mode, int first, int count)
+	{
+		gl.glDrawArrays(mode, first, count);
+	}
+
+	@Override
+	public void glDrawElements(int mode, int count, int type, int offset)
+	{
+		gl.glDrawElements(mode, count, type, offset);
+	}
+
+	//errors
+
+	@Override
+	public int glGetError()
+	{
+		return gl.glGetError();
+	}
+}
@@ -0,0 +1,269 @@
+package cs315.yourname.hwk4;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+
+/**
+ * The parts of a skeleton that don't move relative to its root, transformed once on the CPU into a single buffer, so they
+ * can all be drawn with one call and one matrix (the root's). Each vertex carries its part's color, so the batch is drawn
+ * with the regular per-vertex shader with its color attribute pointed at the buffer.
+ *
+ * A joint is static if neither it nor any of its ancestors is animated; while nothing is animated, the whole skeleton is.
+ * The buffer is only rebuilt when the set of static joints changes.
+ *
+ * Each vertex is { posX, posY, posZ, normalX, normalY, normalZ } as floats (positions are no longer within -1 to 1),
+ * then { r, g, b, a } as normalized unsigned bytes.
+ */
+public class StaticBatch
+{
+	public static final String TAG = "StaticBatch";
+
+	private static final int MATRIX_SIZE = 16;
+	private static final int STRIDE = 6*4 + 4; //bytes per vertex
+	private static final int NORMAL_OFFSET = 3*4;
+	private static final int COLOR_OFFSET = 6*4;
+
+	private final Skeleton skeleton;
+	private final IndexedMesh[] sourceMeshes; //indexed by mesh id
+
+	private boolean[] staticJoints; //the set the buffer was built for; null until built
+	private int staticCount;
+	private ByteBuffer vertexData; //the CPU-side copy
+	private ShortBuffer indexData;
+	private int indexCount;
+	private boolean uploaded; //whether the GPU buffers hold the current data
+
+	private int bufferHandle; //0 until uploaded in the current context
+	private int indexBufferHandle;
+
+	//temporary space for building
+	private final float[] identityPose;
+	private final float[] models;
+	private final float[] scratch;
+	private final float[] inverse = new float[MATRIX_SIZE];
+	private final float[] normalMatrix = new float[MATRIX_SIZE];
+	private final float[] vector = new float[4];
+	private final float[] transformed = new float[4];
+
+	/**
+	 * @param sourceMeshes The mesh for each mesh id, each vertex starting with { posX, posY, posZ, normalX, normalY, normalZ }
+	 */
+	public StaticBatch(Skeleton skeleton, IndexedMesh[] sourceMeshes)
+	{
+		this.skeleton = skeleton;
+		this.sourceMeshes = sourceMeshes.clone();
+		int jointCount = skeleton.getJointCount();
+		identityPose = new float[jointCount*MATRIX_SIZE];
+		for(int j=0; j<jointCount; j++)
+			Matrix.setIdentityM(identityPose, j*MATRIX_SIZE);
+		models = new float[jointCount*MATRIX_SIZE];
+		scratch = new float[skeleton.getScratchSize()];
+	}
+
+	/**
+	 * Returns which joints of the skeleton never move relative to its root while the given clip plays: those that
+	 * neither have a channel of their own nor an ancestor with one
+	 * @param clip The clip being played, or null if the skeleton isn't animated (so every joint is static)
+	 */
+	public static boolean[] findStaticJoints(Skeleton skeleton, AnimationClip clip)
+	{
+		int jointCount = skeleton.getJointCount();
+		final boolean[] result = new boolean[jointCount];
+		Arrays.fill(result, true);
+		if(clip == null)
+			return result;
+
+		for(int c=0; c<clip.getChannelCount(); c++)
+		{
+			int joint = skeleton.findJoint(clip.getChannel(c).getJoint());
+			if(joint >= 0)
+				result[joint] = false;
+		}
+		for(int j=0; j<jointCount; j++) //parents come first, so their flags are final by the time we get to the children
+		{
+			int parent = skeleton.getParent(j);
+			if(parent != Skeleton.NO_PARENT && !result[parent])
+				result[j] = false;
+		}
+		return result;
+	}
+
+	/**
+	 * Makes sure the buffer holds exactly the given joints, rebuilding it if the set changed
+	 * @return Whether it was rebuilt
+	 */
+	public boolean update(boolean[] staticJoints)
+	{
+		if(this.staticJoints != null && Arrays.equals(this.staticJoints, staticJoints))
+			return false;
+		build(staticJoints.clone());
+		return true;
+	}
+
+	/**
+	 * Returns whether the given joint is in the batch (so shouldn't be drawn on its own)
+	 */
+	public boolean contains(int joint)
+	{
+		return staticJoints != null && staticJoints[joint];
+	}
+
+	/**
+	 * Returns whether every joint is in the batch
+	 */
+	public boolean containsAll()
+	{
+		return staticJoints != null && staticCount == staticJoints.length;
+	}
+
+	/**
+	 * Returns whether the batch has anything to draw
+	 */
+	public boolean isEmpty()
+	{
+		return indexCount == 0;
+	}
+
+	//transforms the meshes of the given joints (with the root at the origin) into one buffer
+	private void build(boolean[] joints)
+	{
+		skeleton.computeModelTransforms(identityPose, 0, identityPose, 0, models, 0, scratch); //static joints never leave their bind pose
+
+		int jointCount = skeleton.getJointCount();
+		int vertexCount = 0;
+		int indices = 0;
+		staticCount = 0;
+		for(int j=0; j<jointCount; j++)
+		{
+			if(!joints[j])
+				continue;
+			staticCount++;
+			IndexedMesh mesh = getMesh(j);
+			if(mesh == null)
+				continue;
+			vertexCount += mesh.getVertexCount();
+			indices += mesh.getIndexCount();
+		}
+		if(vertexCount > GpuMesh.MAX_SHORT_INDEXED_VERTICES)
+			throw new IllegalStateException("Too many static vertices for short indices: "+vertexCount);
+
+		ByteBuffer vertices = ByteBuffer.allocateDirect(vertexCount*STRIDE).order(ByteOrder.nativeOrder());
+		ShortBuffer indexBuffer = ByteBuffer.allocateDirect(indices*2).order(ByteOrder.nativeOrder()).asShortBuffer();
+		float[] colors = skeleton.getColors();
+		int firstVertex = 0;
+		for(int j=0; j<jointCount; j++)
+		{
+			IndexedMesh mesh = joints[j] ? getMesh(j) : null;
+			if(mesh == null)
+				continue;
+
+			//normals go through the inverse transpose of the model matrix, since the shape transforms don't scale evenly
+			int m = j*MATRIX_SIZE;
+			Matrix.invertM(inverse, 0, models, m);
+			Matrix.transposeM(normalMatrix, 0, inverse, 0);
+
+			float[] source = mesh.getVertices();
+			int floatsPerVertex = mesh.getFloatsPerVertex();
+			int count = mesh.getVertexCount();
+			for(int v=0; v<count; v++)
+			{
+				int in = v*floatsPerVertex;
+				int out = (firstVertex + v)*STRIDE;
+				putTransformed(vertices, out, models, m, source, in, 1.0f);
+				putTransformed(vertices, out + NORMAL_OFFSET, normalMatrix, 0, source, in+3, 0.0f);
+				for(int i=0; i<4; i++)
+					vertices.put(out + COLOR_OFFSET + i, (byte)Math.round(colors[j*Skeleton.COLOR_SIZE + i]*255));
+			}
+			int[] meshIndices = mesh.getIndices();
+			for(int i=0; i<meshIndices.length; i++)
+				indexBuffer.put((short)(firstVertex + meshIndices[i])); //read back as unsigned by GL
+			firstVertex += count;
+		}
+		indexBuffer.position(0);
+
+		staticJoints = joints;
+		vertexData = vertices;
+		indexData = indexBuffer;
+		indexCount = indices;
+		uploaded = false;
+	}
+
+	private IndexedMesh getMesh(int joint)
+	{
+		int meshId = skeleton.getMeshId(joint);
+		return meshId == Skeleton.NO_MESH ? null : sourceMeshes[meshId];
+	}
+
+	//writes the given matrix times the 3-vector (with the given w), as 3 floats; normals (w = 0) are renormalized
+	private void putTransformed(ByteBuffer out, int offset, float[] matrix, int matrixOffset, float[] source, int in, float w)
+	{
+		vector[0] = source[in];
+		vector[1] = source[in+1];
+		vector[2] = source[in+2];
+		vector[3] = w;
+		Matrix.multiplyMV(transformed, 0, matrix, matrixOffset, vector, 0);
+		float scale = 1.0f;
+		if(w == 0)
+		{
+			float length = (float)Math.sqrt(transformed[0]*transformed[0] + transformed[1]*transformed[1] + transformed[2]*transformed[2]);
+			if(length > 0)
+				scale = 1.0f/length;
+		}
+		out.putFloat(offset, transformed[0]*scale);
+		out.putFloat(offset+4, transformed[1]*scale);
+		out.putFloat(offset+8, transformed[2]*scale);
+	}
+
+	/**
+	 * Forgets the GPU buffers, which died with the old context; call from onSurfaceCreated()
+	 */
+	public void onSurfaceCreated()
+	{
+		bufferHandle = 0;
+		indexBufferHandle = 0;
+		uploaded = false;
+	}
+
+	/**
+	 * Draws the batch with the current program (which must already have its matrices set for the skeleton's root),
+	 * uploading it first if it was rebuilt. Leaves the color attribute as a constant again afterwards.
+	 */
+	public void draw(GlBackend gl, int positionHandle, int normalHandle, int colorHandle)
+	{
+		if(indexCount == 0)
+			return;
+
+		if(bufferHandle == 0)
+		{
+			final int[] handles = new int[2];
+			gl.glGenBuffers(2, handles, 0);
+			bufferHandle = handles[0];
+			indexBufferHandle = handles[1];
+		}
+		gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferHandle);
+		gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferHandle);
+		if(!uploaded)
+		{
+			vertexData.position(0);
+			gl.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexData.capacity(), vertexData, GLES20.GL_STATIC_DRAW);
+			indexData.position(0);
+			gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexCount*2, indexData, GLES20.GL_STATIC_DRAW);
+			uploaded = true;
+		}
+
+		gl.glVertexAttribPointer(positionHandle, 3, GLES20.GL_FLOAT, false, STRIDE, 0);
+		gl.glEnableVertexAttribArray(positionHandle);
+		gl.glVertexAttribPointer(normalHandle, 3, GLES20.GL_FLOAT, false, STRIDE, NORMAL_OFFSET);
+		gl.glEnableVertexAttribArray(normalHandle);
+		gl.glVertexAttribPointer(colorHandle, 4, GLES20.GL_UNSIGNED_BYTE, true, STRIDE, COLOR_OFFSET);
+		gl.glEnableVertexAttribArray(colorHandle);
+
+		gl.glDrawElements(GLES20.GL_TRIANGLES, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+		gl.glDisableVertexAttribArray(colorHandle); //the other parts set their color as a constant
+	}
+}
@@ -0,0 +1,69 @@
+package cs315.yourname.hwk4;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the newest of a stream of buffers from one writer thread to one reader thread without either ever waiting.
+ * There are three buffers: the writer fills its "back" buffer and publishes it, swapping it with the shared middle one;
+ * the reader swaps its "front" buffer with the middle one whenever a newer one has been published. So the writer always
+ * has a buffer to fill, and the reader always has the newest complete buffer (skipping any it was too slow for).
+ *
+ * The only shared state is one AtomicInteger: the index of the middle buffer, plus a flag for whether it is newer than the
+ * reader's. The buffers themselves are passed back and forth and must only be touched by the side that currently holds them.
+ */
+public class TripleBuffer<T>
+{
+	private static final int INDEX_MASK = 3;
+	private static final int FRESH = 4; //set on the middle index when it holds a buffer the reader hasn't seen
+
+	private final Object[] buffers;
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0; //only touched by the writer
+	private int front = 2; //only touched by the reader
+
+	/**
+	 * Creates a triple buffer from three (distinct) buffers; the reader starts out with the last one
+	 */
+	public TripleBuffer(T first, T second, T third)
+	{
+		buffers = new Object[] {first, second, third};
+	}
+
+	/**
+	 * Returns the buffer the writer should fill next (writer thread only)
+	 */
+	@SuppressWarnings("unchecked")
+	public T getWriteBuffer()
+	{
+		return (T)buffers[back];
+	}
+
+	/**
+	 * Makes the filled write buffer the newest one, and gives the writer another buffer to fill (writer thread only)
+	 */
+	public void publish()
+	{
+		back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Takes the newest published buffer, if there is one the reader hasn't seen (reader thread only)
+	 * @return Whether the read buffer changed
+	 */
+	public boolean update()
+	{
+		if((middle.get() & FRESH) == 0)
+			return false;
+		front = middle.getAndSet(front) & INDEX_MASK; //the writer may have published again since, but the middle is always the newest
+		return true;
+	}
+
+	/**
+	 * Returns the reader's current buffer (reader thread only); call update() first to get the newest one
+	 */
+	@SuppressWarnings("unchecked")
+	public T getReadBuffer()
+	{
+		return (T)buffers[front];
+	}
+}
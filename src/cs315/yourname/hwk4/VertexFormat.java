@@ -0,0 +1,263 @@
+package cs315.yourname.hwk4;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import android.opengl.GLES20;
+
+/**
+ * How a mesh's vertices are laid out in its GPU buffer: what type the position and normal are stored as, and whether
+ * each vertex carries an instance id (see IndexedMesh.replicate()). Smaller formats take less memory and less bandwidth
+ * for the GPU to fetch each vertex.
+ *
+ * Positions are stored as floats or as normalized shorts (so they must lie within -1 to 1, like all the ModelFactory meshes).
+ * Normals are stored as floats, as normalized bytes, or not at all: on a unit sphere the normal is the same as the position,
+ * so the "sphere" formats point the shader's normal attribute at the position data (and the shader normalizes it).
+ * Each attribute is padded out to 4 bytes, which GPUs fetch fastest. An instance id is always a float.
+ *
+ * Vertices are encoded from packed float arrays laid out like the ModelFactory ones: the position, then the normal
+ * (if there are 6 or 7 floats per vertex), then the instance id (if there are 4 or 7).
+ */
+public class VertexFormat
+{
+	public static final String TAG = "VertexFormat";
+
+	private static final int NO_NORMAL = 0; //normal type for formats that reuse the position as the normal
+
+	/** { posX, posY, posZ, normalX, normalY, normalZ } as floats; 24 bytes per vertex */
+	public static final VertexFormat FLOAT = new VertexFormat(0, "float", GLES20.GL_FLOAT, GLES20.GL_FLOAT, false);
+	/** Positions as normalized shorts and normals as normalized bytes; 12 bytes per vertex */
+	public static final VertexFormat COMPACT = new VertexFormat(1, "compact", GLES20.GL_SHORT, GLES20.GL_BYTE, false);
+	/** Positions as floats, with the normals taken from the positions (for unit spheres only); 12 bytes per vertex */
+	public static final VertexFormat SPHERE = new VertexFormat(2, "sphere", GLES20.GL_FLOAT, NO_NORMAL, false);
+	/** Positions as normalized shorts, with the normals taken from the positions (for unit spheres only); 8 bytes per vertex */
+	public static final VertexFormat COMPACT_SPHERE = new VertexFormat(3, "compact sphere", GLES20.GL_SHORT, NO_NORMAL, false);
+
+	private static final VertexFormat[] FORMATS = { //indexed by id
+		FLOAT, COMPACT, SPHERE, COMPACT_SPHERE,
+		FLOAT.instanced(), COMPACT.instanced(), SPHERE.instanced(), COMPACT_SPHERE.instanced()
+	};
+	private static final int INSTANCED_ID_OFFSET = 4; //the id of each format with instance ids, past the plain one
+
+	private final int id;
+	private final String name;
+	private final int positionType;
+	private final int normalType;
+	private final boolean instanceIds;
+
+	//byte layout of a vertex
+	private final int normalOffset;
+	private final int instanceOffset;
+	private final int stride;
+
+	private VertexFormat(int id, String name, int positionType, int normalType, boolean instanceIds)
+	{
+		this.id = id;
+		this.name = name;
+		this.positionType = positionType;
+		this.normalType = normalType;
+		this.instanceIds = instanceIds;
+
+		normalOffset = paddedSize(positionType);
+		instanceOffset = normalOffset + (normalType == NO_NORMAL ? 0 : paddedSize(normalType));
+		stride = instanceOffset + (instanceIds ? 4 : 0);
+	}
+
+	//the bytes a 3-component attribute of the given type takes up, padded to a multiple of 4
+	private static int paddedSize(int type)
+	{
+		switch(type)
+		{
+		case GLES20.GL_FLOAT: return 12;
+		case GLES20.GL_SHORT: return 8;
+		case GLES20.GL_BYTE: return 4;
+		default: throw new IllegalArgumentException("Unsupported attribute type: "+type);
+		}
+	}
+
+	//the same format with an instance id on each vertex
+	private VertexFormat instanced()
+	{
+		return new VertexFormat(id + INSTANCED_ID_OFFSET, name + " instanced", positionType, normalType, true);
+	}
+
+	/**
+	 * Returns the format with the given id (such as one stored in a file), or null if there is no such format
+	 */
+	public static VertexFormat fromId(int id)
+	{
+		return (id >= 0 && id < FORMATS.length) ? FORMATS[id] : null;
+	}
+
+	/**
+	 * Returns this format with an instance id on each vertex (for meshes made with IndexedMesh.replicate())
+	 */
+	public VertexFormat withInstanceIds()
+	{
+		return instanceIds ? this : FORMATS[id + INSTANCED_ID_OFFSET];
+	}
+
+	public int getId()
+	{
+		return id;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Returns how many bytes each vertex takes up
+	 */
+	public int getStride()
+	{
+		return stride;
+	}
+
+	/**
+	 * Returns whether normals are stored (rather than taken from the positions)
+	 */
+	public boolean hasNormals()
+	{
+		return normalType != NO_NORMAL;
+	}
+
+	public boolean hasInstanceIds()
+	{
+		return instanceIds;
+	}
+
+	/**
+	 * Encodes packed float vertices into a direct, native-order buffer in this format.
+	 * @param vertices Positions, then normals (if floatsPerVertex is 6 or 7), then instance ids (if it is 4 or 7)
+	 * @throws IllegalArgumentException If the vertices are missing something this format stores, or don't fit in it
+	 */
+	public ByteBuffer encode(float[] vertices, int floatsPerVertex)
+	{
+		boolean sourceNormals = floatsPerVertex >= 6;
+		boolean sourceInstanceIds = floatsPerVertex == 4 || floatsPerVertex == 7;
+		if(floatsPerVertex < 3 || floatsPerVertex > 7 || floatsPerVertex == 5)
+			throw new IllegalArgumentException("Unsupported vertex size: "+floatsPerVertex);
+		if(hasNormals() && !sourceNormals)
+			throw new IllegalArgumentException("The "+name+" format needs normals");
+		if(instanceIds != sourceInstanceIds)
+			throw new IllegalArgumentException("The "+name+" format "+(instanceIds ? "needs" : "can't hold")+" instance ids");
+
+		int vertexCount = vertices.length/floatsPerVertex;
+		ByteBuffer data = ByteBuffer.allocateDirect(vertexCount*stride).order(ByteOrder.nativeOrder());
+		for(int v=0; v<vertexCount; v++)
+		{
+			int in = v*floatsPerVertex;
+			int out = v*stride;
+			put(data, out, positionType, vertices, in);
+			if(hasNormals())
+				put(data, out + normalOffset, normalType, vertices, in+3);
+			if(instanceIds)
+				data.putFloat(out + instanceOffset, vertices[in + floatsPerVertex-1]);
+		}
+		data.position(0);
+		return data;
+	}
+
+	/**
+	 * Decodes vertices in this format back into packed floats, the reverse of encode(): positions, then normals (if this
+	 * format stores them), then instance ids (if it has them). Normalized values come back as GL would read them.
+	 */
+	public float[] decode(ByteBuffer data, int vertexCount)
+	{
+		int floatsPerVertex = 3 + (hasNormals() ? 3 : 0) + (instanceIds ? 1 : 0);
+		float[] vertices = new float[vertexCount*floatsPerVertex];
+		for(int v=0; v<vertexCount; v++)
+		{
+			int in = v*stride;
+			int out = v*floatsPerVertex;
+			get(data, in, positionType, vertices, out);
+			if(hasNormals())
+				get(data, in + normalOffset, normalType, vertices, out+3);
+			if(instanceIds)
+				vertices[out + floatsPerVertex-1] = data.getFloat(in + instanceOffset);
+		}
+		return vertices;
+	}
+
+	//reads 3 values of the given type (normalized, for the integer types)
+	private static void get(ByteBuffer data, int offset, int type, float[] values, int out)
+	{
+		for(int i=0; i<3; i++)
+		{
+			switch(type)
+			{
+			case GLES20.GL_FLOAT:
+				values[out+i] = data.getFloat(offset + i*4);
+				break;
+			case GLES20.GL_SHORT:
+				values[out+i] = (2*data.getShort(offset + i*2) + 1) / 65535.0f;
+				break;
+			case GLES20.GL_BYTE:
+				values[out+i] = (2*data.get(offset + i) + 1) / 255.0f;
+				break;
+			}
+		}
+	}
+
+	//writes 3 values as the given type (normalized, for the integer types)
+	private void put(ByteBuffer data, int offset, int type, float[] values, int in)
+	{
+		for(int i=0; i<3; i++)
+		{
+			float value = values[in+i];
+			switch(type)
+			{
+			case GLES20.GL_FLOAT:
+				data.putFloat(offset + i*4, value);
+				break;
+			case GLES20.GL_SHORT:
+				data.putShort(offset + i*2, (short)normalize(value, 65535));
+				break;
+			case GLES20.GL_BYTE:
+				data.put(offset + i, (byte)normalize(value, 255));
+				break;
+			}
+		}
+	}
+
+	//the signed integer GLES 2.0 turns back into (about) the given value: it reads c as (2c + 1) / range
+	private int normalize(float value, int range)
+	{
+		if(value < -1 || value > 1)
+			throw new IllegalArgumentException("The "+name+" format can only hold values from -1 to 1: "+value);
+		return Math.round((value*range - 1)*0.5f);
+	}
+
+	/**
+	 * Points the shader's position and normal attributes at the (bound) buffer
+	 */
+	public void bind(GlBackend gl, int positionHandle, int normalHandle)
+	{
+		boolean normalized = positionType != GLES20.GL_FLOAT;
+		gl.glVertexAttribPointer(positionHandle, 3, positionType, normalized, stride, 0); //offsets into the buffer, rather than client-side pointers
+		gl.glEnableVertexAttribArray(positionHandle);
+
+		if(hasNormals())
+			gl.glVertexAttribPointer(normalHandle, 3, normalType, normalType != GLES20.GL_FLOAT, stride, normalOffset); //normals start after the position
+		else
+			gl.glVertexAttribPointer(normalHandle, 3, positionType, normalized, stride, 0); //a unit sphere's normals are its positions
+		gl.glEnableVertexAttribArray(normalHandle);
+	}
+
+	/**
+	 * Points the shader's instance id attribute at the (bound) buffer; only for formats with instance ids
+	 */
+	public void bindInstanceIds(GlBackend gl, int instanceHandle)
+	{
+		gl.glVertexAttribPointer(instanceHandle, 1, GLES20.GL_FLOAT, false, stride, instanceOffset); //ids come after the normal
+		gl.glEnableVertexAttribArray(instanceHandle);
+	}
+
+	@Override
+	public String toString()
+	{
+		return name+" ("+stride+" bytes per vertex)";
+	}
+}